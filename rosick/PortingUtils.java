@@ -1,7 +1,6 @@
 package rosick;
 
 import java.nio.Buffer;
-import java.util.ArrayList;
 
 
 /**
@@ -30,35 +29,6 @@ public class PortingUtils {
 	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
 	
 	
-	public static int toUnsignedInt(char data) {		
-		byte bytes[] = (data + "").getBytes();										// Needed for encoding problems
-		long value = bytes[0] & 0xff;
-		
-		return (int) value;
-	}
-	
-	public static int toUnsignedInt(ArrayList<Character> data, int startIndex) {
-		return toUnsignedInt(data, startIndex, 4);
-	}
-	
-	public static int toUnsignedInt(ArrayList<Character> data, int startIndex, int length) {
-		StringBuilder temp = new StringBuilder();
-		
-		for (int i = startIndex; i < startIndex + length; i++) {
-			temp.append(data.get(i));
-		}
-		
-		byte bytes[] = temp.toString().getBytes();
-		long value = 0;
-		
-		for (int i = 0; i < bytes.length; i++) {
-		   value += (bytes[i] & 0xff) << (8 * i);
-		}
-		
-		return (int) value;
-	}
-	
-	
 	public static byte[] toByteArray(float data[]) {
 		byte[] bytes = new byte[data.length * 4];
 
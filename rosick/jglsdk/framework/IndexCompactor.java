@@ -0,0 +1,173 @@
+package rosick.jglsdk.framework;
+
+import static org.lwjgl.opengl.GL11.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import rosick.jglsdk.framework.MeshData.AttribType;
+import rosick.jglsdk.framework.MeshData.IndexData;
+import rosick.jglsdk.framework.MeshData.RenderCmd;
+
+
+/**
+ * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
+ * 
+ * Shrinks the index data of a MeshData and the number of its draw calls. Consecutive indexed
+ * commands drawing tri-strips (or tri-fans) become a single command, with the primitive restart index
+ * (the biggest value of the index type) between the original ones. Then every index array is stored
+ * with the smallest type (ubyte, ushort or uint) that can hold its indices and the restart index.
+ * 
+ * Set the "rosick.meshCompactIndices" property to compact every mesh loaded through the MeshCache.
+ * 
+ * @author integeruser
+ */
+public class IndexCompactor {
+	
+	public static class Report {
+		public int iDrawsBefore, iDrawsAfter;
+		public int iIndexBytesBefore, iIndexBytesAfter;
+		
+		@Override
+		public String toString() {
+			return String.format("%d -> %d draws, %d -> %d index bytes", iDrawsBefore, iDrawsAfter, iIndexBytesBefore, iIndexBytesAfter);
+		}
+	}
+	
+	
+	public static boolean isEnabled() {
+		return Boolean.getBoolean("rosick.meshCompactIndices");
+	}
+	
+	
+	/**
+	 * Merges and narrows the index arrays of meshData, and lays out its buffers again.
+	 */
+	public static Report compact(MeshData meshData) {
+		if (meshData.getNumLods() > 1) {
+			throw new RuntimeException("The LODs must be generated after the indices are compacted.");
+		}
+		
+		Report report = new Report();
+		report.iDrawsBefore = meshData.primitives.size();
+		report.iIndexBytesBefore = calcIndexByteSize(meshData);
+		
+		ArrayList<RenderCmd> primitives = new ArrayList<>();
+		ArrayList<IndexData> indexData = new ArrayList<>();
+		
+		RenderCmd pendingCmd = null;
+		int pendingIndices[] = null;
+		int iPendingCount = 0;
+		
+		int iCurrIndexed = 0;
+		for (RenderCmd cmd : meshData.primitives) {
+			if (!cmd.bIsIndexedCmd) {
+				if (pendingCmd != null) {
+					addIndexedCmd(primitives, indexData, pendingCmd, pendingIndices, iPendingCount);
+					pendingCmd = null;
+				}
+				
+				primitives.add(cmd);
+				continue;
+			}
+			
+			int indices[] = meshData.indexData.get(iCurrIndexed).getIndices();
+			iCurrIndexed++;
+			
+			if (pendingCmd != null && canMerge(pendingCmd, cmd)) {
+				// -1 marks the restart, its value depends on the final index type
+				if (iPendingCount + 1 + indices.length > pendingIndices.length) {
+					pendingIndices = Arrays.copyOf(pendingIndices, Math.max(pendingIndices.length * 2, iPendingCount + 1 + indices.length));
+				}
+				pendingIndices[iPendingCount++] = -1;
+				System.arraycopy(indices, 0, pendingIndices, iPendingCount, indices.length);
+				iPendingCount += indices.length;
+				
+				pendingCmd.bPrimitiveRestart = true;
+				continue;
+			}
+			
+			if (pendingCmd != null) {
+				addIndexedCmd(primitives, indexData, pendingCmd, pendingIndices, iPendingCount);
+			}
+			
+			pendingCmd = cmd;
+			pendingIndices = indices;
+			iPendingCount = indices.length;
+		}
+		
+		if (pendingCmd != null) {
+			addIndexedCmd(primitives, indexData, pendingCmd, pendingIndices, iPendingCount);
+		}
+		
+		meshData.primitives = primitives;
+		meshData.indexData = indexData;
+		meshData.pack();
+		
+		report.iDrawsAfter = meshData.primitives.size();
+		report.iIndexBytesAfter = calcIndexByteSize(meshData);
+		
+		return report;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	private static boolean canMerge(RenderCmd first, RenderCmd second) {
+		return first.ePrimType == second.ePrimType && (first.ePrimType == GL_TRIANGLE_STRIP || first.ePrimType == GL_TRIANGLE_FAN);
+	}
+	
+	
+	private static void addIndexedCmd(ArrayList<RenderCmd> primitives, ArrayList<IndexData> indexData, RenderCmd cmd,
+			int indices[], int iCount) {
+		long maxIndex = 0;
+		for (int i = 0; i < iCount; i++) {
+			if (indices[i] != -1 || !cmd.bPrimitiveRestart) {
+				maxIndex = Math.max(maxIndex, indices[i] & 0xFFFFFFFFL);
+			}
+		}
+		
+		// The restart index can't be used as a vertex index.
+		long limit = maxIndex + (cmd.bPrimitiveRestart ? 1 : 0);
+		String strType;
+		int restartIndex;
+		if (limit <= 0xFF) {
+			strType = "ubyte";
+			restartIndex = 0xFF;
+		} else if (limit <= 0xFFFF) {
+			strType = "ushort";
+			restartIndex = 0xFFFF;
+		} else {
+			strType = "uint";
+			restartIndex = 0xFFFFFFFF;
+		}
+		
+		int typedIndices[] = Arrays.copyOf(indices, iCount);
+		if (cmd.bPrimitiveRestart) {
+			for (int i = 0; i < iCount; i++) {
+				if (typedIndices[i] == -1) {
+					typedIndices[i] = restartIndex;
+				}
+			}
+		}
+		
+		IndexData data = new IndexData();
+		data.setIndices(typedIndices, AttribType.get(strType));
+		
+		primitives.add(cmd);
+		indexData.add(data);
+	}
+	
+	
+	private static int calcIndexByteSize(MeshData meshData) {
+		int iByteSize = 0;
+		
+		for (IndexData data : meshData.indexData) {
+			iByteSize += data.calcByteSize();
+		}
+		
+		return iByteSize;
+	}
+}
@@ -0,0 +1,175 @@
+package rosick.jglsdk.framework;
+
+import static org.lwjgl.opengl.GL15.*;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+
+import org.lwjgl.BufferUtils;
+
+import rosick.jglsdk.glm.Mat4;
+
+
+/**
+ * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
+ * 
+ * Draws the objects sharing a mesh and a material with one glDrawElementsInstanced (for every draw
+ * call of the mesh), instead of a glUniformMatrix4 and a render() for every object.
+ * 
+ * Every batch is a mesh with the space for up to maxInstances model matrices. In a frame the matrices
+ * are added to the batches, sent to the instance buffer with a single glBufferSubData by upload(),
+ * and every batch is drawn by render(), after setting the uniforms of its material. The vertex shader
+ * reads the model matrix from the mat4 attribute matrixAttribIx (it takes 4 locations, from
+ * matrixAttribIx to matrixAttribIx + 3) instead of a uniform.
+ * 
+ * The matrices are kept in one direct FloatBuffer, allocated once, where every batch has its own
+ * range.
+ * 
+ * @author integeruser
+ */
+public class InstancedMeshRenderer {
+	
+	private static final int MATRIX_FLOATS = 16;
+	private static final int MATRIX_SIZE = MATRIX_FLOATS * Float.SIZE / 8;
+	
+	private FloatBuffer instanceMatrices;
+	private int oInstanceBuffer;
+	private int iMatrixAttribIx;
+	
+	private ArrayList<Batch> batches = new ArrayList<>();
+	private int iNumReserved;
+	
+	
+	public InstancedMeshRenderer(int maxInstances, int matrixAttribIx) {
+		instanceMatrices = BufferUtils.createFloatBuffer(maxInstances * MATRIX_FLOATS);
+		iMatrixAttribIx = matrixAttribIx;
+		
+		oInstanceBuffer = glGenBuffers();
+		glBindBuffer(GL_ARRAY_BUFFER, oInstanceBuffer);
+		glBufferData(GL_ARRAY_BUFFER, (long) maxInstances * MATRIX_SIZE, GL_STREAM_DRAW);
+		glBindBuffer(GL_ARRAY_BUFFER, 0);
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * Adds a batch for mesh and returns its index. The same mesh can be in more batches, one for
+	 * every material. The mesh must not have attributes in the locations of the instance matrices.
+	 */
+	public int addBatch(Mesh mesh, int maxInstances) {
+		mesh.checkInstanceAttributes(iMatrixAttribIx);
+		
+		if (iNumReserved + maxInstances > instanceMatrices.capacity() / MATRIX_FLOATS) {
+			throw new RuntimeException("The renderer has no room for " + maxInstances + " more instances.");
+		}
+		
+		Batch batch = new Batch();
+		batch.mesh = mesh;
+		batch.iFirstInstance = iNumReserved;
+		batch.iMaxInstances = maxInstances;
+		batches.add(batch);
+		
+		iNumReserved += maxInstances;
+		
+		return batches.size() - 1;
+	}
+	
+	
+	/**
+	 * Adds an instance to the batch, with the given model matrix.
+	 */
+	public void add(int batch, Mat4 modelToWorld) {
+		Batch currBatch = batches.get(batch);
+		
+		if (currBatch.iNumInstances == currBatch.iMaxInstances) {
+			throw new RuntimeException("The batch " + batch + " is full (" + currBatch.iMaxInstances + " instances).");
+		}
+		
+		instanceMatrices.position((currBatch.iFirstInstance + currBatch.iNumInstances) * MATRIX_FLOATS);
+		instanceMatrices.put(modelToWorld.get());
+		currBatch.iNumInstances++;
+	}
+	
+	/**
+	 * Removes the instances of all the batches.
+	 */
+	public void clear() {
+		for (Batch batch : batches) {
+			batch.iNumInstances = 0;
+		}
+	}
+	
+	
+	public int getNumBatches() {
+		return batches.size();
+	}
+	
+	public int getNumInstances(int batch) {
+		return batches.get(batch).iNumInstances;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * Sends the matrices of all the batches to the instance buffer. The buffer is orphaned first, so
+	 * the draws of the last frame don't have to end before it is written.
+	 */
+	public void upload() {
+		// Up to the last instance in use: the unused space of the batches before it is sent too, but
+		// with a single call.
+		int iEnd = 0;
+		for (Batch batch : batches) {
+			if (batch.iNumInstances > 0) {
+				iEnd = Math.max(iEnd, batch.iFirstInstance + batch.iNumInstances);
+			}
+		}
+		
+		if (iEnd == 0) {
+			return;
+		}
+		
+		instanceMatrices.position(0);
+		instanceMatrices.limit(iEnd * MATRIX_FLOATS);
+		
+		glBindBuffer(GL_ARRAY_BUFFER, oInstanceBuffer);
+		glBufferData(GL_ARRAY_BUFFER, (long) instanceMatrices.capacity() / MATRIX_FLOATS * MATRIX_SIZE, GL_STREAM_DRAW);
+		glBufferSubData(GL_ARRAY_BUFFER, 0, instanceMatrices);
+		glBindBuffer(GL_ARRAY_BUFFER, 0);
+		
+		instanceMatrices.clear();
+	}
+	
+	
+	/**
+	 * Draws all the instances of the batch, with the program in use. Must be called after upload().
+	 */
+	public void render(int batch) {
+		Batch currBatch = batches.get(batch);
+		
+		currBatch.mesh.renderInstanced(currBatch.iNumInstances, oInstanceBuffer, (long) currBatch.iFirstInstance * MATRIX_SIZE, iMatrixAttribIx);
+	}
+	
+	
+	public void deleteObjects() {
+		glDeleteBuffers(oInstanceBuffer);
+		oInstanceBuffer = 0;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	private static class Batch {
+		Mesh mesh;
+		int iFirstInstance;
+		int iMaxInstances;
+		int iNumInstances;
+	}
+}
@@ -1,38 +1,48 @@
 package rosick.jglsdk.framework;
 
 import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL14.*;
 import static org.lwjgl.opengl.GL15.*;
 import static org.lwjgl.opengl.GL20.*;
 import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.*;
+import static org.lwjgl.opengl.GL33.*;
 
-import java.io.IOException;
-import java.nio.Buffer;
-import java.nio.ByteBuffer;
-import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
-import java.nio.ShortBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 
 import org.lwjgl.BufferUtils;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
+
+import rosick.jglsdk.framework.MeshData.Attribute;
+import rosick.jglsdk.framework.MeshData.NamedVAO;
+import rosick.jglsdk.framework.MeshData.RenderCmd;
+import rosick.jglsdk.glm.Vec3;
 
 
 /**
  * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
  * 
+ * The commands of a mesh are turned in draw calls once, when it is created: consecutive 'arrays'
+ * commands of the same primitive type become a single glMultiDrawArrays.
+ * 
+ * Between beginBatch() and endBatch() the VAO bound by the last render() is remembered, so rendering
+ * the same mesh again doesn't bind it again, and it isn't unbound after every render(). No other code
+ * may bind a VAO inside a batch.
+ * 
+ * The bounding box and the bounding sphere of the positions (attribute 0) are computed when the
+ * mesh is created, in model space.
+ * 
+ * The levels of detail made by MeshSimplifier are drawn by renderLod(), each one with a single
+ * glDrawElements from the index buffer of the mesh. A LodSelector can choose them from the errors
+ * returned by getLodErrors().
+ * 
+ * InstancedMeshRenderer draws many copies of a mesh at once with renderInstanced(), whose draws are
+ * counted by getNumDrawCalls() like the others.
+ * 
  * @author integeruser
  */
 public class Mesh {
@@ -40,95 +50,48 @@ public class Mesh {
 	private int oIndexBuffer = 0;
 	private int oVAO = 0;
 	
-	private ArrayList<RenderCmd> primitives = new ArrayList<>();
+	private ArrayList<DrawCall> drawCalls = new ArrayList<>();
+	private ArrayList<DrawCall> lodDrawCalls = new ArrayList<>();
+	private float lodErrors[];
 	private Map<String, Integer> namedVAOs = new HashMap<>();
 	
+	// One bit for every attribute index of the main VAO.
+	private long usedAttribs;
+	
+	private Vec3 aabbMin, aabbMax;
+	private Vec3 sphereCenter;
+	private float sphereRadius;
+	
+	private static boolean g_bBatching;
+	private static int g_boundVAO;
+	private static int g_iNumDrawCalls;
+	private static int g_iNumVAOBinds;
+	
 	public Mesh(String filePath) {
-		ArrayList<Attribute> attribs = new ArrayList<>(16);
-		ArrayList<IndexData> indexData = new ArrayList<>();
-		ArrayList<NamedVAO> namedVaoList = new ArrayList<>();
-		
-		// crea il parser e ci associa il file di input
-		Document doc = null;
-		try {
-			DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-			DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-			doc = dBuilder.parse(ClassLoader.class.getResourceAsStream(filePath));
-		} catch (ParserConfigurationException | SAXException | IOException e) {
-			e.printStackTrace();
-			System.exit(123);
-		}
-		
-		Element meshElement = doc.getDocumentElement();
-		// per ogni nodo "attribute"
-		NodeList attrs = meshElement.getElementsByTagName("attribute");
-		for (int i = 0; i < attrs.getLength(); i++) {
-			// crea un Attribute e lo aggiunge a attribs
-			Attribute a = new Attribute(attrs.item(i));
-			attribs.add(a);
-		}
-		
-		// per ogni nodo "vao"
-		NodeList vaos = meshElement.getElementsByTagName("vao");
-		for (int i = 0; i < vaos.getLength(); i++) {
-			// crea un NamedVAO con ProcessVAO e lo aggiunge a namedVaoList
-			NamedVAO namedVao = new NamedVAO(vaos.item(i));
-			namedVaoList.add(namedVao);
-		}
-		
-		// per ogni nodo indices
-		NodeList cmds = meshElement.getElementsByTagName("indices");
-		for (int i = 0; i < cmds.getLength(); i++) {
-			// aggiunge a primitives il risultato di ProcessRenderCmd
-			RenderCmd r = new RenderCmd(cmds.item(i));
-			primitives.add(r);
-			// aggiunge a indexData il risultato di IndexData
-			IndexData in = new IndexData(cmds.item(i));
-			indexData.add(in);
-		}
-		// per ogni nodo arrays
-		NodeList arrays = meshElement.getElementsByTagName("arrays");
-		for (int i = 0; i < arrays.getLength(); i++) {
-			// aggiunge a primitives il risultato di ProcessRenderCmd
-			RenderCmd r = new RenderCmd(arrays.item(i));
-			primitives.add(r);
-		}
+		this(MeshCache.load(filePath));
+	}
+	
+	public Mesh(MeshData meshData) {
+		ArrayList<Attribute> attribs = meshData.attribs;
+		ArrayList<NamedVAO> namedVaoList = meshData.namedVaoList;
+		int attribStartLocs[] = meshData.attribStartLocs;
 		
-		// calcola la lunghezza del buffer controllando che tutti gli array di
-		// attributi abbiano la stessa lunghezza
-		int iAttrbBufferSize = 0;
-		ArrayList<Integer> attribStartLocs = new ArrayList<>(attribs.size());
-		int iNumElements = 0;
-		for (int i = 0; i < attribs.size(); i++) {
-			iAttrbBufferSize = iAttrbBufferSize % 16 != 0 ? (iAttrbBufferSize + (16 - iAttrbBufferSize % 16)) : iAttrbBufferSize;
-			attribStartLocs.add(iAttrbBufferSize);
-			Attribute attrib = attribs.get(i);
-			
-			iAttrbBufferSize += attrib.calcByteSize();
-			
-			if (iNumElements != 0) {
-				if (iNumElements != attrib.numElements()) {
-					throw new RuntimeException("Some of the attribute arrays have different element counts.");
-				}
-			} else {
-				iNumElements = attrib.numElements();
-			}
-		}
+		buildDrawCalls(meshData.primitives);
+		buildLodDrawCalls(meshData);
+		computeBounds(meshData.readPositions(false), meshData.readPositions(true));
 		
 		// crea e binda il VAO
 		oVAO = glGenVertexArrays();
 		glBindVertexArray(oVAO);
 		
-		// Crea i buffer object
+		// Crea il buffer object e ci inserisce i dati degli attributi
 		oAttribArraysBuffer = glGenBuffers();
 		glBindBuffer(GL_ARRAY_BUFFER, oAttribArraysBuffer);
-		glBufferData(GL_ARRAY_BUFFER, iAttrbBufferSize, GL_STATIC_DRAW);
+		glBufferData(GL_ARRAY_BUFFER, meshData.attribArraysBuffer, GL_STATIC_DRAW);
 		
-		// Inserisce i dati degli attributi nel buffer object
 		for (int i = 0; i < attribs.size(); i++) {
-			Attribute attrib = attribs.get(i);
-			attrib.fillBoundBufferObject(attribStartLocs.get(i));
-			attrib.setupAttributeArray(attribStartLocs.get(i));
+			setupAttributeArray(attribs.get(i), attribStartLocs[i], meshData.attribStride);
+			usedAttribs |= 1L << attribs.get(i).iAttribIx;
 		}
 		
 		// riempie i vari VAOs
@@ -150,7 +113,7 @@ public class Mesh {
 				}
 				
 				Attribute attrib = attribs.get(iAttribOffset);
-				attrib.setupAttributeArray(attribStartLocs.get(iAttribOffset));
+				setupAttributeArray(attrib, attribStartLocs[iAttribOffset], meshData.attribStride);
 			}
 			
 			namedVAOs.put(namedVao.name, vao);
@@ -158,43 +121,13 @@ public class Mesh {
 		
 		glBindVertexArray(0);
 		
-		// Calcola la lunghezza dell'index buffer
-		int iIndexBufferSize = 0;
-		ArrayList<Integer> indexStartLocs = new ArrayList<>(indexData.size());
-		for (int i = 0; i < indexData.size(); i++) {
-			iIndexBufferSize = iIndexBufferSize % 16 != 0 ? (iIndexBufferSize + (16 - iIndexBufferSize % 16)) : iIndexBufferSize;
-			
-			indexStartLocs.add(iIndexBufferSize);
-			IndexData currData = indexData.get(i);
-			
-			iIndexBufferSize += currData.calcByteSize();
-		}
-		
 		// Crea l'index buffer object
-		if (iIndexBufferSize > 0) {
+		if (meshData.indexBuffer.limit() > 0) {
 			glBindVertexArray(oVAO);
 			
 			oIndexBuffer = glGenBuffers();
 			glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, oIndexBuffer);
-			glBufferData(GL_ELEMENT_ARRAY_BUFFER, iIndexBufferSize, GL_STATIC_DRAW);
-			
-			// gli inserisce i dati
-			for (int i = 0; i < indexData.size(); i++) {
-				IndexData currData = indexData.get(i);
-				currData.fillBoundBufferObject(indexStartLocs.get(i));
-			}
-			
-			// crea i RenderCmd
-			int iCurrIndexed = 0;
-			for (int i = 0; i < primitives.size(); i++) {
-				RenderCmd prim = primitives.get(i);
-				if (prim.bIsIndexedCmd) {
-					prim.start = indexStartLocs.get(iCurrIndexed);
-					prim.elemCount = indexData.get(iCurrIndexed).getDataNumElem();
-					prim.eIndexDataType = indexData.get(iCurrIndexed).pAttribType.eGLType;
-					iCurrIndexed++;
-				}
-			}
+			glBufferData(GL_ELEMENT_ARRAY_BUFFER, meshData.indexBuffer, GL_STATIC_DRAW);
 			
 			for (Integer idVAO : namedVAOs.values()) {
 				glBindVertexArray(idVAO);
@@ -203,6 +136,8 @@ public class Mesh {
 			
 			glBindVertexArray(0);
 		}
+		
+		g_boundVAO = 0;
 	}
 	
 	public void render() {
@@ -210,13 +145,7 @@ public class Mesh {
 			return;
 		}
 		
-		glBindVertexArray(oVAO);
-		
-		for (RenderCmd cmd : primitives) {
-			cmd.render();
-		}
-		
-		glBindVertexArray(0);
+		render(oVAO, 0);
 	}
 	
 	public void render(String strMeshName) {
@@ -226,434 +155,378 @@ public class Mesh {
 			return;
 		}
 		
-		glBindVertexArray(vao);
-		
-		for (RenderCmd cmd : primitives) {
-			cmd.render();
+		render(vao, 0);
+	}
+	
+	
+	/**
+	 * Renders the level of detail lod (0 is the full mesh, like render()).
+	 */
+	public void renderLod(int lod) {
+		if (oVAO == 0) {
+			return;
 		}
 		
-		glBindVertexArray(0);
+		render(oVAO, lod);
 	}
 	
-	public void deleteObjects() {
-		glDeleteBuffers(oAttribArraysBuffer);
-		glDeleteBuffers(oIndexBuffer);
-		glDeleteVertexArrays(oVAO);
-		
-		// cancella i named VAOs
-		for (Integer idVAO : namedVAOs.values()) {
-			glDeleteVertexArrays(idVAO);
+	public void renderLod(String strMeshName, int lod) {
+		Integer vao = namedVAOs.get(strMeshName);
+		if (vao == null) {
+			return;
 		}
+		
+		render(vao, lod);
 	}
 	
-	private static class Attribute {
-		int iAttribIx = 0xFFFFFFFF;
-		AttribType pAttribType = null;
-		int iSize = -1;
-		boolean bIsIntegral = false;
-		Buffer dataArray;
-		
-		public Attribute(Node attributeNode) {
-			NamedNodeMap attrs = attributeNode.getAttributes();
-			
-			{
-				// ricava l'index
-				Node indexNode = attrs.getNamedItem("index");
-				if (indexNode == null) {
-					throw new RuntimeException("Missing 'index' attribute in an 'attribute' element.");
-				}
-				int index = Integer.parseInt(indexNode.getNodeValue());
-				if (!((0 <= index) && (index < 16)))
-					throw new RuntimeException("Attribute index must be between 0 and 16.");
-				iAttribIx = index;
-			}
-			
-			{
-				// ricava il size
-				Node sizeNode = attrs.getNamedItem("size");
-				if (sizeNode == null) {
-					throw new RuntimeException("Missing 'size' attribute in an 'attribute' element.");
-				}
-				int size = Integer.parseInt(sizeNode.getNodeValue());
-				if (!((1 <= size) && (size < 5)))
-					throw new RuntimeException("Attribute size must be between 1 and 4.");
-				iSize = size;
-			}
-			
-			{
-				// ricava il type
-				String strType;
-				Node typeNode = attrs.getNamedItem("type");
-				if (typeNode == null) {
-					throw new RuntimeException("Missing 'type' attribute in an 'attribute' element.");
-				}
-				strType = typeNode.getNodeValue();
-				pAttribType = AttribType.get(strType);
-			}
-			
-			{
-				// ricava l' integral
-				Node integralNode = attrs.getNamedItem("integral");
-				if (integralNode == null) {
-					bIsIntegral = false;
-				} else {
-					String strIntegral = integralNode.getNodeValue();
-					if (strIntegral.equals("true")) {
-						bIsIntegral = true;
-					} else if (strIntegral == "false") {
-						bIsIntegral = false;
-					} else {
-						throw new RuntimeException("Incorrect 'integral' value for the 'attribute'.");
-					}
-					
-					// l'attributo non pu essere integral e normalized o
-					// floating point allo stesso tempo
-					if (pAttribType.bNormalized) {
-						throw new RuntimeException("Attribute cannot be both 'integral' and a normalized 'type'.");
-					}
-					
-					if (pAttribType.eGLType == GL_FLOAT || pAttribType.eGLType == GL_HALF_FLOAT || pAttribType.eGLType == GL_DOUBLE) {
-						throw new RuntimeException("Attribute cannot be both 'integral' and a floating-point 'type'.");
-					}
-				}
-			}
-			
-			// legge il testo contenente i dati, fa il parse e mette i dati
-			{
-				String strData = attributeNode.getChildNodes().item(0).getNodeValue();
-				dataArray = pAttribType.parse(strData);
-			}
+	
+	/**
+	 * Renders instanceCount instances of the mesh. The mat4 attribute matrixAttribIx (4 locations)
+	 * takes one matrix per instance from the array buffer instanceBuffer, starting at the byte offset
+	 * instanceOffset; it is disabled again before returning, so render() is not affected. The 4
+	 * locations must not be used by the attributes of the mesh (see checkInstanceAttributes()).
+	 */
+	void renderInstanced(int instanceCount, int instanceBuffer, long instanceOffset, int matrixAttribIx) {
+		if (oVAO == 0 || instanceCount == 0) {
+			return;
 		}
 		
-		private int getDataNumElem() {
-			return dataArray.limit();
+		checkInstanceAttributes(matrixAttribIx);
+		
+		if (g_boundVAO != oVAO || !g_bBatching) {
+			bindVertexArray(oVAO);
 		}
 		
-		public int numElements() {
-			return getDataNumElem() / iSize;
+		// The pointers are set at every call, since the same mesh can take its matrices from different
+		// parts of the buffer.
+		glBindBuffer(GL_ARRAY_BUFFER, instanceBuffer);
+		for (int iColumn = 0; iColumn < 4; iColumn++) {
+			glEnableVertexAttribArray(matrixAttribIx + iColumn);
+			glVertexAttribPointer(matrixAttribIx + iColumn, 4, GL_FLOAT, false, 16 * 4, instanceOffset + iColumn * 4 * 4);
+			glVertexAttribDivisor(matrixAttribIx + iColumn, 1);
 		}
+		glBindBuffer(GL_ARRAY_BUFFER, 0);
 		
-		public int calcByteSize() {
-			return getDataNumElem() * pAttribType.iNumBytes;
+		for (int i = 0; i < drawCalls.size(); i++) {
+			renderInstanced(drawCalls.get(i), instanceCount);
 		}
 		
-		public void fillBoundBufferObject(int iOffset) {
-			pAttribType.writeToBuffer(GL_ARRAY_BUFFER, dataArray, iOffset);
+		for (int iColumn = 0; iColumn < 4; iColumn++) {
+			glVertexAttribDivisor(matrixAttribIx + iColumn, 0);
+			glDisableVertexAttribArray(matrixAttribIx + iColumn);
 		}
 		
-		public void setupAttributeArray(int iOffset) {
-			glEnableVertexAttribArray(iAttribIx);
-			if (bIsIntegral) {
-				glVertexAttribIPointer(iAttribIx, iSize, pAttribType.eGLType, 0, iOffset);
-			} else {
-				glVertexAttribPointer(iAttribIx, iSize, pAttribType.eGLType, pAttribType.bNormalized, 0, iOffset);
-			}
+		if (!g_bBatching) {
+			bindVertexArray(0);
 		}
 	}
 	
-	private static class AttribType {
-		
-		boolean bNormalized;
-		int eGLType;
-		int iNumBytes;
-		private ParseFunc parse;
-		private WriteFunc write;
-		
-		private AttribType(boolean bNormalized, int eGLType, int iNumBytes, ParseFunc parse, WriteFunc write) {
-			this.bNormalized = bNormalized;
-			this.eGLType = eGLType;
-			this.iNumBytes = iNumBytes;
-			this.parse = parse;
-			this.write = write;
-		}
-		
-		public Buffer parse(String strData) {
-			return parse.parse(strData);
-		}
-		
-		public void writeToBuffer(int eBuffer, Buffer theData, int iOffset) {
-			write.writeToBuffer(eBuffer, theData, iOffset);
+	
+	/**
+	 * Throws a RuntimeException if the mesh has an attribute in the locations of the mat4 attribute
+	 * matrixAttribIx, which renderInstanced() would overwrite and then disable.
+	 */
+	void checkInstanceAttributes(int matrixAttribIx) {
+		if ((usedAttribs & (0xFL << matrixAttribIx)) != 0) {
+			throw new RuntimeException("The mesh already uses some of the attributes " + matrixAttribIx + " to "
+					+ (matrixAttribIx + 3) + ", needed by the instance matrices.");
 		}
+	}
+	
+	
+	public void deleteObjects() {
+		glDeleteBuffers(oAttribArraysBuffer);
+		glDeleteBuffers(oIndexBuffer);
+		glDeleteVertexArrays(oVAO);
 		
-		// varie funzioni di parse
-		private static ParseFunc parseFloats = new ParseFunc() {
-			public Buffer parse(String strToParse) {
-				Scanner scn = new Scanner(strToParse);
-				scn.useDelimiter("\\s+");
-				ArrayList<Float> array = new ArrayList<>();
-				
-				while (scn.hasNext()) {
-					array.add(Float.parseFloat(scn.next()));
-				}
-				
-				FloatBuffer buff = BufferUtils.createFloatBuffer(array.size());
-				for (Float data : array) {
-					buff.put(data);
-				}
-				buff.flip();
-				return buff;
-			}
-		};
-		private static ParseFunc parseInts = new ParseFunc() {
-			public Buffer parse(String strToParse) {
-				Scanner scn = new Scanner(strToParse);
-				scn.useDelimiter("\\s+");
-				ArrayList<Integer> array = new ArrayList<>();
-				
-				while (scn.hasNext()) {
-					array.add((int) Long.parseLong(scn.next()));
-				}
-				
-				IntBuffer buff = BufferUtils.createIntBuffer(array.size());
-				for (Integer data : array) {
-					buff.put(data);
-				}
-				buff.flip();
-				return buff;
-			}
-		};
-		private static ParseFunc parseShorts = new ParseFunc() {
-			public Buffer parse(String strToParse) {
-				Scanner scn = new Scanner(strToParse);
-				scn.useDelimiter("\\s+");
-				ArrayList<Short> array = new ArrayList<>();
-				
-				while (scn.hasNext()) {
-					array.add((short) Integer.parseInt(scn.next()));
-				}
-				
-				ShortBuffer buff = BufferUtils.createShortBuffer(array.size());
-				for (Short data : array) {
-					buff.put(data);
-				}
-				buff.flip();
-				return buff;
-			}
-		};
-		private static ParseFunc parseBytes = new ParseFunc() {
-			public Buffer parse(String strToParse) {
-				Scanner scn = new Scanner(strToParse);
-				scn.useDelimiter("\\s+");
-				ArrayList<Byte> array = new ArrayList<>();
-				
-				while (scn.hasNext()) {
-					array.add((byte) Short.parseShort(scn.next()));
-				}
-				
-				ByteBuffer buff = BufferUtils.createByteBuffer(array.size());
-				for (Byte data : array) {
-					buff.put(data);
-				}
-				buff.flip();
-				return buff;
-			}
-		};
-		
-		// varie funzioni di write
-		private static WriteFunc writeFloats = new WriteFunc() {
-			public void writeToBuffer(int eBuffer, Buffer theData, int iOffset) {
-				glBufferSubData(eBuffer, iOffset, (FloatBuffer) theData);
-			}
-		};
-		private static WriteFunc writeInts = new WriteFunc() {
-			public void writeToBuffer(int eBuffer, Buffer theData, int iOffset) {
-				glBufferSubData(eBuffer, iOffset, (IntBuffer) theData);
-			}
-		};
-		private static WriteFunc writeShorts = new WriteFunc() {
-			public void writeToBuffer(int eBuffer, Buffer theData, int iOffset) {
-				glBufferSubData(eBuffer, iOffset, (ShortBuffer) theData);
-			}
-		};
-		private static WriteFunc writeBytes = new WriteFunc() {
-			public void writeToBuffer(int eBuffer, Buffer theData, int iOffset) {
-				glBufferSubData(eBuffer, iOffset, (ByteBuffer) theData);
-			}
-		};
-		
-		private static final Map<String, AttribType> allAttribType = new HashMap<>();
-		private static final Map<String, Integer> allPrimitiveType = new HashMap<>();
-		static {
-			allAttribType.put("float", new AttribType(false, GL_FLOAT, Float.SIZE / 8, parseFloats, writeFloats));
-			// {"half", false, GL_HALF_FLOAT, sizeof(GLhalfARB), ParseFloats,
-			// WriteFloats},
-			allAttribType.put("int", new AttribType(false, GL_INT, Integer.SIZE / 8, parseInts, writeInts));
-			allAttribType.put("uint", new AttribType(false, GL_UNSIGNED_INT, Integer.SIZE / 8, parseInts, writeInts));
-			// {"norm-int", true, GL_INT, sizeof(GLint), ParseInts, WriteInts},
-			// {"norm-uint", true, GL_UNSIGNED_INT, sizeof(GLuint), ParseUInts,
-			// WriteUInts},
-			allAttribType.put("short", new AttribType(false, GL_SHORT, Short.SIZE / 8, parseShorts, writeShorts));
-			allAttribType.put("ushort", new AttribType(false, GL_UNSIGNED_SHORT, Short.SIZE / 8, parseShorts, writeShorts));
-			// {"norm-short", true, GL_SHORT, sizeof(GLshort), ParseShorts,
-			// WriteShorts},
-			// {"norm-ushort", true, GL_UNSIGNED_SHORT, sizeof(GLushort),
-			// ParseUShorts, WriteUShorts},
-			allAttribType.put("byte", new AttribType(false, GL_BYTE, Byte.SIZE / 8, parseBytes, writeBytes));
-			allAttribType.put("ubyte", new AttribType(false, GL_UNSIGNED_BYTE, Byte.SIZE / 8, parseBytes, writeBytes));
-			// {"norm-byte", true, GL_BYTE, sizeof(GLbyte), ParseBytes,
-			// WriteBytes},
-			// {"norm-ubyte", true, GL_UNSIGNED_BYTE, sizeof(GLubyte),
-			// ParseUBytes, WriteUBytes},
-			
-			allPrimitiveType.put("triangles", GL_TRIANGLES);
-			allPrimitiveType.put("tri-strip", GL_TRIANGLE_STRIP);
-			allPrimitiveType.put("tri-fan", GL_TRIANGLE_FAN);
-			allPrimitiveType.put("lines", GL_LINES);
-			allPrimitiveType.put("line-strip", GL_LINE_STRIP);
-			allPrimitiveType.put("line-loop", GL_LINE_LOOP);
-			allPrimitiveType.put("points", GL_POINTS);
+		// cancella i named VAOs
+		for (Integer idVAO : namedVAOs.values()) {
+			glDeleteVertexArrays(idVAO);
 		}
 		
-		public static AttribType get(String type) {
-			AttribType attType = allAttribType.get(type);
-			if (attType == null) {
-				throw new RuntimeException("Unknown 'type' field.");
-			}
-			return attType;
+		// Deleting the bound VAO binds 0.
+		if (g_boundVAO == oVAO || namedVAOs.containsValue(g_boundVAO)) {
+			g_boundVAO = 0;
 		}
 	}
 	
-	public abstract static class ParseFunc {
-		abstract public Buffer parse(String strToParse);
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * The returned vectors must not be modified. A mesh without positions has infinite bounds, so it's
+	 * never culled.
+	 */
+	public Vec3 getAabbMin() {
+		return aabbMin;
+	}
+	
+	public Vec3 getAabbMax() {
+		return aabbMax;
+	}
+	
+	
+	public Vec3 getBoundingSphereCenter() {
+		return sphereCenter;
+	}
+	
+	public float getBoundingSphereRadius() {
+		return sphereRadius;
 	}
 	
-	public abstract static class WriteFunc {
-		abstract public void writeToBuffer(int eBuffer, Buffer theData, int iOffset);
+	
+	/**
+	 * The number of levels of detail, the full mesh included.
+	 */
+	public int getNumLods() {
+		return lodErrors.length;
 	}
 	
-	private static class RenderCmd {
-		boolean bIsIndexedCmd;
-		int ePrimType;
-		int start;
-		int elemCount;
-		int eIndexDataType; // Only if bIsIndexedCmd is true.
+	/**
+	 * The error of every level of detail, in model units (see MeshSimplifier).
+	 */
+	public float[] getLodErrors() {
+		return lodErrors.clone();
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * Starts remembering the bound VAO across render() calls.
+	 */
+	public static void beginBatch() {
+		g_bBatching = true;
+	}
+	
+	/**
+	 * Unbinds the VAO left bound by the batch.
+	 */
+	public static void endBatch() {
+		g_bBatching = false;
+		bindVertexArray(0);
+	}
+	
+	
+	/**
+	 * The number of draw calls issued by all the meshes since the last resetCounters().
+	 */
+	public static int getNumDrawCalls() {
+		return g_iNumDrawCalls;
+	}
+	
+	/**
+	 * The number of glBindVertexArray calls made by render() since the last resetCounters().
+	 */
+	public static int getNumVAOBinds() {
+		return g_iNumVAOBinds;
+	}
+	
+	public static void resetCounters() {
+		g_iNumDrawCalls = 0;
+		g_iNumVAOBinds = 0;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	private static class DrawCall {
+		RenderCmd cmd;
 		
-		public RenderCmd(Node cmdNode) {
-			NamedNodeMap attrs = cmdNode.getAttributes();
+		// Only for glMultiDrawArrays.
+		IntBuffer firsts;
+		IntBuffer counts;
+	}
+	
+	
+	private void buildDrawCalls(List<RenderCmd> primitives) {
+		for (int i = 0; i < primitives.size(); i++) {
+			RenderCmd cmd = primitives.get(i);
+			DrawCall drawCall = new DrawCall();
+			drawCall.cmd = cmd;
 			
-			{
-				// ricava cmd
-				Node cmdAttr = attrs.getNamedItem("cmd");
-				if (cmdAttr == null) {
-					throw new RuntimeException("Missing 'cmd' attribute in an 'arrays' or 'indices' element.");
-				}
-				String strCmd = cmdAttr.getNodeValue();
-				Integer primitive = AttribType.allPrimitiveType.get(strCmd);
-				if (primitive == null) {
-					throw new RuntimeException("Unknown 'cmd' field.");
+			if (!cmd.bIsIndexedCmd) {
+				// i comandi arrays consecutivi con la stessa primitiva diventano un'unica chiamata
+				int iLast = i;
+				while (iLast + 1 < primitives.size() && !primitives.get(iLast + 1).bIsIndexedCmd
+						&& primitives.get(iLast + 1).ePrimType == cmd.ePrimType) {
+					iLast++;
 				}
-				ePrimType = primitive;
-			}
-			
-			if (cmdNode.getNodeName().equals("indices")) {
-				bIsIndexedCmd = true;
-			} else if (cmdNode.getNodeName().equals("arrays")) {
-				bIsIndexedCmd = false;
 				
-				{
-					Node nodeStart = cmdNode.getAttributes().getNamedItem("start");
-					if (nodeStart == null) {
-						throw new RuntimeException("Missing 'start' attribute in an 'arrays' element.");
-					}
-					int iStart = Integer.parseInt(nodeStart.getNodeValue());
-					if (iStart < 0) {
-						throw new RuntimeException("Attribute 'start' must be between 0 or greater.");
-					}
-					start = iStart;
-				}
-				{
-					Node nodeCount = cmdNode.getAttributes().getNamedItem("count");
-					if (nodeCount == null) {
-						throw new RuntimeException("Missing 'count' attribute in an 'arrays' element.");
-					}
-					int iCount = Integer.parseInt(nodeCount.getNodeValue());
-					if (iCount <= 0) {
-						throw new RuntimeException("Attribute 'count' must be greater than 0.");
+				if (iLast > i) {
+					int iNumCmds = iLast - i + 1;
+					drawCall.firsts = BufferUtils.createIntBuffer(iNumCmds);
+					drawCall.counts = BufferUtils.createIntBuffer(iNumCmds);
+					
+					for (int j = i; j <= iLast; j++) {
+						drawCall.firsts.put(primitives.get(j).start);
+						drawCall.counts.put(primitives.get(j).elemCount);
 					}
-					elemCount = iCount;
+					
+					drawCall.firsts.flip();
+					drawCall.counts.flip();
+					i = iLast;
 				}
-			} else {
-				throw new RuntimeException("Bad element. Must be 'indices' or 'arrays'.");
 			}
+			
+			drawCalls.add(drawCall);
 		}
-		
-		public void render() {
-			if (bIsIndexedCmd)
-				glDrawElements(ePrimType, elemCount, eIndexDataType, start);
-			else
-				glDrawArrays(ePrimType, start, elemCount);
+	}
+	
+	
+	/**
+	 * The LODs are triangle lists, at the end of the index buffer.
+	 */
+	private void buildLodDrawCalls(MeshData meshData) {
+		lodErrors = meshData.lodErrors.clone();
+		
+		int iFirstLodArray = meshData.indexData.size() - (lodErrors.length - 1);
+		for (int i = iFirstLodArray; i < meshData.indexData.size(); i++) {
+			RenderCmd cmd = new RenderCmd();
+			cmd.bIsIndexedCmd = true;
+			cmd.ePrimType = GL_TRIANGLES;
+			cmd.start = meshData.indexStartLocs[i];
+			cmd.elemCount = meshData.indexData.get(i).getDataNumElem();
+			cmd.eIndexDataType = meshData.indexData.get(i).pAttribType.eGLType;
+			
+			DrawCall drawCall = new DrawCall();
+			drawCall.cmd = cmd;
+			lodDrawCalls.add(drawCall);
 		}
 	}
 	
-	private static class IndexData {
-		
-		AttribType pAttribType;
-		Buffer dataArray;
+	
+	/**
+	 * The sphere is centered on the box: not the smallest one, but cheap and never worse than the
+	 * sphere around the box.
+	 * 
+	 * The bounds contain the positions decoded by both the rules for signed normalized values, since
+	 * the driver can use either (see MeshData.Attribute.readFloats()).
+	 */
+	private void computeBounds(float positions[], float positionsPreGL42[]) {
+		if (positions != null && !Arrays.equals(positions, positionsPreGL42)) {
+			float both[] = Arrays.copyOf(positions, positions.length * 2);
+			System.arraycopy(positionsPreGL42, 0, both, positions.length, positions.length);
+			positions = both;
+		}
+		
+		if (positions == null || positions.length == 0) {
+			float inf = Float.POSITIVE_INFINITY;
+			aabbMin = new Vec3(-inf);
+			aabbMax = new Vec3(inf);
+			sphereCenter = new Vec3();
+			sphereRadius = inf;
+			return;
+		}
 		
-		public IndexData(Node indexElem) {
-			NamedNodeMap attrs = indexElem.getAttributes();
-			// controlla che type sia valido
-			{
-				Node typeAttr = attrs.getNamedItem("type");
-				if (typeAttr == null) {
-					throw new RuntimeException("Missing 'type' attribute in an 'index' element.");
-				}
-				String strType = typeAttr.getNodeValue();
-				if (!(strType.equals("uint") || strType.equals("ushort") || strType.equals("ubyte"))) {
-					throw new RuntimeException("Improper 'type' attribute value on 'index' element.");
-				}
-				
-				pAttribType = AttribType.get(strType);
-			}
-			
-			// legge gli indici
-			{
-				String strIndex = indexElem.getChildNodes().item(0).getNodeValue();
-				dataArray = pAttribType.parse(strIndex);
-				if (dataArray.limit() == 0) {
-					throw new RuntimeException("The index element must have an array of values.");
-				}
-			}
+		aabbMin = new Vec3(positions[0], positions[1], positions[2]);
+		aabbMax = new Vec3(aabbMin);
+		for (int i = 3; i < positions.length; i += 3) {
+			aabbMin.x = Math.min(aabbMin.x, positions[i]);
+			aabbMin.y = Math.min(aabbMin.y, positions[i + 1]);
+			aabbMin.z = Math.min(aabbMin.z, positions[i + 2]);
+			aabbMax.x = Math.max(aabbMax.x, positions[i]);
+			aabbMax.y = Math.max(aabbMax.y, positions[i + 1]);
+			aabbMax.z = Math.max(aabbMax.z, positions[i + 2]);
 		}
 		
-		public void fillBoundBufferObject(int iOffset) {
-			pAttribType.writeToBuffer(GL_ELEMENT_ARRAY_BUFFER, dataArray, iOffset);
+		sphereCenter = Vec3.add(aabbMin, aabbMax).scale(0.5f);
+		
+		float fMaxDistSq = 0.0f;
+		for (int i = 0; i < positions.length; i += 3) {
+			float dx = positions[i] - sphereCenter.x;
+			float dy = positions[i + 1] - sphereCenter.y;
+			float dz = positions[i + 2] - sphereCenter.z;
+			fMaxDistSq = Math.max(fMaxDistSq, dx * dx + dy * dy + dz * dz);
+		}
+		sphereRadius = (float) Math.sqrt(fMaxDistSq);
+	}
+	
+	
+	private void render(int vao, int lod) {
+		if (g_boundVAO != vao || !g_bBatching) {
+			bindVertexArray(vao);
 		}
 		
-		public int getDataNumElem() {
-			return dataArray.limit();
+		// The levels missing are replaced by the coarsest one.
+		if (lod > 0 && !lodDrawCalls.isEmpty()) {
+			render(lodDrawCalls.get(Math.min(lod, lodDrawCalls.size()) - 1));
+		} else {
+			for (int i = 0; i < drawCalls.size(); i++) {
+				render(drawCalls.get(i));
+			}
 		}
 		
-		public int calcByteSize() {
-			return getDataNumElem() * pAttribType.iNumBytes;
+		if (!g_bBatching) {
+			bindVertexArray(0);
+		}
+	}
+	
+	private static void bindVertexArray(int vao) {
+		glBindVertexArray(vao);
+		g_boundVAO = vao;
+		g_iNumVAOBinds++;
+	}
+	
+	private static void setupAttributeArray(Attribute attrib, int iOffset, int iStride) {
+		glEnableVertexAttribArray(attrib.iAttribIx);
+		if (attrib.bIsIntegral) {
+			glVertexAttribIPointer(attrib.iAttribIx, attrib.iSize, attrib.pAttribType.eGLType, iStride, iOffset);
+		} else {
+			glVertexAttribPointer(attrib.iAttribIx, attrib.iSize, attrib.pAttribType.eGLType, attrib.pAttribType.bNormalized, iStride, iOffset);
 		}
 	}
 	
-	private static class NamedVAO {
-		String name;
-		ArrayList<Integer> attributes;
+	private static void render(DrawCall drawCall) {
+		RenderCmd cmd = drawCall.cmd;
+		
+		if (cmd.bIsIndexedCmd)
+			if (cmd.bPrimitiveRestart) {
+				glEnable(GL_PRIMITIVE_RESTART);
+				glPrimitiveRestartIndex(cmd.getPrimitiveRestartIndex());
+				glDrawElements(cmd.ePrimType, cmd.elemCount, cmd.eIndexDataType, cmd.start);
+				glDisable(GL_PRIMITIVE_RESTART);
+			} else {
+				glDrawElements(cmd.ePrimType, cmd.elemCount, cmd.eIndexDataType, cmd.start);
+			}
+		else if (drawCall.firsts != null)
+			glMultiDrawArrays(cmd.ePrimType, drawCall.firsts, drawCall.counts);
+		else
+			glDrawArrays(cmd.ePrimType, cmd.start, cmd.elemCount);
 		
-		public NamedVAO(Node itemVao) {
-			attributes = new ArrayList<>();
-			
-			NamedNodeMap attrs = itemVao.getAttributes();
-			{
-				Node nameAttr = attrs.getNamedItem("name");
-				if (nameAttr == null) {
-					throw new RuntimeException("Missing 'name' attribute in an 'vao' element.");
-				}
-				name = nameAttr.getNodeValue();
+		g_iNumDrawCalls++;
+	}
+	
+	/**
+	 * There is no instanced glMultiDrawArrays: the merged 'arrays' commands are drawn one by one.
+	 */
+	private static void renderInstanced(DrawCall drawCall, int instanceCount) {
+		RenderCmd cmd = drawCall.cmd;
+		
+		if (cmd.bIsIndexedCmd) {
+			if (cmd.bPrimitiveRestart) {
+				glEnable(GL_PRIMITIVE_RESTART);
+				glPrimitiveRestartIndex(cmd.getPrimitiveRestartIndex());
+				glDrawElementsInstanced(cmd.ePrimType, cmd.elemCount, cmd.eIndexDataType, cmd.start, instanceCount);
+				glDisable(GL_PRIMITIVE_RESTART);
+			} else {
+				glDrawElementsInstanced(cmd.ePrimType, cmd.elemCount, cmd.eIndexDataType, cmd.start, instanceCount);
 			}
-			
-			Element elemVao = (Element) itemVao;
-			NodeList sources = elemVao.getElementsByTagName("source");
-			for (int i = 0; i < sources.getLength(); i++) {
-				Node attrib = sources.item(i).getAttributes().getNamedItem("attrib");
-				if (attrib == null) {
-					throw new RuntimeException("Missing 'attrib' attribute in an 'source' element.");
-				}
-				attributes.add(Integer.parseInt(attrib.getNodeValue()));
+			g_iNumDrawCalls++;
+		} else if (drawCall.firsts != null) {
+			for (int i = 0; i < drawCall.firsts.limit(); i++) {
+				glDrawArraysInstanced(cmd.ePrimType, drawCall.firsts.get(i), drawCall.counts.get(i), instanceCount);
+				g_iNumDrawCalls++;
 			}
+		} else {
+			glDrawArraysInstanced(cmd.ePrimType, cmd.start, cmd.elemCount, instanceCount);
+			g_iNumDrawCalls++;
 		}
 	}
 }
@@ -0,0 +1,486 @@
+package rosick.jglsdk.framework;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+import rosick.jglsdk.framework.MeshData.AttribType;
+import rosick.jglsdk.framework.MeshData.Attribute;
+import rosick.jglsdk.framework.MeshData.IndexData;
+import rosick.jglsdk.framework.MeshData.NamedVAO;
+import rosick.jglsdk.framework.MeshData.RenderCmd;
+
+
+/**
+ * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
+ * 
+ * Compiled meshes. The first time a mesh file is loaded its MeshData is written in a binary file in
+ * the cache directory; the next loads map that file and use its attribute and index arrays as they are,
+ * as long as the hash of the source file didn't change.
+ * 
+ * The binary file contains a big-endian header describing attributes (and their layout), indices,
+ * commands and VAOs, followed by the vertex buffer and the index arrays (each one starting on a 16 bytes
+ * boundary) in native order.
+ * 
+ * Meshes processed by MeshOptimizer, IndexCompactor, MeshSimplifier or MeshQuantizer have their own
+ * cache files.
+ * 
+ * Set the "rosick.meshCacheDir" property to choose the cache directory and "rosick.disableMeshCache"
+ * to always parse the source files.
+ * 
+ * @author integeruser
+ */
+public class MeshCache {
+	
+	private static final int MAGIC_NUMBER	= 0x4D455348;									// "MESH"
+	private static final int VERSION		= 4;
+	
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * Converts the given mesh files (classpath paths, eg. /rosick/mckesson/data/UnitCube.xml) and stores
+	 * them in the cache directory.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("Usage: MeshCache <mesh path>...");
+			System.exit(1);
+		}
+		
+		MeshQuantizer quantizer = MeshQuantizer.getDefault();
+		
+		for (String filePath : args) {
+			byte source[] = readSource(filePath);
+			File cacheFile = getCacheFile(filePath, quantizer);
+			
+			write(cacheFile, hash(source), parse(filePath, source, quantizer));
+			
+			System.out.printf("%s: %d bytes -> %s (%d bytes)\n", filePath, source.length, cacheFile, cacheFile.length());
+		}
+	}
+	
+	
+	/**
+	 * Returns the MeshData of the mesh file, reading it from the cache if it's still up to date. The
+	 * attributes are quantized if the "rosick.meshQuantizeError" property is set.
+	 */
+	public static MeshData load(String filePath) {
+		return load(filePath, MeshQuantizer.getDefault());
+	}
+	
+	/**
+	 * Same as load(filePath), quantizing the attributes with quantizer (if not null). Quantized meshes
+	 * have their own cache files, one for each error bound.
+	 */
+	public static MeshData load(String filePath, MeshQuantizer quantizer) {
+		byte source[];
+		try {
+			source = readSource(filePath);
+		} catch (IOException e) {
+			throw new RuntimeException("Cannot read the mesh file " + filePath + ".", e);
+		}
+		
+		if (Boolean.getBoolean("rosick.disableMeshCache")) {
+			return parse(filePath, source, quantizer);
+		}
+		
+		long sourceHash = hash(source);
+		File cacheFile = getCacheFile(filePath, quantizer);
+		
+		MeshData meshData = read(cacheFile, sourceHash);
+		if (meshData == null) {
+			// Missing or stale.
+			meshData = parse(filePath, source, quantizer);
+			
+			try {
+				write(cacheFile, sourceHash, meshData);
+			} catch (IOException e) {
+				System.err.println("Cannot write the compiled mesh " + cacheFile + ": " + e.getMessage());
+			}
+		}
+		
+		return meshData;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	static File getCacheFile(String filePath, MeshQuantizer quantizer) {
+		String cacheDir = System.getProperty("rosick.meshCacheDir");
+		if (cacheDir == null) {
+			cacheDir = new File(System.getProperty("java.io.tmpdir"), "rosick-mesh-cache").getPath();
+		}
+		
+		String fileName = filePath.replaceAll("^[/\\\\]+", "").replaceAll("[/\\\\:]", ".");
+		if (MeshOptimizer.isEnabled()) {
+			fileName += ".opt";
+		}
+		if (IndexCompactor.isEnabled()) {
+			fileName += ".idx";
+		}
+		if (MeshSimplifier.isEnabled()) {
+			fileName += ".lod" + MeshSimplifier.getDefaultNumLods();
+		}
+		if (quantizer != null) {
+			fileName += ".q" + quantizer.getMaxError();
+		}
+		fileName += ".mesh";
+		
+		return new File(cacheDir, fileName);
+	}
+	
+	
+	private static MeshData parse(String filePath, byte source[], MeshQuantizer quantizer) {
+		MeshData meshData = new MeshData(new ByteArrayInputStream(source));
+		
+		if (MeshOptimizer.isEnabled()) {
+			System.out.printf("%s: vertex cache optimized, %s\n", filePath, MeshOptimizer.optimize(meshData));
+		}
+		
+		if (IndexCompactor.isEnabled()) {
+			System.out.printf("%s: indices compacted, %s\n", filePath, IndexCompactor.compact(meshData));
+		}
+		
+		if (MeshSimplifier.isEnabled()) {
+			System.out.printf("%s: LODs generated, %s\n", filePath,
+					MeshSimplifier.generateLods(meshData, MeshSimplifier.getDefaultNumLods(), MeshSimplifier.DEFAULT_LOD_RATIO));
+		}
+		
+		if (quantizer != null) {
+			int iOldSize = meshData.attribArraysBuffer.limit();
+			int iSaved = quantizer.quantize(meshData);
+			
+			System.out.printf("%s: attributes quantized (max error %s), %d -> %d bytes, %d bytes saved\n",
+					filePath, quantizer.getMaxError(), iOldSize, iOldSize - iSaved, iSaved);
+		}
+		
+		return meshData;
+	}
+	
+	
+	private static byte[] readSource(String filePath) throws IOException {
+		InputStream in = MeshCache.class.getResourceAsStream(filePath);
+		if (in == null) {
+			throw new IOException("Mesh file not found: " + filePath);
+		}
+		
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(in.available(), 4096));
+			byte temp[] = new byte[8192];
+			int read;
+			
+			while ((read = in.read(temp)) != -1) {
+				out.write(temp, 0, read);
+			}
+			
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+	
+	
+	private static long hash(byte source[]) {
+		CRC32 crc = new CRC32();
+		crc.update(source);
+		
+		return ((long) source.length << 32) | crc.getValue();
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	static void write(File cacheFile, long sourceHash, MeshData meshData) throws IOException {
+		ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+		DataOutputStream header = new DataOutputStream(headerBytes);
+		
+		header.writeInt(MAGIC_NUMBER);
+		header.writeInt(VERSION);
+		header.writeBoolean(ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN);
+		header.writeLong(sourceHash);
+		
+		header.writeInt(meshData.attribs.size());
+		header.writeInt(meshData.attribStride);
+		for (int i = 0; i < meshData.attribs.size(); i++) {
+			Attribute attrib = meshData.attribs.get(i);
+			
+			header.writeInt(attrib.iAttribIx);
+			header.writeInt(attrib.iSize);
+			writeString(header, attrib.pAttribType.strName);
+			header.writeBoolean(attrib.bIsIntegral);
+			header.writeInt(meshData.attribStartLocs[i]);
+			header.writeInt(attrib.calcByteSize());
+		}
+		
+		header.writeInt(meshData.indexData.size());
+		for (int i = 0; i < meshData.indexData.size(); i++) {
+			IndexData indexData = meshData.indexData.get(i);
+			
+			writeString(header, indexData.pAttribType.strName);
+			header.writeInt(meshData.indexStartLocs[i]);
+			header.writeInt(indexData.calcByteSize());
+		}
+		
+		header.writeInt(meshData.primitives.size());
+		for (RenderCmd cmd : meshData.primitives) {
+			header.writeBoolean(cmd.bIsIndexedCmd);
+			header.writeInt(cmd.ePrimType);
+			header.writeInt(cmd.start);
+			header.writeInt(cmd.elemCount);
+			header.writeInt(cmd.eIndexDataType);
+			header.writeBoolean(cmd.bPrimitiveRestart);
+		}
+		
+		header.writeInt(meshData.namedVaoList.size());
+		for (NamedVAO namedVao : meshData.namedVaoList) {
+			writeString(header, namedVao.name);
+			header.writeInt(namedVao.attributes.size());
+			
+			for (Integer attrib : namedVao.attributes) {
+				header.writeInt(attrib);
+			}
+		}
+		
+		header.writeInt(meshData.lodErrors.length);
+		for (float fError : meshData.lodErrors) {
+			header.writeFloat(fError);
+		}
+		
+		header.writeInt(meshData.attribArraysBuffer.limit());
+		header.writeInt(meshData.indexBuffer.limit());
+		header.flush();
+		
+		// Write in a temporary file first, so that a partial file is never seen by the loader.
+		File cacheDir = cacheFile.getAbsoluteFile().getParentFile();
+		if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+			throw new IOException("Cannot create the directory " + cacheDir);
+		}
+		
+		File tempFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheDir);
+		try {
+			try (FileOutputStream out = new FileOutputStream(tempFile)) {
+				FileChannel channel = out.getChannel();
+				
+				int position = headerBytes.size();
+				writeFully(channel, ByteBuffer.wrap(headerBytes.toByteArray()));
+				position += writePadding(channel, position);
+				
+				position += writeFully(channel, meshData.attribArraysBuffer.duplicate());
+				position += writePadding(channel, position);
+				
+				writeFully(channel, meshData.indexBuffer.duplicate());
+			}
+			
+			Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			tempFile.delete();
+		}
+	}
+	
+	
+	/**
+	 * Returns null if the file is missing, unreadable or out of date.
+	 */
+	static MeshData read(File cacheFile, long sourceHash) {
+		if (!cacheFile.isFile()) {
+			return null;
+		}
+		
+		ByteBuffer fileData;
+		try (FileInputStream in = new FileInputStream(cacheFile)) {
+			FileChannel channel = in.getChannel();
+			fileData = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} catch (IOException e) {
+			return null;
+		}
+		
+		try {
+			return read(fileData, sourceHash);
+		} catch (RuntimeException e) {
+			// Truncated or corrupted, it will be rewritten.
+			return null;
+		}
+	}
+	
+	private static MeshData read(ByteBuffer fileData, long sourceHash) {
+		if (fileData.getInt() != MAGIC_NUMBER || fileData.getInt() != VERSION) {
+			return null;
+		}
+		
+		boolean bLittleEndian = fileData.get() != 0;
+		if (bLittleEndian != (ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN)) {
+			return null;
+		}
+		
+		if (fileData.getLong() != sourceHash) {
+			return null;
+		}
+		
+		MeshData meshData = new MeshData();
+		
+		int attribCount = fileData.getInt();
+		meshData.attribStride = fileData.getInt();
+		meshData.bInterleaved = meshData.attribStride != 0;
+		int attribByteSizes[] = new int[attribCount];
+		meshData.attribStartLocs = new int[attribCount];
+		for (int i = 0; i < attribCount; i++) {
+			Attribute attrib = new Attribute();
+			
+			attrib.iAttribIx = fileData.getInt();
+			attrib.iSize = fileData.getInt();
+			attrib.pAttribType = AttribType.get(readString(fileData));
+			attrib.bIsIntegral = fileData.get() != 0;
+			meshData.attribStartLocs[i] = fileData.getInt();
+			attribByteSizes[i] = fileData.getInt();
+			
+			meshData.attribs.add(attrib);
+		}
+		
+		int indexCount = fileData.getInt();
+		int indexByteSizes[] = new int[indexCount];
+		meshData.indexStartLocs = new int[indexCount];
+		for (int i = 0; i < indexCount; i++) {
+			IndexData indexData = new IndexData();
+			
+			indexData.pAttribType = AttribType.get(readString(fileData));
+			meshData.indexStartLocs[i] = fileData.getInt();
+			indexByteSizes[i] = fileData.getInt();
+			
+			meshData.indexData.add(indexData);
+		}
+		
+		int primitiveCount = fileData.getInt();
+		for (int i = 0; i < primitiveCount; i++) {
+			RenderCmd cmd = new RenderCmd();
+			
+			cmd.bIsIndexedCmd = fileData.get() != 0;
+			cmd.ePrimType = fileData.getInt();
+			cmd.start = fileData.getInt();
+			cmd.elemCount = fileData.getInt();
+			cmd.eIndexDataType = fileData.getInt();
+			cmd.bPrimitiveRestart = fileData.get() != 0;
+			
+			meshData.primitives.add(cmd);
+		}
+		
+		int namedVaoCount = fileData.getInt();
+		for (int i = 0; i < namedVaoCount; i++) {
+			NamedVAO namedVao = new NamedVAO();
+			namedVao.name = readString(fileData);
+			
+			int sourceCount = fileData.getInt();
+			for (int j = 0; j < sourceCount; j++) {
+				namedVao.attributes.add(fileData.getInt());
+			}
+			
+			meshData.namedVaoList.add(namedVao);
+		}
+		
+		meshData.lodErrors = new float[fileData.getInt()];
+		for (int i = 0; i < meshData.lodErrors.length; i++) {
+			meshData.lodErrors[i] = fileData.getFloat();
+		}
+		
+		int attribArraysSize = fileData.getInt();
+		int indexSize = fileData.getInt();
+		
+		int attribArraysStart = MeshData.align16(fileData.position());
+		int indexStart = MeshData.align16(attribArraysStart + attribArraysSize);
+		if (indexStart + indexSize > fileData.limit()) {
+			return null;
+		}
+		
+		meshData.attribArraysBuffer = slice(fileData, attribArraysStart, attribArraysSize);
+		meshData.indexBuffer = slice(fileData, indexStart, indexSize);
+		
+		// The arrays are views of the mapped file: nothing is copied, except the attributes of an
+		// interleaved mesh which need their own arrays.
+		if (meshData.bInterleaved) {
+			Attribute first = meshData.attribs.get(0);
+			int iNumVertices = attribByteSizes[0] / (first.iSize * first.pAttribType.iNumBytes);
+			
+			VertexLayout layout = VertexLayout.interleaved(meshData.attribStride, meshData.attribStartLocs, iNumVertices);
+			if (layout.getBufferSize() > attribArraysSize) {
+				return null;
+			}
+			layout.unpack(meshData.attribArraysBuffer, meshData.attribs);
+		} else {
+			for (int i = 0; i < attribCount; i++) {
+				Attribute attrib = meshData.attribs.get(i);
+				attrib.dataArray = MeshData.viewBuffer(meshData.attribArraysBuffer, meshData.attribStartLocs[i], attribByteSizes[i], attrib.pAttribType);
+			}
+		}
+		
+		for (int i = 0; i < indexCount; i++) {
+			IndexData indexData = meshData.indexData.get(i);
+			indexData.dataArray = MeshData.viewBuffer(meshData.indexBuffer, meshData.indexStartLocs[i], indexByteSizes[i], indexData.pAttribType);
+		}
+		
+		return meshData;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		byte bytes[] = string.getBytes(UTF8);
+		
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	private static String readString(ByteBuffer in) {
+		byte bytes[] = new byte[in.getInt()];
+		in.get(bytes);
+		
+		return new String(bytes, UTF8);
+	}
+	
+	
+	private static int writeFully(FileChannel channel, ByteBuffer data) throws IOException {
+		int written = 0;
+		
+		data.rewind();
+		while (data.hasRemaining()) {
+			written += channel.write(data);
+		}
+		
+		return written;
+	}
+	
+	private static int writePadding(FileChannel channel, int position) throws IOException {
+		return writeFully(channel, ByteBuffer.allocate(MeshData.align16(position) - position));
+	}
+	
+	
+	private static ByteBuffer slice(ByteBuffer data, int start, int size) {
+		ByteBuffer res = data.duplicate();
+		res.position(start);
+		res.limit(start + size);
+		
+		return res.slice().order(ByteOrder.nativeOrder());
+	}
+}
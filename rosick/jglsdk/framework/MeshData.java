@@ -0,0 +1,1078 @@
+package rosick.jglsdk.framework;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL30.*;
+
+import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.lwjgl.BufferUtils;
+
+import rosick.jglsdk.glutil.TriangleBvh;
+
+
+/**
+ * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
+ * 
+ * The CPU side of a Mesh: the parsed attributes, indices and commands, plus the buffers that will
+ * be sent to the buffer objects. No OpenGL call is made here.
+ * 
+ * @author integeruser
+ */
+public class MeshData {
+	
+	ArrayList<Attribute> attribs = new ArrayList<>(16);
+	ArrayList<IndexData> indexData = new ArrayList<>();
+	ArrayList<NamedVAO> namedVaoList = new ArrayList<>();
+	ArrayList<RenderCmd> primitives = new ArrayList<>();
+	
+	// With the interleaved layout attribStartLocs are the offsets inside a vertex and attribStride
+	// is the vertex size; with the planar one every attribute array starts on a 16 bytes boundary
+	// and attribStride is 0. Index arrays always start on a 16 bytes boundary.
+	boolean bInterleaved = true;
+	ByteBuffer attribArraysBuffer;
+	int attribStartLocs[];
+	int attribStride;
+	ByteBuffer indexBuffer;
+	int indexStartLocs[];
+	
+	// The error (in model units) of every level of detail, 0 for the full mesh. The index arrays of the
+	// LODs 1, 2, ... are the last ones of indexData, and aren't used by any RenderCmd.
+	float lodErrors[] = new float[1];
+	
+	
+	MeshData() {
+	}
+	
+	public MeshData(InputStream meshStream) {
+		// The file is read as a stream: the values of an element are parsed while the text
+		// goes by, without building a DOM or splitting strings.
+		ArrayList<RenderCmd> arrayCmds = new ArrayList<>();
+		try {
+			XMLInputFactory factory = XMLInputFactory.newInstance();
+			XMLStreamReader reader = factory.createXMLStreamReader(meshStream);
+			ValueTokenizer values = new ValueTokenizer(reader);
+			
+			while (reader.hasNext()) {
+				if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+					continue;
+				}
+				
+				switch (reader.getLocalName()) {
+				case "attribute":
+					// crea un Attribute e lo aggiunge a attribs
+					attribs.add(new Attribute(reader, values));
+					break;
+				case "vao":
+					// crea un NamedVAO e lo aggiunge a namedVaoList
+					namedVaoList.add(new NamedVAO(reader));
+					break;
+				case "indices":
+					// aggiunge a primitives il risultato di ProcessRenderCmd e a indexData
+					// il risultato di IndexData
+					primitives.add(new RenderCmd(reader));
+					indexData.add(new IndexData(reader, values));
+					break;
+				case "arrays":
+					arrayCmds.add(new RenderCmd(reader));
+					break;
+				}
+			}
+			
+			reader.close();
+		} catch (XMLStreamException e) {
+			e.printStackTrace();
+			System.exit(123);
+		}
+		
+		// i comandi arrays seguono sempre quelli indices
+		primitives.addAll(arrayCmds);
+		
+		pack();
+	}
+	
+	
+	/**
+	 * Switches between the interleaved layout (the default, as every attribute array of a mesh has the
+	 * same element count) and the planar one, laying out the buffers again.
+	 */
+	public void setInterleaved(boolean bInterleaved) {
+		if (this.bInterleaved != bInterleaved) {
+			this.bInterleaved = bInterleaved;
+			pack();
+		}
+	}
+	
+	public boolean isInterleaved() {
+		return bInterleaved;
+	}
+	
+	
+	/**
+	 * The number of levels of detail, the full mesh included (see MeshSimplifier).
+	 */
+	public int getNumLods() {
+		return lodErrors.length;
+	}
+	
+	public float[] getLodErrors() {
+		return lodErrors.clone();
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * Lays out the attribute and index arrays in the buffers that will be sent to the buffer objects,
+	 * interleaving the attributes unless setInterleaved(false) was called. After this call the data
+	 * of every IndexData (and of every Attribute, with the planar layout) is a view of those buffers.
+	 */
+	void pack() {
+		// controlla che tutti gli array di attributi abbiano la stessa lunghezza
+		// e calcola la posizione di ognuno nel buffer
+		VertexLayout layout = bInterleaved ? VertexLayout.interleaved(attribs) : VertexLayout.planar(attribs);
+		
+		attribStartLocs = new int[attribs.size()];
+		for (int i = 0; i < attribs.size(); i++) {
+			attribStartLocs[i] = layout.getOffset(i);
+		}
+		attribStride = layout.getStride();
+		
+		attribArraysBuffer = BufferUtils.createByteBuffer(layout.getBufferSize());
+		layout.pack(attribs, attribArraysBuffer);
+		
+		// Calcola la lunghezza dell'index buffer
+		int iIndexBufferSize = 0;
+		indexStartLocs = new int[indexData.size()];
+		for (int i = 0; i < indexData.size(); i++) {
+			iIndexBufferSize = align16(iIndexBufferSize);
+			
+			indexStartLocs[i] = iIndexBufferSize;
+			IndexData currData = indexData.get(i);
+			
+			iIndexBufferSize += currData.calcByteSize();
+		}
+		
+		indexBuffer = BufferUtils.createByteBuffer(iIndexBufferSize);
+		for (int i = 0; i < indexData.size(); i++) {
+			IndexData currData = indexData.get(i);
+			currData.dataArray = putBuffer(indexBuffer, indexStartLocs[i], currData.dataArray, currData.pAttribType);
+		}
+		
+		// completa i RenderCmd
+		int iCurrIndexed = 0;
+		for (int i = 0; i < primitives.size(); i++) {
+			RenderCmd prim = primitives.get(i);
+			if (prim.bIsIndexedCmd) {
+				prim.start = indexStartLocs[iCurrIndexed];
+				prim.elemCount = indexData.get(iCurrIndexed).getDataNumElem();
+				prim.eIndexDataType = indexData.get(iCurrIndexed).pAttribType.eGLType;
+				iCurrIndexed++;
+			}
+		}
+	}
+	
+	
+	/**
+	 * The positions (attribute 0) of the vertices converted to float, 3 for each vertex; missing
+	 * components are 0. Returns null if the mesh has no attribute 0.
+	 */
+	float[] readPositions() {
+		return readPositions(false);
+	}
+	
+	/**
+	 * Like readPositions(), with signed normalized values decoded by the rule before OpenGL 4.2 if
+	 * bPreGL42 is true (see readFloats()).
+	 */
+	float[] readPositions(boolean bPreGL42) {
+		for (Attribute attrib : attribs) {
+			if (attrib.iAttribIx == 0) {
+				return attrib.readFloats(3, bPreGL42);
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * The triangles of all the triangle commands (indexed or not), 3 vertex indices for each one.
+	 * Strips and fans are split in triangles, keeping their winding; the other primitives are skipped.
+	 */
+	int[] readTriangles() {
+		int triangles[] = new int[0];
+		int iNumTriangles = 0;
+		
+		int iCurrIndexed = 0;
+		for (RenderCmd cmd : primitives) {
+			int indices[];
+			if (cmd.bIsIndexedCmd) {
+				indices = indexData.get(iCurrIndexed).getIndices();
+				iCurrIndexed++;
+			} else {
+				indices = new int[cmd.elemCount];
+				for (int i = 0; i < indices.length; i++) {
+					indices[i] = cmd.start + i;
+				}
+			}
+			
+			if (cmd.ePrimType != GL_TRIANGLES && cmd.ePrimType != GL_TRIANGLE_STRIP && cmd.ePrimType != GL_TRIANGLE_FAN) {
+				continue;
+			}
+			
+			if (triangles.length < (iNumTriangles + indices.length) * 3) {
+				triangles = Arrays.copyOf(triangles, (iNumTriangles + indices.length) * 3);
+			}
+			
+			int restartIndex = cmd.bIsIndexedCmd && cmd.bPrimitiveRestart ? cmd.getPrimitiveRestartIndex() : -1;
+			boolean bHasRestart = cmd.bIsIndexedCmd && cmd.bPrimitiveRestart;
+			
+			// Every stretch between two restarts is a primitive by itself.
+			int iSegmentStart = 0;
+			for (int i = 0; i <= indices.length; i++) {
+				if (i < indices.length && !(bHasRestart && indices[i] == restartIndex)) {
+					continue;
+				}
+				
+				for (int j = iSegmentStart + 2; j < i; j++) {
+					int a, b, c = indices[j];
+					
+					if (cmd.ePrimType == GL_TRIANGLES) {
+						if ((j - iSegmentStart) % 3 != 2) {
+							continue;
+						}
+						a = indices[j - 2];
+						b = indices[j - 1];
+					} else if (cmd.ePrimType == GL_TRIANGLE_FAN) {
+						a = indices[iSegmentStart];
+						b = indices[j - 1];
+					} else if ((j - iSegmentStart) % 2 == 0) {
+						a = indices[j - 2];
+						b = indices[j - 1];
+					} else {
+						a = indices[j - 1];
+						b = indices[j - 2];
+					}
+					
+					triangles[iNumTriangles * 3] 	 = a;
+					triangles[iNumTriangles * 3 + 1] = b;
+					triangles[iNumTriangles * 3 + 2] = c;
+					iNumTriangles++;
+				}
+				
+				iSegmentStart = i + 1;
+			}
+		}
+		
+		return Arrays.copyOf(triangles, iNumTriangles * 3);
+	}
+	
+	
+	/**
+	 * Builds a TriangleBvh over the triangles of the mesh, in model space, for picking. No OpenGL
+	 * call is made. Returns null if the mesh has no positions.
+	 */
+	public TriangleBvh buildTriangleBvh() {
+		float positions[] = readPositions();
+		if (positions == null) {
+			return null;
+		}
+		
+		return new TriangleBvh(positions, readTriangles());
+	}
+	
+	
+	static int align16(int byteOffset) {
+		return byteOffset % 16 != 0 ? (byteOffset + (16 - byteOffset % 16)) : byteOffset;
+	}
+	
+	
+	/**
+	 * Returns a view of byteSize bytes of packedData, starting at byteOffset, typed as theType requires.
+	 */
+	static Buffer viewBuffer(ByteBuffer packedData, int byteOffset, int byteSize, AttribType theType) {
+		ByteBuffer bytes = packedData.duplicate();
+		bytes.position(byteOffset);
+		bytes.limit(byteOffset + byteSize);
+		bytes = bytes.slice().order(ByteOrder.nativeOrder());
+		
+		if (theType.eGLType == GL_FLOAT) {
+			return bytes.asFloatBuffer();
+		}
+		
+		switch (theType.iNumBytes) {
+		case 4:
+			return bytes.asIntBuffer();
+		case 2:
+			return bytes.asShortBuffer();
+		default:
+			return bytes;
+		}
+	}
+	
+	static Buffer putBuffer(ByteBuffer packedData, int byteOffset, Buffer theData, AttribType theType) {
+		Buffer view = viewBuffer(packedData, byteOffset, theData.limit() * theType.iNumBytes, theType);
+		
+		if (view instanceof FloatBuffer) {
+			((FloatBuffer) view).put(((FloatBuffer) theData).duplicate()).flip();
+		} else if (view instanceof IntBuffer) {
+			((IntBuffer) view).put(((IntBuffer) theData).duplicate()).flip();
+		} else if (view instanceof ShortBuffer) {
+			((ShortBuffer) view).put(((ShortBuffer) theData).duplicate()).flip();
+		} else {
+			((ByteBuffer) view).put(((ByteBuffer) theData).duplicate()).flip();
+		}
+		
+		return view;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	static class Attribute {
+		int iAttribIx = 0xFFFFFFFF;
+		AttribType pAttribType = null;
+		int iSize = -1;
+		boolean bIsIntegral = false;
+		Buffer dataArray;
+		
+		Attribute() {
+		}
+		
+		Attribute(XMLStreamReader reader, ValueTokenizer values) throws XMLStreamException {
+			{
+				// ricava l'index
+				String strIndex = reader.getAttributeValue(null, "index");
+				if (strIndex == null) {
+					throw new RuntimeException("Missing 'index' attribute in an 'attribute' element.");
+				}
+				int index = Integer.parseInt(strIndex);
+				if (!((0 <= index) && (index < 16)))
+					throw new RuntimeException("Attribute index must be between 0 and 16.");
+				iAttribIx = index;
+			}
+			
+			{
+				// ricava il size
+				String strSize = reader.getAttributeValue(null, "size");
+				if (strSize == null) {
+					throw new RuntimeException("Missing 'size' attribute in an 'attribute' element.");
+				}
+				int size = Integer.parseInt(strSize);
+				if (!((1 <= size) && (size < 5)))
+					throw new RuntimeException("Attribute size must be between 1 and 4.");
+				iSize = size;
+			}
+			
+			{
+				// ricava il type
+				String strType = reader.getAttributeValue(null, "type");
+				if (strType == null) {
+					throw new RuntimeException("Missing 'type' attribute in an 'attribute' element.");
+				}
+				pAttribType = AttribType.get(strType);
+			}
+			
+			{
+				// ricava l' integral
+				String strIntegral = reader.getAttributeValue(null, "integral");
+				if (strIntegral == null) {
+					bIsIntegral = false;
+				} else {
+					if (strIntegral.equals("true")) {
+						bIsIntegral = true;
+					} else if (strIntegral == "false") {
+						bIsIntegral = false;
+					} else {
+						throw new RuntimeException("Incorrect 'integral' value for the 'attribute'.");
+					}
+					
+					// l'attributo non pu essere integral e normalized o
+					// floating point allo stesso tempo
+					if (pAttribType.bNormalized) {
+						throw new RuntimeException("Attribute cannot be both 'integral' and a normalized 'type'.");
+					}
+					
+					if (pAttribType.eGLType == GL_FLOAT || pAttribType.eGLType == GL_HALF_FLOAT || pAttribType.eGLType == GL_DOUBLE) {
+						throw new RuntimeException("Attribute cannot be both 'integral' and a floating-point 'type'.");
+					}
+				}
+			}
+			
+			// legge il testo contenente i dati, fa il parse e mette i dati
+			{
+				values.startElement();
+				dataArray = pAttribType.parse(values);
+			}
+		}
+		
+		private int getDataNumElem() {
+			return dataArray.limit();
+		}
+		
+		int numElements() {
+			return getDataNumElem() / iSize;
+		}
+		
+		int calcByteSize() {
+			return getDataNumElem() * pAttribType.iNumBytes;
+		}
+		
+		
+		/**
+		 * The first iComponents components of every element, converted to float as OpenGL would do
+		 * (normalized types end up in [0, 1] or [-1, 1]). A signed normalized c of b bits is decoded as
+		 * max(c / (2^(b-1) - 1), -1), the rule since OpenGL 4.2, or as (2c + 1) / (2^b - 1), the rule
+		 * before it, if bPreGL42 is true: the shaders target OpenGL 3.3, so the driver can use either.
+		 */
+		float[] readFloats(int iComponents, boolean bPreGL42) {
+			int iNumElements = numElements();
+			int iCopied = Math.min(iSize, iComponents);
+			float res[] = new float[iNumElements * iComponents];
+			
+			for (int i = 0; i < iNumElements; i++) {
+				for (int c = 0; c < iCopied; c++) {
+					res[i * iComponents + c] = getFloat(i * iSize + c, bPreGL42);
+				}
+			}
+			
+			return res;
+		}
+		
+		private float getFloat(int index, boolean bPreGL42) {
+			if (dataArray instanceof FloatBuffer) {
+				return ((FloatBuffer) dataArray).get(index);
+			}
+			
+			if (pAttribType.eGLType == GL_HALF_FLOAT) {
+				return MeshQuantizer.halfToFloat(((ShortBuffer) dataArray).get(index));
+			}
+			
+			boolean bUnsigned = pAttribType.eGLType == GL_UNSIGNED_INT || pAttribType.eGLType == GL_UNSIGNED_SHORT
+					|| pAttribType.eGLType == GL_UNSIGNED_BYTE;
+			
+			long value;
+			if (dataArray instanceof IntBuffer) {
+				int v = ((IntBuffer) dataArray).get(index);
+				value = bUnsigned ? v & 0xFFFFFFFFL : v;
+			} else if (dataArray instanceof ShortBuffer) {
+				short v = ((ShortBuffer) dataArray).get(index);
+				value = bUnsigned ? v & 0xFFFF : v;
+			} else {
+				byte v = ((ByteBuffer) dataArray).get(index);
+				value = bUnsigned ? v & 0xFF : v;
+			}
+			
+			if (!pAttribType.bNormalized) {
+				return value;
+			}
+			
+			if (!bUnsigned && bPreGL42) {
+				long range = (1L << (pAttribType.iNumBytes * 8)) - 1;
+				
+				return (float) ((2.0 * value + 1.0) / range);
+			}
+			
+			// The biggest value of the type.
+			long max = bUnsigned ? (1L << (pAttribType.iNumBytes * 8)) - 1 : (1L << (pAttribType.iNumBytes * 8 - 1)) - 1;
+			
+			return Math.max((float) ((double) value / max), -1.0f);
+		}
+	}
+	
+	static class AttribType {
+		
+		String strName;
+		boolean bNormalized;
+		int eGLType;
+		int iNumBytes;
+		private ParseFunc parse;
+		
+		private AttribType(String strName, boolean bNormalized, int eGLType, int iNumBytes, ParseFunc parse) {
+			this.strName = strName;
+			this.bNormalized = bNormalized;
+			this.eGLType = eGLType;
+			this.iNumBytes = iNumBytes;
+			this.parse = parse;
+		}
+		
+		Buffer parse(ValueTokenizer values) throws XMLStreamException {
+			return parse.parse(values);
+		}
+		
+		// varie funzioni di parse: i valori finiscono in array che crescono al bisogno,
+		// e il buffer restituito li avvolge senza copiarli
+		private static ParseFunc parseFloats = new ParseFunc() {
+			public Buffer parse(ValueTokenizer values) throws XMLStreamException {
+				float array[] = new float[INITIAL_CAPACITY];
+				int count = 0;
+				
+				while (values.next()) {
+					if (count == array.length) {
+						array = Arrays.copyOf(array, count * 2);
+					}
+					array[count++] = values.floatValue();
+				}
+				
+				return FloatBuffer.wrap(array, 0, count);
+			}
+		};
+		private static ParseFunc parseHalfs = new ParseFunc() {
+			public Buffer parse(ValueTokenizer values) throws XMLStreamException {
+				short array[] = new short[INITIAL_CAPACITY];
+				int count = 0;
+				
+				while (values.next()) {
+					if (count == array.length) {
+						array = Arrays.copyOf(array, count * 2);
+					}
+					array[count++] = MeshQuantizer.floatToHalf(values.floatValue());
+				}
+				
+				return ShortBuffer.wrap(array, 0, count);
+			}
+		};
+		private static ParseFunc parseInts = new ParseFunc() {
+			public Buffer parse(ValueTokenizer values) throws XMLStreamException {
+				int array[] = new int[INITIAL_CAPACITY];
+				int count = 0;
+				
+				while (values.next()) {
+					if (count == array.length) {
+						array = Arrays.copyOf(array, count * 2);
+					}
+					array[count++] = (int) values.longValue();
+				}
+				
+				return IntBuffer.wrap(array, 0, count);
+			}
+		};
+		private static ParseFunc parseShorts = new ParseFunc() {
+			public Buffer parse(ValueTokenizer values) throws XMLStreamException {
+				short array[] = new short[INITIAL_CAPACITY];
+				int count = 0;
+				
+				while (values.next()) {
+					if (count == array.length) {
+						array = Arrays.copyOf(array, count * 2);
+					}
+					array[count++] = (short) values.intValue();
+				}
+				
+				return ShortBuffer.wrap(array, 0, count);
+			}
+		};
+		private static ParseFunc parseBytes = new ParseFunc() {
+			public Buffer parse(ValueTokenizer values) throws XMLStreamException {
+				byte array[] = new byte[INITIAL_CAPACITY];
+				int count = 0;
+				
+				while (values.next()) {
+					if (count == array.length) {
+						array = Arrays.copyOf(array, count * 2);
+					}
+					array[count++] = (byte) values.shortValue();
+				}
+				
+				return ByteBuffer.wrap(array, 0, count);
+			}
+		};
+		
+		private static final Map<String, AttribType> allAttribType = new HashMap<>();
+		static final Map<String, Integer> allPrimitiveType = new HashMap<>();
+		static {
+			putAttribType(new AttribType("float", false, GL_FLOAT, Float.SIZE / 8, parseFloats));
+			putAttribType(new AttribType("half", false, GL_HALF_FLOAT, Short.SIZE / 8, parseHalfs));
+			putAttribType(new AttribType("int", false, GL_INT, Integer.SIZE / 8, parseInts));
+			putAttribType(new AttribType("uint", false, GL_UNSIGNED_INT, Integer.SIZE / 8, parseInts));
+			putAttribType(new AttribType("norm-int", true, GL_INT, Integer.SIZE / 8, parseInts));
+			putAttribType(new AttribType("norm-uint", true, GL_UNSIGNED_INT, Integer.SIZE / 8, parseInts));
+			putAttribType(new AttribType("short", false, GL_SHORT, Short.SIZE / 8, parseShorts));
+			putAttribType(new AttribType("ushort", false, GL_UNSIGNED_SHORT, Short.SIZE / 8, parseShorts));
+			putAttribType(new AttribType("norm-short", true, GL_SHORT, Short.SIZE / 8, parseShorts));
+			putAttribType(new AttribType("norm-ushort", true, GL_UNSIGNED_SHORT, Short.SIZE / 8, parseShorts));
+			putAttribType(new AttribType("byte", false, GL_BYTE, Byte.SIZE / 8, parseBytes));
+			putAttribType(new AttribType("ubyte", false, GL_UNSIGNED_BYTE, Byte.SIZE / 8, parseBytes));
+			putAttribType(new AttribType("norm-byte", true, GL_BYTE, Byte.SIZE / 8, parseBytes));
+			putAttribType(new AttribType("norm-ubyte", true, GL_UNSIGNED_BYTE, Byte.SIZE / 8, parseBytes));
+			
+			allPrimitiveType.put("triangles", GL_TRIANGLES);
+			allPrimitiveType.put("tri-strip", GL_TRIANGLE_STRIP);
+			allPrimitiveType.put("tri-fan", GL_TRIANGLE_FAN);
+			allPrimitiveType.put("lines", GL_LINES);
+			allPrimitiveType.put("line-strip", GL_LINE_STRIP);
+			allPrimitiveType.put("line-loop", GL_LINE_LOOP);
+			allPrimitiveType.put("points", GL_POINTS);
+		}
+		
+		private static void putAttribType(AttribType attType) {
+			allAttribType.put(attType.strName, attType);
+		}
+		
+		static AttribType get(String type) {
+			AttribType attType = allAttribType.get(type);
+			if (attType == null) {
+				throw new RuntimeException("Unknown 'type' field.");
+			}
+			return attType;
+		}
+	}
+	
+	abstract static class ParseFunc {
+		static final int INITIAL_CAPACITY = 256;
+		
+		abstract public Buffer parse(ValueTokenizer values) throws XMLStreamException;
+	}
+	
+	static class RenderCmd {
+		boolean bIsIndexedCmd;
+		int ePrimType;
+		int start;
+		int elemCount;
+		int eIndexDataType; // Only if bIsIndexedCmd is true.
+		boolean bPrimitiveRestart; // Only if bIsIndexedCmd is true.
+		
+		RenderCmd() {
+		}
+		
+		/**
+		 * The biggest value of the index type, used when bPrimitiveRestart is true.
+		 */
+		int getPrimitiveRestartIndex() {
+			switch (eIndexDataType) {
+			case GL_UNSIGNED_BYTE:
+				return 0xFF;
+			case GL_UNSIGNED_SHORT:
+				return 0xFFFF;
+			default:
+				return 0xFFFFFFFF;
+			}
+		}
+		
+		RenderCmd(XMLStreamReader reader) {
+			{
+				// ricava cmd
+				String strCmd = reader.getAttributeValue(null, "cmd");
+				if (strCmd == null) {
+					throw new RuntimeException("Missing 'cmd' attribute in an 'arrays' or 'indices' element.");
+				}
+				Integer primitive = AttribType.allPrimitiveType.get(strCmd);
+				if (primitive == null) {
+					throw new RuntimeException("Unknown 'cmd' field.");
+				}
+				ePrimType = primitive;
+			}
+			
+			if (reader.getLocalName().equals("indices")) {
+				bIsIndexedCmd = true;
+			} else if (reader.getLocalName().equals("arrays")) {
+				bIsIndexedCmd = false;
+				
+				{
+					String strStart = reader.getAttributeValue(null, "start");
+					if (strStart == null) {
+						throw new RuntimeException("Missing 'start' attribute in an 'arrays' element.");
+					}
+					int iStart = Integer.parseInt(strStart);
+					if (iStart < 0) {
+						throw new RuntimeException("Attribute 'start' must be between 0 or greater.");
+					}
+					start = iStart;
+				}
+				{
+					String strCount = reader.getAttributeValue(null, "count");
+					if (strCount == null) {
+						throw new RuntimeException("Missing 'count' attribute in an 'arrays' element.");
+					}
+					int iCount = Integer.parseInt(strCount);
+					if (iCount <= 0) {
+						throw new RuntimeException("Attribute 'count' must be greater than 0.");
+					}
+					elemCount = iCount;
+				}
+			} else {
+				throw new RuntimeException("Bad element. Must be 'indices' or 'arrays'.");
+			}
+		}
+	}
+	
+	static class IndexData {
+		
+		AttribType pAttribType;
+		Buffer dataArray;
+		
+		IndexData() {
+		}
+		
+		IndexData(XMLStreamReader reader, ValueTokenizer values) throws XMLStreamException {
+			// controlla che type sia valido
+			{
+				String strType = reader.getAttributeValue(null, "type");
+				if (strType == null) {
+					throw new RuntimeException("Missing 'type' attribute in an 'index' element.");
+				}
+				if (!(strType.equals("uint") || strType.equals("ushort") || strType.equals("ubyte"))) {
+					throw new RuntimeException("Improper 'type' attribute value on 'index' element.");
+				}
+				
+				pAttribType = AttribType.get(strType);
+			}
+			
+			// legge gli indici
+			{
+				values.startElement();
+				dataArray = pAttribType.parse(values);
+				if (dataArray.limit() == 0) {
+					throw new RuntimeException("The index element must have an array of values.");
+				}
+			}
+		}
+		
+		int getDataNumElem() {
+			return dataArray.limit();
+		}
+		
+		int calcByteSize() {
+			return getDataNumElem() * pAttribType.iNumBytes;
+		}
+		
+		
+		/**
+		 * Returns a copy of the indices (read as unsigned values).
+		 */
+		int[] getIndices() {
+			int indices[] = new int[getDataNumElem()];
+			
+			for (int i = 0; i < indices.length; i++) {
+				switch (pAttribType.iNumBytes) {
+				case 4:
+					indices[i] = ((IntBuffer) dataArray).get(i);
+					break;
+				case 2:
+					indices[i] = ((ShortBuffer) dataArray).get(i) & 0xFFFF;
+					break;
+				default:
+					indices[i] = ((ByteBuffer) dataArray).get(i) & 0xFF;
+					break;
+				}
+			}
+			
+			return indices;
+		}
+		
+		/**
+		 * Replaces the indices, stored as theType (uint, ushort or ubyte). MeshData.pack() must be
+		 * called afterwards.
+		 */
+		void setIndices(int indices[], AttribType theType) {
+			pAttribType = theType;
+			
+			switch (theType.iNumBytes) {
+			case 4:
+				dataArray = IntBuffer.wrap(indices.clone());
+				break;
+			case 2: {
+				short array[] = new short[indices.length];
+				for (int i = 0; i < indices.length; i++) {
+					array[i] = (short) indices[i];
+				}
+				dataArray = ShortBuffer.wrap(array);
+				break;
+			}
+			default: {
+				byte array[] = new byte[indices.length];
+				for (int i = 0; i < indices.length; i++) {
+					array[i] = (byte) indices[i];
+				}
+				dataArray = ByteBuffer.wrap(array);
+				break;
+			}
+			}
+		}
+	}
+	
+	static class NamedVAO {
+		String name;
+		ArrayList<Integer> attributes;
+		
+		NamedVAO() {
+			attributes = new ArrayList<>();
+		}
+		
+		NamedVAO(XMLStreamReader reader) throws XMLStreamException {
+			attributes = new ArrayList<>();
+			
+			{
+				name = reader.getAttributeValue(null, "name");
+				if (name == null) {
+					throw new RuntimeException("Missing 'name' attribute in an 'vao' element.");
+				}
+			}
+			
+			// legge tutti i "source" fino alla chiusura del "vao"
+			int depth = 1;
+			while (depth > 0) {
+				int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					depth++;
+					if (reader.getLocalName().equals("source")) {
+						String strAttrib = reader.getAttributeValue(null, "attrib");
+						if (strAttrib == null) {
+							throw new RuntimeException("Missing 'attrib' attribute in an 'source' element.");
+						}
+						attributes.add(Integer.parseInt(strAttrib));
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					depth--;
+				}
+			}
+		}
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * Splits the text of the current element in whitespace separated tokens and converts them
+	 * to numbers. The characters are taken straight from the reader, so no String is created
+	 * unless a token needs the slow path of the JDK parsers; the values are the same the JDK
+	 * parsers return.
+	 */
+	static class ValueTokenizer {
+		
+		private static final double POWERS_OF_TEN[] = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+		};
+		
+		private XMLStreamReader reader;
+		private char text[];
+		private int textPos, textEnd;
+		private boolean endOfElement;
+		
+		private char token[] = new char[32];
+		private int tokenLength;
+		
+		
+		ValueTokenizer(XMLStreamReader reader) {
+			this.reader = reader;
+		}
+		
+		
+		/**
+		 * Starts reading the text of the element the reader is positioned on.
+		 */
+		void startElement() {
+			textPos = textEnd = 0;
+			endOfElement = false;
+		}
+		
+		/**
+		 * Moves to the next token. Returns false, with the reader on the end of the element, when
+		 * there are no more tokens.
+		 */
+		boolean next() throws XMLStreamException {
+			tokenLength = 0;
+			
+			while (true) {
+				if (textPos == textEnd && !fill()) {
+					return tokenLength > 0;
+				}
+				
+				char c = text[textPos++];
+				if (c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f' || c == '\u000B') {
+					if (tokenLength > 0) {
+						return true;
+					}
+				} else {
+					if (tokenLength == token.length) {
+						token = Arrays.copyOf(token, tokenLength * 2);
+					}
+					token[tokenLength++] = c;
+				}
+			}
+		}
+		
+		private boolean fill() throws XMLStreamException {
+			while (!endOfElement) {
+				switch (reader.next()) {
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.CDATA:
+				case XMLStreamConstants.SPACE:
+					// il testo  valido solo fino alla prossima chiamata a next()
+					text = reader.getTextCharacters();
+					textPos = reader.getTextStart();
+					textEnd = textPos + reader.getTextLength();
+					if (textPos < textEnd) {
+						return true;
+					}
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					endOfElement = true;
+					break;
+				case XMLStreamConstants.START_ELEMENT:
+					throw new RuntimeException("Unexpected '" + reader.getLocalName() + "' element inside an array of values.");
+				}
+			}
+			
+			return false;
+		}
+		
+		
+		float floatValue() {
+			int i = 0;
+			boolean negative = false;
+			if (token[0] == '-' || token[0] == '+') {
+				negative = token[0] == '-';
+				i++;
+			}
+			
+			// mantissa intera e esponente in base 10
+			long mantissa = 0;
+			int iNumDigits = 0;
+			int exponent = 0;
+			boolean seenDigit = false;
+			boolean seenPoint = false;
+			for (; i < tokenLength; i++) {
+				char c = token[i];
+				if (c >= '0' && c <= '9') {
+					seenDigit = true;
+					if (mantissa == 0 && c == '0') {
+						if (seenPoint) {
+							exponent--;
+						}
+					} else {
+						if (iNumDigits == 18) {
+							return slowFloatValue();
+						}
+						mantissa = mantissa * 10 + (c - '0');
+						iNumDigits++;
+						if (seenPoint) {
+							exponent--;
+						}
+					}
+				} else if (c == '.' && !seenPoint) {
+					seenPoint = true;
+				} else {
+					break;
+				}
+			}
+			if (!seenDigit) {
+				return slowFloatValue();
+			}
+			
+			if (i < tokenLength) {
+				if (token[i] != 'e' && token[i] != 'E') {
+					return slowFloatValue();
+				}
+				i++;
+				
+				boolean negativeExponent = false;
+				if (i < tokenLength && (token[i] == '-' || token[i] == '+')) {
+					negativeExponent = token[i] == '-';
+					i++;
+				}
+				if (i == tokenLength || tokenLength - i > 4) {
+					return slowFloatValue();
+				}
+				
+				int explicitExponent = 0;
+				for (; i < tokenLength; i++) {
+					char c = token[i];
+					if (c < '0' || c > '9') {
+						return slowFloatValue();
+					}
+					explicitExponent = explicitExponent * 10 + (c - '0');
+				}
+				exponent += negativeExponent ? -explicitExponent : explicitExponent;
+			}
+			
+			if (mantissa == 0) {
+				return negative ? -0.0f : 0.0f;
+			}
+			
+			// Both the mantissa and the power of ten are exact doubles, so the division (or
+			// product) is correctly rounded.
+			if (mantissa >= (1L << 53) || exponent < -22 || exponent > 22) {
+				return slowFloatValue();
+			}
+			double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+			
+			// Rounding that double to float gives the correctly rounded float, unless the double
+			// landed exactly halfway between two floats.
+			if ((Double.doubleToRawLongBits(value) & 0x1FFFFFFFL) == 0x10000000L) {
+				return slowFloatValue();
+			}
+			
+			return (float) (negative ? -value : value);
+		}
+		
+		long longValue() {
+			int i = 0;
+			boolean negative = false;
+			if (token[0] == '-' || token[0] == '+') {
+				negative = token[0] == '-';
+				i++;
+			}
+			if (i == tokenLength || tokenLength - i > 18) {
+				return Long.parseLong(tokenString());
+			}
+			
+			long value = 0;
+			for (; i < tokenLength; i++) {
+				char c = token[i];
+				if (c < '0' || c > '9') {
+					return Long.parseLong(tokenString());
+				}
+				value = value * 10 + (c - '0');
+			}
+			
+			return negative ? -value : value;
+		}
+		
+		int intValue() {
+			long value = longValue();
+			if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+				return Integer.parseInt(tokenString());
+			}
+			return (int) value;
+		}
+		
+		short shortValue() {
+			long value = longValue();
+			if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+				return Short.parseShort(tokenString());
+			}
+			return (short) value;
+		}
+		
+		
+		private float slowFloatValue() {
+			return Float.parseFloat(tokenString());
+		}
+		
+		private String tokenString() {
+			return new String(token, 0, tokenLength);
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package rosick.jglsdk.framework;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+
+/**
+ * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
+ * 
+ * Loads several meshes at once. The files are parsed (or read from the MeshCache) concurrently on a
+ * ForkJoinPool, then the buffer objects are created one mesh after the other on the calling thread,
+ * which must be the one owning the OpenGL context.
+ * 
+ * parseAll() makes no OpenGL call, so it can be used without a context.
+ * 
+ * @author integeruser
+ */
+public class MeshLoader {
+	
+	private static ForkJoinPool g_pool;
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * Returns the Meshes of the given files, in the same order.
+	 */
+	public static Mesh[] loadAll(String... filePaths) {
+		MeshData meshData[] = parseAll(filePaths);
+		
+		Mesh meshes[] = new Mesh[meshData.length];
+		for (int i = 0; i < meshData.length; i++) {
+			meshes[i] = new Mesh(meshData[i]);
+		}
+		
+		return meshes;
+	}
+	
+	
+	/**
+	 * Returns the MeshData of the given files, in the same order. No OpenGL call is made.
+	 */
+	public static MeshData[] parseAll(String... filePaths) {
+		MeshData meshData[] = new MeshData[filePaths.length];
+		
+		if (filePaths.length == 1) {
+			meshData[0] = MeshCache.load(filePaths[0]);
+			return meshData;
+		}
+		
+		List<Callable<MeshData>> tasks = new ArrayList<>(filePaths.length);
+		for (final String filePath : filePaths) {
+			tasks.add(new Callable<MeshData>() {
+				
+				@Override
+				public MeshData call() {
+					return MeshCache.load(filePath);
+				}
+			});
+		}
+		
+		List<Future<MeshData>> results = getPool().invokeAll(tasks);
+		for (int i = 0; i < filePaths.length; i++) {
+			try {
+				meshData[i] = results.get(i).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while loading " + filePaths[i] + ".", e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new RuntimeException("Cannot load " + filePaths[i] + ".", cause);
+			}
+		}
+		
+		return meshData;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	private static synchronized ForkJoinPool getPool() {
+		// The worker threads are daemons, so the pool never keeps the application alive.
+		if (g_pool == null) {
+			g_pool = new ForkJoinPool();
+		}
+		
+		return g_pool;
+	}
+}
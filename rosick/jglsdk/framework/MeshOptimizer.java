@@ -0,0 +1,483 @@
+package rosick.jglsdk.framework;
+
+import static org.lwjgl.opengl.GL11.*;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+import rosick.jglsdk.framework.MeshData.Attribute;
+import rosick.jglsdk.framework.MeshData.IndexData;
+import rosick.jglsdk.framework.MeshData.RenderCmd;
+
+
+/**
+ * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
+ * 
+ * Reorders the index data of a MeshData for the post-transform vertex cache, then the vertices in
+ * the order the indices first use them, so that the attribute arrays are read almost sequentially.
+ * 
+ * Triangle lists are reordered with Tom Forsyth's "Linear-Speed Vertex Cache Optimisation" (simulating
+ * a LRU cache of 32 vertices); strips and fans keep their order. Vertices are reordered only when the
+ * mesh has no 'arrays' command, as those draw vertex ranges.
+ * 
+ * The result is measured with a FIFO cache of 16 vertices: ACMR is the number of vertices transformed
+ * per triangle, ATVR the number of vertices transformed per vertex used (1 is the best possible).
+ * 
+ * Set the "rosick.meshOptimize" property to optimize every mesh loaded through the MeshCache.
+ * 
+ * @author integeruser
+ */
+public class MeshOptimizer {
+	
+	public static final int MEASURE_CACHE_SIZE = 16;
+	
+	private static final int CACHE_SIZE = 32;
+	private static final float CACHE_DECAY_POWER = 1.5f;
+	private static final float LAST_TRI_SCORE = 0.75f;
+	private static final float VALENCE_BOOST_SCALE = 2.0f;
+	private static final float VALENCE_BOOST_POWER = 0.5f;
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	public static class Report {
+		public float acmrBefore, acmrAfter;
+		public float atvrBefore, atvrAfter;
+		public boolean bVerticesReordered;
+		public boolean bLeftUnchanged;
+		
+		@Override
+		public String toString() {
+			if (bLeftUnchanged) {
+				return String.format("ACMR %.3f, ATVR %.3f (indices out of range, mesh left unchanged)", acmrBefore, atvrBefore);
+			}
+			
+			return String.format("ACMR %.3f -> %.3f, ATVR %.3f -> %.3f%s", acmrBefore, acmrAfter, atvrBefore, atvrAfter,
+					bVerticesReordered ? "" : " (vertices not reordered)");
+		}
+	}
+	
+	
+	public static boolean isEnabled() {
+		return Boolean.getBoolean("rosick.meshOptimize");
+	}
+	
+	
+	/**
+	 * Optimizes the index data and the vertex order of meshData, and lays out its buffers again.
+	 */
+	public static Report optimize(MeshData meshData) {
+		if (meshData.getNumLods() > 1) {
+			throw new RuntimeException("The LODs must be generated after the mesh is optimized.");
+		}
+		
+		Report report = new Report();
+		
+		float before[] = measure(meshData);
+		report.acmrBefore = before[0];
+		report.atvrBefore = before[1];
+		
+		int iNumVertices = meshData.attribs.isEmpty() ? 0 : meshData.attribs.get(0).numElements();
+		
+		int allIndices[][] = new int[meshData.indexData.size()][];
+		int iCurrIndexed = 0;
+		for (RenderCmd cmd : meshData.primitives) {
+			if (!cmd.bIsIndexedCmd) {
+				continue;
+			}
+			
+			int indices[] = meshData.indexData.get(iCurrIndexed).getIndices();
+			if (!isInRange(indices, iNumVertices)) {
+				// Broken index data: better leave the whole mesh alone.
+				report.acmrAfter = report.acmrBefore;
+				report.atvrAfter = report.atvrBefore;
+				report.bLeftUnchanged = true;
+				return report;
+			}
+			if (cmd.ePrimType == GL_TRIANGLES) {
+				indices = optimizeTriangles(indices, iNumVertices);
+			}
+			
+			allIndices[iCurrIndexed] = indices;
+			iCurrIndexed++;
+		}
+		
+		report.bVerticesReordered = canReorderVertices(meshData);
+		if (report.bVerticesReordered) {
+			int oldToNew[] = reorderVertices(allIndices, iNumVertices);
+			
+			for (Attribute attrib : meshData.attribs) {
+				attrib.dataArray = permute(attrib, oldToNew);
+			}
+		}
+		
+		for (int i = 0; i < allIndices.length; i++) {
+			IndexData currData = meshData.indexData.get(i);
+			currData.setIndices(allIndices[i], currData.pAttribType);
+		}
+		
+		meshData.pack();
+		
+		float after[] = measure(meshData);
+		report.acmrAfter = after[0];
+		report.atvrAfter = after[1];
+		
+		return report;
+	}
+	
+	
+	/**
+	 * Returns the ACMR and the ATVR of the indexed triangle commands of meshData.
+	 */
+	public static float[] measure(MeshData meshData) {
+		int iNumVertices = meshData.attribs.isEmpty() ? 0 : meshData.attribs.get(0).numElements();
+		boolean used[] = new boolean[iNumVertices];
+		int cache[] = new int[MEASURE_CACHE_SIZE];
+		
+		int iNumTriangles = 0;
+		int iNumTransformed = 0;
+		int iNumUsed = 0;
+		
+		int iCurrIndexed = 0;
+		for (RenderCmd cmd : meshData.primitives) {
+			if (!cmd.bIsIndexedCmd) {
+				continue;
+			}
+			
+			int indices[] = meshData.indexData.get(iCurrIndexed).getIndices();
+			iCurrIndexed++;
+			
+			int restartIndex = cmd.bPrimitiveRestart ? cmd.getPrimitiveRestartIndex() : -1;
+			boolean bHasRestart = cmd.bPrimitiveRestart;
+			
+			switch (cmd.ePrimType) {
+			case GL_TRIANGLES:
+				iNumTriangles += indices.length / 3;
+				break;
+			case GL_TRIANGLE_STRIP:
+			case GL_TRIANGLE_FAN:
+				// Every run between two restarts is a strip (or a fan) by itself.
+				int iSegmentLength = 0;
+				for (int index : indices) {
+					if (bHasRestart && index == restartIndex) {
+						iNumTriangles += Math.max(iSegmentLength - 2, 0);
+						iSegmentLength = 0;
+					} else {
+						iSegmentLength++;
+					}
+				}
+				iNumTriangles += Math.max(iSegmentLength - 2, 0);
+				break;
+			default:
+				continue;
+			}
+			
+			// Every draw starts with an empty cache.
+			Arrays.fill(cache, -1);
+			int iCacheNext = 0;
+			
+			for (int index : indices) {
+				if (bHasRestart && index == restartIndex) {
+					continue;
+				}
+				
+				if (index < iNumVertices && !used[index]) {
+					used[index] = true;
+					iNumUsed++;
+				}
+				
+				boolean bHit = false;
+				for (int entry : cache) {
+					if (entry == index) {
+						bHit = true;
+						break;
+					}
+				}
+				
+				if (!bHit) {
+					cache[iCacheNext] = index;
+					iCacheNext = (iCacheNext + 1) % MEASURE_CACHE_SIZE;
+					iNumTransformed++;
+				}
+			}
+		}
+		
+		return new float[] {
+				iNumTriangles == 0 ? 0.0f : (float) iNumTransformed / iNumTriangles,
+				iNumUsed == 0 ? 0.0f : (float) iNumTransformed / iNumUsed
+		};
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * Returns the triangles of indices in an order that makes good use of the vertex cache.
+	 */
+	static int[] optimizeTriangles(int indices[], int iNumVertices) {
+		int iNumTriangles = indices.length / 3;
+		if (iNumTriangles == 0) {
+			return indices;
+		}
+		
+		// The triangles around every vertex: the ones still to add are the first valence[v].
+		int valence[] = new int[iNumVertices];
+		for (int i = 0; i < iNumTriangles * 3; i++) {
+			valence[indices[i]]++;
+		}
+		
+		int adjacencyStart[] = new int[iNumVertices + 1];
+		for (int v = 0; v < iNumVertices; v++) {
+			adjacencyStart[v + 1] = adjacencyStart[v] + valence[v];
+		}
+		
+		int adjacency[] = new int[iNumTriangles * 3];
+		int fill[] = Arrays.copyOf(adjacencyStart, iNumVertices);
+		for (int i = 0; i < iNumTriangles * 3; i++) {
+			adjacency[fill[indices[i]]++] = i / 3;
+		}
+		
+		int cachePos[] = new int[iNumVertices];
+		Arrays.fill(cachePos, -1);
+		
+		float vertexScore[] = new float[iNumVertices];
+		for (int v = 0; v < iNumVertices; v++) {
+			vertexScore[v] = computeVertexScore(-1, valence[v]);
+		}
+		
+		boolean triAdded[] = new boolean[iNumTriangles];
+		float triScore[] = new float[iNumTriangles];
+		int iBestTri = 0;
+		for (int t = 0; t < iNumTriangles; t++) {
+			triScore[t] = vertexScore[indices[t * 3]] + vertexScore[indices[t * 3 + 1]] + vertexScore[indices[t * 3 + 2]];
+			if (triScore[t] > triScore[iBestTri]) {
+				iBestTri = t;
+			}
+		}
+		
+		int cache[] = new int[CACHE_SIZE + 3];
+		int iCacheCount = 0;
+		int newCache[] = new int[CACHE_SIZE + 3];
+		
+		int output[] = new int[iNumTriangles * 3];
+		for (int iOut = 0; iOut < iNumTriangles; iOut++) {
+			if (iBestTri < 0) {
+				// Nothing in the cache can be drawn: take the best triangle left.
+				float fBestScore = -Float.MAX_VALUE;
+				for (int t = 0; t < iNumTriangles; t++) {
+					if (!triAdded[t] && triScore[t] > fBestScore) {
+						fBestScore = triScore[t];
+						iBestTri = t;
+					}
+				}
+			}
+			
+			triAdded[iBestTri] = true;
+			
+			// Adds the triangle and removes it from the lists of its vertices.
+			int iNewCacheCount = 0;
+			for (int k = 0; k < 3; k++) {
+				int v = indices[iBestTri * 3 + k];
+				output[iOut * 3 + k] = v;
+				
+				int iStart = adjacencyStart[v];
+				int iLast = iStart + valence[v] - 1;
+				for (int a = iStart; a <= iLast; a++) {
+					if (adjacency[a] == iBestTri) {
+						adjacency[a] = adjacency[iLast];
+						adjacency[iLast] = iBestTri;
+						break;
+					}
+				}
+				valence[v]--;
+				
+				if (!contains(newCache, iNewCacheCount, v)) {
+					newCache[iNewCacheCount++] = v;
+				}
+			}
+			int iNumTriVertices = iNewCacheCount;
+			
+			// The vertices of the triangle move to the front of the cache.
+			for (int c = 0; c < iCacheCount; c++) {
+				if (!contains(newCache, iNumTriVertices, cache[c])) {
+					newCache[iNewCacheCount++] = cache[c];
+				}
+			}
+			
+			for (int c = 0; c < iNewCacheCount; c++) {
+				int v = newCache[c];
+				cachePos[v] = c < CACHE_SIZE ? c : -1;
+				vertexScore[v] = computeVertexScore(cachePos[v], valence[v]);
+			}
+			
+			iBestTri = -1;
+			float fBestScore = -Float.MAX_VALUE;
+			for (int c = 0; c < iNewCacheCount; c++) {
+				int v = newCache[c];
+				
+				for (int a = adjacencyStart[v]; a < adjacencyStart[v] + valence[v]; a++) {
+					int t = adjacency[a];
+					triScore[t] = vertexScore[indices[t * 3]] + vertexScore[indices[t * 3 + 1]] + vertexScore[indices[t * 3 + 2]];
+					if (triScore[t] > fBestScore) {
+						fBestScore = triScore[t];
+						iBestTri = t;
+					}
+				}
+			}
+			
+			iCacheCount = Math.min(iNewCacheCount, CACHE_SIZE);
+			int swap[] = cache;
+			cache = newCache;
+			newCache = swap;
+		}
+		
+		// Indices past the last whole triangle are kept at the end.
+		if (indices.length > output.length) {
+			output = Arrays.copyOf(output, indices.length);
+			System.arraycopy(indices, iNumTriangles * 3, output, iNumTriangles * 3, indices.length - iNumTriangles * 3);
+		}
+		
+		return output;
+	}
+	
+	private static boolean contains(int array[], int count, int value) {
+		for (int i = 0; i < count; i++) {
+			if (array[i] == value) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	private static float computeVertexScore(int iCachePos, int iRemainingValence) {
+		if (iRemainingValence == 0) {
+			// Not used anymore.
+			return -1.0f;
+		}
+		
+		float score = 0.0f;
+		if (iCachePos >= 0) {
+			if (iCachePos < 3) {
+				// Used by the last triangle: a fixed score, so that it isn't favoured over the others.
+				score = LAST_TRI_SCORE;
+			} else {
+				float scaler = 1.0f / (CACHE_SIZE - 3);
+				score = (float) Math.pow(1.0f - (iCachePos - 3) * scaler, CACHE_DECAY_POWER);
+			}
+		}
+		
+		// Vertices with few triangles left get a boost, so they are finished off.
+		score += VALENCE_BOOST_SCALE * (float) Math.pow(iRemainingValence, -VALENCE_BOOST_POWER);
+		
+		return score;
+	}
+	
+	
+	private static boolean isInRange(int indices[], int iNumVertices) {
+		for (int index : indices) {
+			if (index < 0 || index >= iNumVertices) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	private static boolean canReorderVertices(MeshData meshData) {
+		if (meshData.attribs.isEmpty()) {
+			return false;
+		}
+		
+		for (RenderCmd cmd : meshData.primitives) {
+			if (!cmd.bIsIndexedCmd) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Renumbers the vertices in order of first use (the unused ones go last) and remaps allIndices.
+	 * Returns the new position of every vertex.
+	 */
+	private static int[] reorderVertices(int allIndices[][], int iNumVertices) {
+		int oldToNew[] = new int[iNumVertices];
+		Arrays.fill(oldToNew, -1);
+		
+		int iNext = 0;
+		for (int indices[] : allIndices) {
+			for (int index : indices) {
+				if (oldToNew[index] == -1) {
+					oldToNew[index] = iNext++;
+				}
+			}
+		}
+		for (int v = 0; v < iNumVertices; v++) {
+			if (oldToNew[v] == -1) {
+				oldToNew[v] = iNext++;
+			}
+		}
+		
+		for (int indices[] : allIndices) {
+			for (int i = 0; i < indices.length; i++) {
+				indices[i] = oldToNew[indices[i]];
+			}
+		}
+		
+		return oldToNew;
+	}
+	
+	private static Buffer permute(Attribute attrib, int oldToNew[]) {
+		Buffer data = attrib.dataArray;
+		int iSize = attrib.iSize;
+		int iNumValues = oldToNew.length * iSize;
+		
+		if (data instanceof FloatBuffer) {
+			FloatBuffer src = (FloatBuffer) data;
+			float dest[] = new float[iNumValues];
+			for (int v = 0; v < oldToNew.length; v++) {
+				for (int c = 0; c < iSize; c++) {
+					dest[oldToNew[v] * iSize + c] = src.get(v * iSize + c);
+				}
+			}
+			return FloatBuffer.wrap(dest);
+		} else if (data instanceof IntBuffer) {
+			IntBuffer src = (IntBuffer) data;
+			int dest[] = new int[iNumValues];
+			for (int v = 0; v < oldToNew.length; v++) {
+				for (int c = 0; c < iSize; c++) {
+					dest[oldToNew[v] * iSize + c] = src.get(v * iSize + c);
+				}
+			}
+			return IntBuffer.wrap(dest);
+		} else if (data instanceof ShortBuffer) {
+			ShortBuffer src = (ShortBuffer) data;
+			short dest[] = new short[iNumValues];
+			for (int v = 0; v < oldToNew.length; v++) {
+				for (int c = 0; c < iSize; c++) {
+					dest[oldToNew[v] * iSize + c] = src.get(v * iSize + c);
+				}
+			}
+			return ShortBuffer.wrap(dest);
+		} else {
+			ByteBuffer src = (ByteBuffer) data;
+			byte dest[] = new byte[iNumValues];
+			for (int v = 0; v < oldToNew.length; v++) {
+				for (int c = 0; c < iSize; c++) {
+					dest[oldToNew[v] * iSize + c] = src.get(v * iSize + c);
+				}
+			}
+			return ByteBuffer.wrap(dest);
+		}
+	}
+}
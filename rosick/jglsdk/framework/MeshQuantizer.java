@@ -0,0 +1,297 @@
+package rosick.jglsdk.framework;
+
+import static org.lwjgl.opengl.GL11.*;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+import rosick.jglsdk.framework.MeshData.AttribType;
+import rosick.jglsdk.framework.MeshData.Attribute;
+
+
+/**
+ * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
+ * 
+ * Converts the float attributes of a MeshData to smaller types, as long as no value moves by more
+ * than the given error. Attributes whose values are all in [0, 1] (eg. colors) are tried as norm-ubyte
+ * and norm-ushort, attributes in [-1, 1] (eg. normals) as norm-byte and norm-short, and every float
+ * attribute (eg. positions) as half. The smallest type within the error bound is used.
+ * 
+ * Unsigned normalized values are decoded as c / (2^b - 1). Signed ones are decoded as
+ * max(c / (2^(b-1) - 1), -1) since OpenGL 4.2, but as (2c + 1) / (2^b - 1) before: the error of both
+ * rules must be within the bound, since the shaders target OpenGL 3.3.
+ * 
+ * Set the "rosick.meshQuantizeError" property to quantize every mesh loaded through the MeshCache.
+ * 
+ * @author integeruser
+ */
+public class MeshQuantizer {
+	
+	private float maxError;
+	
+	
+	public MeshQuantizer(float maxError) {
+		if (!(maxError >= 0.0f)) {
+			throw new IllegalArgumentException("The error bound must be 0 or greater.");
+		}
+		
+		this.maxError = maxError;
+	}
+	
+	
+	/**
+	 * Returns the quantizer set by the "rosick.meshQuantizeError" property, or null if it isn't set.
+	 */
+	public static MeshQuantizer getDefault() {
+		String strMaxError = System.getProperty("rosick.meshQuantizeError");
+		if (strMaxError == null) {
+			return null;
+		}
+		
+		return new MeshQuantizer(Float.parseFloat(strMaxError));
+	}
+	
+	
+	public float getMaxError() {
+		return maxError;
+	}
+	
+	
+	/**
+	 * Converts the attributes of meshData and lays out its buffers again. Returns the number of bytes
+	 * saved.
+	 */
+	public int quantize(MeshData meshData) {
+		int iOldSize = meshData.attribArraysBuffer.limit();
+		boolean bChanged = false;
+		
+		for (Attribute attrib : meshData.attribs) {
+			if (attrib.pAttribType.eGLType != GL_FLOAT) {
+				continue;
+			}
+			
+			FloatBuffer values = (FloatBuffer) attrib.dataArray;
+			
+			float fMin = Float.POSITIVE_INFINITY;
+			float fMax = Float.NEGATIVE_INFINITY;
+			for (int i = 0; i < values.limit(); i++) {
+				fMin = Math.min(fMin, values.get(i));
+				fMax = Math.max(fMax, values.get(i));
+			}
+			
+			String candidates[];
+			if (fMin >= 0.0f && fMax <= 1.0f) {
+				candidates = new String[] {"norm-ubyte", "norm-ushort", "half"};
+			} else if (fMin >= -1.0f && fMax <= 1.0f) {
+				candidates = new String[] {"norm-byte", "norm-short", "half"};
+			} else {
+				candidates = new String[] {"half"};
+			}
+			
+			for (String strType : candidates) {
+				AttribType theType = AttribType.get(strType);
+				
+				if (computeMaxError(values, theType) <= maxError) {
+					attrib.dataArray = convert(values, theType);
+					attrib.pAttribType = theType;
+					bChanged = true;
+					break;
+				}
+			}
+		}
+		
+		if (!bChanged) {
+			return 0;
+		}
+		
+		meshData.pack();
+		
+		return iOldSize - meshData.attribArraysBuffer.limit();
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * Converts a float to a half float, rounding to the nearest even value. Values too big for a half
+	 * become infinities, values too small become denormals or zeros.
+	 */
+	public static short floatToHalf(float value) {
+		int bits = Float.floatToRawIntBits(value);
+		int sign = (bits >>> 16) & 0x8000;
+		int exponent = (bits >>> 23) & 0xFF;
+		int mantissa = bits & 0x7FFFFF;
+		
+		if (exponent == 0xFF) {
+			// Infinity or NaN (keeping it a NaN).
+			return (short) (sign | 0x7C00 | (mantissa != 0 ? 0x200 | (mantissa >>> 13) : 0));
+		}
+		
+		int halfExponent = exponent - 127 + 15;
+		if (halfExponent >= 0x1F) {
+			return (short) (sign | 0x7C00);
+		}
+		
+		if (halfExponent <= 0) {
+			// Denormal half: the implicit bit becomes part of the mantissa.
+			if (halfExponent < -10) {
+				return (short) sign;
+			}
+			
+			mantissa |= 0x800000;
+			int shift = 14 - halfExponent;
+			int half = mantissa >>> shift;
+			int remainder = mantissa & ((1 << shift) - 1);
+			int halfway = 1 << (shift - 1);
+			if (remainder > halfway || (remainder == halfway && (half & 1) != 0)) {
+				half++;
+			}
+			
+			return (short) (sign | half);
+		}
+		
+		// A carry out of the mantissa correctly moves to the next exponent (or to infinity).
+		int half = (halfExponent << 10) | (mantissa >>> 13);
+		int remainder = mantissa & 0x1FFF;
+		if (remainder > 0x1000 || (remainder == 0x1000 && (half & 1) != 0)) {
+			half++;
+		}
+		
+		return (short) (sign | half);
+	}
+	
+	public static float halfToFloat(short half) {
+		int bits = half & 0xFFFF;
+		int sign = (bits & 0x8000) << 16;
+		int exponent = (bits >>> 10) & 0x1F;
+		int mantissa = bits & 0x3FF;
+		
+		if (exponent == 0) {
+			float value = mantissa * (1.0f / (1 << 24));
+			return sign != 0 ? -value : value;
+		}
+		
+		if (exponent == 0x1F) {
+			return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+		}
+		
+		return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23) | (mantissa << 13));
+	}
+	
+	
+	public static byte toNormByte(float value) {
+		return (byte) Math.round(clamp(value, -1.0f, 1.0f) * Byte.MAX_VALUE);
+	}
+	
+	public static byte toNormUByte(float value) {
+		return (byte) Math.round(clamp(value, 0.0f, 1.0f) * 0xFF);
+	}
+	
+	public static short toNormShort(float value) {
+		return (short) Math.round(clamp(value, -1.0f, 1.0f) * Short.MAX_VALUE);
+	}
+	
+	public static short toNormUShort(float value) {
+		return (short) Math.round(clamp(value, 0.0f, 1.0f) * 0xFFFF);
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	private static float clamp(float value, float min, float max) {
+		return Math.max(min, Math.min(max, value));
+	}
+	
+	
+	private static Buffer convert(FloatBuffer values, AttribType theType) {
+		int count = values.limit();
+		
+		switch (theType.strName) {
+		case "half": {
+			short array[] = new short[count];
+			for (int i = 0; i < count; i++) {
+				array[i] = floatToHalf(values.get(i));
+			}
+			return ShortBuffer.wrap(array);
+		}
+		case "norm-short":
+		case "norm-ushort": {
+			boolean bSigned = theType.eGLType == GL_SHORT;
+			short array[] = new short[count];
+			for (int i = 0; i < count; i++) {
+				array[i] = bSigned ? toNormShort(values.get(i)) : toNormUShort(values.get(i));
+			}
+			return ShortBuffer.wrap(array);
+		}
+		case "norm-byte":
+		case "norm-ubyte": {
+			boolean bSigned = theType.eGLType == GL_BYTE;
+			byte array[] = new byte[count];
+			for (int i = 0; i < count; i++) {
+				array[i] = bSigned ? toNormByte(values.get(i)) : toNormUByte(values.get(i));
+			}
+			return ByteBuffer.wrap(array);
+		}
+		default:
+			throw new RuntimeException("Cannot quantize to '" + theType.strName + "'.");
+		}
+	}
+	
+	
+	/**
+	 * Returns the biggest difference between a value and its conversion to theType (NaN if some value
+	 * can't be converted). Signed normalized values are decoded with both rules.
+	 */
+	private static float computeMaxError(FloatBuffer values, AttribType theType) {
+		float fMaxError = 0.0f;
+		
+		for (int i = 0; i < values.limit(); i++) {
+			float value = values.get(i);
+			float decoded;
+			float decodedPreGL42 = Float.NaN;
+			
+			switch (theType.strName) {
+			case "half":
+				decoded = halfToFloat(floatToHalf(value));
+				break;
+			case "norm-short": {
+				short c = toNormShort(value);
+				decoded = Math.max(c / (float) Short.MAX_VALUE, -1.0f);
+				decodedPreGL42 = (2 * c + 1) / (float) 0xFFFF;
+				break;
+			}
+			case "norm-ushort":
+				decoded = (toNormUShort(value) & 0xFFFF) / (float) 0xFFFF;
+				break;
+			case "norm-byte": {
+				byte c = toNormByte(value);
+				decoded = Math.max(c / (float) Byte.MAX_VALUE, -1.0f);
+				decodedPreGL42 = (2 * c + 1) / (float) 0xFF;
+				break;
+			}
+			case "norm-ubyte":
+				decoded = (toNormUByte(value) & 0xFF) / (float) 0xFF;
+				break;
+			default:
+				return Float.NaN;
+			}
+			
+			float error = decoded == value ? 0.0f : Math.abs(decoded - value);
+			if (!Float.isNaN(decodedPreGL42) && decodedPreGL42 != value) {
+				error = Math.max(error, Math.abs(decodedPreGL42 - value));
+			}
+			if (Float.isNaN(error)) {
+				return Float.NaN;
+			}
+			fMaxError = Math.max(fMaxError, error);
+		}
+		
+		return fMaxError;
+	}
+}
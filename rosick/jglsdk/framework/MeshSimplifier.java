@@ -0,0 +1,622 @@
+package rosick.jglsdk.framework;
+
+import java.util.Arrays;
+
+import rosick.jglsdk.framework.MeshData.AttribType;
+import rosick.jglsdk.framework.MeshData.IndexData;
+
+
+/**
+ * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
+ * 
+ * Generates the levels of detail of a MeshData with Garland and Heckbert's quadric error metrics.
+ * Every vertex gets the sum of the squared distances from the planes of its triangles; the edge whose
+ * collapse adds the smallest error is collapsed first, moving one of its vertices onto the other one.
+ * No vertex is created or moved, so all the levels share the vertex buffer of the mesh and only add
+ * index arrays: the LOD k is a triangle list with about ratio^k times the triangles of the full mesh.
+ * 
+ * Open borders (and the seams between vertices with different attributes) are kept in place by
+ * planes perpendicular to them, and collapses that would flip a triangle are refused. The error of a
+ * level is the square root of the biggest error added to reach it, in model units: a conservative
+ * bound of the distance of the simplified surface from the original one.
+ * 
+ * LODs must be generated after MeshOptimizer and IndexCompactor, which rebuild the index data. The
+ * LODs replace the triangle commands of the mesh, other primitives are not drawn by them.
+ * 
+ * Set the "rosick.meshLods" property to the number of LODs to generate for every mesh loaded through
+ * the MeshCache.
+ * 
+ * @author integeruser
+ */
+public class MeshSimplifier {
+	
+	public static final float DEFAULT_LOD_RATIO = 0.5f;
+	public static final int DEFAULT_NUM_LODS = 4;
+	
+	// The weight of the planes keeping the borders in place, and the smallest cosine allowed between the
+	// normals of a triangle before and after a collapse.
+	private static final double BORDER_WEIGHT = 10.0;
+	private static final double MIN_NORMAL_COS = 0.2;
+	
+	private float positions[];
+	private int triangles[];
+	private boolean deadTriangles[];
+	private int iNumLiveTriangles;
+	
+	// The unit normal of every triangle before any collapse (0 if it was degenerate).
+	private float originalNormals[];
+	
+	// 10 values for each vertex: the upper half of the symmetric 4x4 matrix.
+	private double quadrics[];
+	private boolean deadVertices[];
+	private int versions[];
+	
+	private int vertexTriangles[][];
+	private int vertexTriangleCounts[];
+	
+	// A binary heap of collapses (from -> to), valid only if both versions are still current.
+	private float heapCosts[] = new float[64];
+	private int heapFrom[] = new int[64], heapTo[] = new int[64];
+	private int heapFromVersion[] = new int[64], heapToVersion[] = new int[64];
+	private int iHeapSize;
+	
+	private int marks[];
+	private int iMark;
+	private float fError;
+	
+	private double tempBefore[] = new double[3], tempAfter[] = new double[3];
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	public static class Report {
+		public int triangleCounts[];
+		public float errors[];
+		public float fMilliseconds;
+		
+		@Override
+		public String toString() {
+			StringBuilder builder = new StringBuilder();
+			
+			for (int i = 0; i < triangleCounts.length; i++) {
+				builder.append(String.format("LOD %d: %d triangles (error %.4g), ", i, triangleCounts[i], errors[i]));
+			}
+			builder.append(String.format("%.1f ms", fMilliseconds));
+			
+			return builder.toString();
+		}
+	}
+	
+	
+	public static boolean isEnabled() {
+		return getDefaultNumLods() > 0;
+	}
+	
+	public static int getDefaultNumLods() {
+		return Integer.getInteger("rosick.meshLods", 0);
+	}
+	
+	
+	/**
+	 * Prints the triangles of the LODs of the given mesh files (classpath paths, eg.
+	 * /rosick/mckesson/IV/tut16/data/terrain.xml) and the time spent to generate them.
+	 */
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			System.err.println("Usage: MeshSimplifier <mesh path>...");
+			System.exit(1);
+		}
+		
+		int iNumLods = isEnabled() ? getDefaultNumLods() : DEFAULT_NUM_LODS;
+		
+		for (String filePath : args) {
+			MeshData meshData = MeshCache.load(filePath);
+			
+			System.out.printf("%s: %s\n", filePath, generateLods(meshData, iNumLods, DEFAULT_LOD_RATIO));
+		}
+	}
+	
+	
+	/**
+	 * Replaces the LODs of meshData with numLods new ones, and lays out its buffers again.
+	 */
+	public static Report generateLods(MeshData meshData, int numLods, float ratio) {
+		long start = System.nanoTime();
+		
+		removeLods(meshData);
+		
+		float positions[] = meshData.readPositions();
+		int triangles[] = positions != null ? meshData.readTriangles() : new int[0];
+		
+		Report report = new Report();
+		report.triangleCounts = new int[] {triangles.length / 3};
+		report.errors = new float[1];
+		
+		if (triangles.length > 0) {
+			report.triangleCounts = Arrays.copyOf(report.triangleCounts, numLods + 1);
+			report.errors = Arrays.copyOf(report.errors, numLods + 1);
+			
+			MeshSimplifier simplifier = new MeshSimplifier(positions, triangles);
+			int iNumVertices = positions.length / 3;
+			float fTarget = triangles.length / 3;
+			
+			for (int lod = 1; lod <= numLods; lod++) {
+				fTarget *= ratio;
+				simplifier.simplify((int) fTarget);
+				
+				int lodTriangles[] = MeshOptimizer.optimizeTriangles(simplifier.getTriangles(), iNumVertices);
+				
+				IndexData data = new IndexData();
+				data.setIndices(lodTriangles, AttribType.get(iNumVertices <= 0x100 ? "ubyte" : iNumVertices <= 0x10000 ? "ushort" : "uint"));
+				meshData.indexData.add(data);
+				
+				report.triangleCounts[lod] = lodTriangles.length / 3;
+				report.errors[lod] = simplifier.getError();
+			}
+			
+			meshData.lodErrors = report.errors.clone();
+		}
+		
+		meshData.pack();
+		
+		report.fMilliseconds = (System.nanoTime() - start) / 1000000.0f;
+		
+		return report;
+	}
+	
+	
+	/**
+	 * Removes the LODs of meshData. MeshData.pack() must be called afterwards.
+	 */
+	static void removeLods(MeshData meshData) {
+		int iNumLodArrays = meshData.lodErrors.length - 1;
+		for (int i = 0; i < iNumLodArrays; i++) {
+			meshData.indexData.remove(meshData.indexData.size() - 1);
+		}
+		
+		meshData.lodErrors = new float[1];
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	MeshSimplifier(float positions[], int triangles[]) {
+		int iNumVertices = positions.length / 3;
+		int iNumTriangles = triangles.length / 3;
+		
+		this.positions = positions;
+		this.triangles = triangles.clone();
+		deadTriangles = new boolean[iNumTriangles];
+		iNumLiveTriangles = iNumTriangles;
+		
+		quadrics = new double[iNumVertices * 10];
+		deadVertices = new boolean[iNumVertices];
+		versions = new int[iNumVertices];
+		marks = new int[iNumVertices];
+		
+		// The triangles around every vertex.
+		vertexTriangleCounts = new int[iNumVertices];
+		for (int i = 0; i < iNumTriangles * 3; i++) {
+			vertexTriangleCounts[triangles[i]]++;
+		}
+		vertexTriangles = new int[iNumVertices][];
+		for (int v = 0; v < iNumVertices; v++) {
+			vertexTriangles[v] = new int[vertexTriangleCounts[v]];
+			vertexTriangleCounts[v] = 0;
+		}
+		for (int i = 0; i < iNumTriangles * 3; i++) {
+			int v = triangles[i];
+			vertexTriangles[v][vertexTriangleCounts[v]++] = i / 3;
+		}
+		
+		computeQuadrics();
+		
+		for (int t = 0; t < iNumTriangles; t++) {
+			for (int k = 0; k < 3; k++) {
+				pushEdge(this.triangles[t * 3 + k], this.triangles[t * 3 + (k + 1) % 3]);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Collapses edges until at most targetTriangles triangles are left, or no edge can be collapsed.
+	 */
+	void simplify(int targetTriangles) {
+		while (iNumLiveTriangles > targetTriangles && iHeapSize > 0) {
+			float fCost = heapCosts[0];
+			int from = heapFrom[0], to = heapTo[0];
+			boolean bValid = versions[from] == heapFromVersion[0] && versions[to] == heapToVersion[0];
+			popHeap();
+			
+			if (!bValid || deadVertices[from] || deadVertices[to] || !canCollapse(from, to)) {
+				continue;
+			}
+			
+			collapse(from, to);
+			fError = Math.max(fError, (float) Math.sqrt(fCost));
+		}
+	}
+	
+	
+	/**
+	 * The triangles still alive, 3 vertex indices for each one.
+	 */
+	int[] getTriangles() {
+		int result[] = new int[iNumLiveTriangles * 3];
+		int iCount = 0;
+		
+		for (int t = 0; t < deadTriangles.length; t++) {
+			if (!deadTriangles[t]) {
+				System.arraycopy(triangles, t * 3, result, iCount, 3);
+				iCount += 3;
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * The biggest error added so far, in model units.
+	 */
+	float getError() {
+		return fError;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	private void computeQuadrics() {
+		int iNumTriangles = triangles.length / 3;
+		double normal[] = new double[3];
+		originalNormals = new float[iNumTriangles * 3];
+		
+		// Every edge once, as (smaller vertex, bigger vertex, triangle): those found only once are borders.
+		long edges[] = new long[iNumTriangles * 3];
+		
+		for (int t = 0; t < iNumTriangles; t++) {
+			if (computeNormal(triangles[t * 3], triangles[t * 3 + 1], triangles[t * 3 + 2], normal)) {
+				originalNormals[t * 3] = (float) normal[0];
+				originalNormals[t * 3 + 1] = (float) normal[1];
+				originalNormals[t * 3 + 2] = (float) normal[2];
+				
+				int a = triangles[t * 3] * 3;
+				double d = -(normal[0] * positions[a] + normal[1] * positions[a + 1] + normal[2] * positions[a + 2]);
+				
+				for (int k = 0; k < 3; k++) {
+					addPlane(triangles[t * 3 + k], normal[0], normal[1], normal[2], d, 1.0);
+				}
+			}
+			
+			for (int k = 0; k < 3; k++) {
+				long a = triangles[t * 3 + k], b = triangles[t * 3 + (k + 1) % 3];
+				edges[t * 3 + k] = (Math.min(a, b) << 32) | Math.max(a, b);
+			}
+		}
+		
+		long sortedEdges[] = edges.clone();
+		Arrays.sort(sortedEdges);
+		
+		for (int i = 0; i < edges.length; i++) {
+			int iFirst = Arrays.binarySearch(sortedEdges, edges[i]);
+			boolean bBorder = (iFirst == 0 || sortedEdges[iFirst - 1] != edges[i])
+					&& (iFirst == sortedEdges.length - 1 || sortedEdges[iFirst + 1] != edges[i]);
+			
+			int t = i / 3;
+			if (bBorder && computeNormal(triangles[t * 3], triangles[t * 3 + 1], triangles[t * 3 + 2], normal)) {
+				int a = triangles[i], b = triangles[t * 3 + (i % 3 + 1) % 3];
+				addBorderPlane(a, b, normal);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Adds to a and b the plane through the edge (a, b) perpendicular to the triangle with the given
+	 * normal.
+	 */
+	private void addBorderPlane(int a, int b, double normal[]) {
+		double ex = positions[b * 3] - positions[a * 3];
+		double ey = positions[b * 3 + 1] - positions[a * 3 + 1];
+		double ez = positions[b * 3 + 2] - positions[a * 3 + 2];
+		
+		double nx = ey * normal[2] - ez * normal[1];
+		double ny = ez * normal[0] - ex * normal[2];
+		double nz = ex * normal[1] - ey * normal[0];
+		double fLength = Math.sqrt(nx * nx + ny * ny + nz * nz);
+		if (fLength == 0.0) {
+			return;
+		}
+		nx /= fLength; ny /= fLength; nz /= fLength;
+		
+		double d = -(nx * positions[a * 3] + ny * positions[a * 3 + 1] + nz * positions[a * 3 + 2]);
+		addPlane(a, nx, ny, nz, d, BORDER_WEIGHT);
+		addPlane(b, nx, ny, nz, d, BORDER_WEIGHT);
+	}
+	
+	private void addPlane(int v, double a, double b, double c, double d, double weight) {
+		int q = v * 10;
+		quadrics[q] 	+= weight * a * a;
+		quadrics[q + 1] += weight * a * b;
+		quadrics[q + 2] += weight * a * c;
+		quadrics[q + 3] += weight * a * d;
+		quadrics[q + 4] += weight * b * b;
+		quadrics[q + 5] += weight * b * c;
+		quadrics[q + 6] += weight * b * d;
+		quadrics[q + 7] += weight * c * c;
+		quadrics[q + 8] += weight * c * d;
+		quadrics[q + 9] += weight * d * d;
+	}
+	
+	
+	/**
+	 * The error of the quadric of a plus the one of b, at the position of the vertex v.
+	 */
+	private double evaluate(int a, int b, int v) {
+		double x = positions[v * 3], y = positions[v * 3 + 1], z = positions[v * 3 + 2];
+		double q[] = quadrics;
+		int qa = a * 10, qb = b * 10;
+		
+		double error = (q[qa] + q[qb]) * x * x + 2 * (q[qa + 1] + q[qb + 1]) * x * y + 2 * (q[qa + 2] + q[qb + 2]) * x * z
+				+ 2 * (q[qa + 3] + q[qb + 3]) * x + (q[qa + 4] + q[qb + 4]) * y * y + 2 * (q[qa + 5] + q[qb + 5]) * y * z
+				+ 2 * (q[qa + 6] + q[qb + 6]) * y + (q[qa + 7] + q[qb + 7]) * z * z + 2 * (q[qa + 8] + q[qb + 8]) * z
+				+ (q[qa + 9] + q[qb + 9]);
+		
+		// Rounding can make it slightly negative.
+		return Math.max(error, 0.0);
+	}
+	
+	
+	/**
+	 * Stores in normal the unit normal of the triangle (a, b, c). Returns false if it's degenerate.
+	 */
+	private boolean computeNormal(int a, int b, int c, double normal[]) {
+		if (!crossEdges(a, b, c, normal)) {
+			return false;
+		}
+		
+		double fLength = Math.sqrt(normal[0] * normal[0] + normal[1] * normal[1] + normal[2] * normal[2]);
+		normal[0] /= fLength;
+		normal[1] /= fLength;
+		normal[2] /= fLength;
+		
+		return true;
+	}
+	
+	/**
+	 * Stores in dest (b - a) x (c - a). Returns false if it's 0.
+	 */
+	private boolean crossEdges(int a, int b, int c, double dest[]) {
+		double e1x = positions[b * 3] - positions[a * 3];
+		double e1y = positions[b * 3 + 1] - positions[a * 3 + 1];
+		double e1z = positions[b * 3 + 2] - positions[a * 3 + 2];
+		double e2x = positions[c * 3] - positions[a * 3];
+		double e2y = positions[c * 3 + 1] - positions[a * 3 + 1];
+		double e2z = positions[c * 3 + 2] - positions[a * 3 + 2];
+		
+		dest[0] = e1y * e2z - e1z * e2y;
+		dest[1] = e1z * e2x - e1x * e2z;
+		dest[2] = e1x * e2y - e1y * e2x;
+		
+		return dest[0] != 0.0 || dest[1] != 0.0 || dest[2] != 0.0;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * A collapse is refused if it flips (or turns too much) a triangle that would survive it, or if the
+	 * two vertices share more neighbors than the triangles of their edge, which would make the surface
+	 * non-manifold.
+	 */
+	private boolean canCollapse(int from, int to) {
+		iMark++;
+		int iSharedEdgeTriangles = 0;
+		
+		for (int i = 0; i < vertexTriangleCounts[from]; i++) {
+			int t = vertexTriangles[from][i];
+			if (deadTriangles[t]) {
+				continue;
+			}
+			
+			int a = triangles[t * 3], b = triangles[t * 3 + 1], c = triangles[t * 3 + 2];
+			marks[a] = marks[b] = marks[c] = iMark;
+			
+			if (a == to || b == to || c == to) {
+				iSharedEdgeTriangles++;
+				continue;
+			}
+			
+			if (!crossEdges(a, b, c, tempBefore)) {
+				continue;
+			}
+			boolean bDegenerate = !crossEdges(a == from ? to : a, b == from ? to : b, c == from ? to : c, tempAfter);
+			
+			double dot = tempBefore[0] * tempAfter[0] + tempBefore[1] * tempAfter[1] + tempBefore[2] * tempAfter[2];
+			double lengths = Math.sqrt((tempBefore[0] * tempBefore[0] + tempBefore[1] * tempBefore[1] + tempBefore[2] * tempBefore[2])
+					* (tempAfter[0] * tempAfter[0] + tempAfter[1] * tempAfter[1] + tempAfter[2] * tempAfter[2]));
+			if (bDegenerate || dot < MIN_NORMAL_COS * lengths) {
+				return false;
+			}
+			
+			// Many small turns must not add up to a flip either.
+			double originalDot = originalNormals[t * 3] * tempAfter[0] + originalNormals[t * 3 + 1] * tempAfter[1] + originalNormals[t * 3 + 2] * tempAfter[2];
+			if (originalDot < MIN_NORMAL_COS * Math.sqrt(tempAfter[0] * tempAfter[0] + tempAfter[1] * tempAfter[1] + tempAfter[2] * tempAfter[2])) {
+				return false;
+			}
+		}
+		
+		// The neighbors of from are marked: count those that are also neighbors of to.
+		int iShared = 0;
+		iMark++;
+		int iSharedMark = iMark;
+		for (int i = 0; i < vertexTriangleCounts[to]; i++) {
+			int t = vertexTriangles[to][i];
+			if (deadTriangles[t]) {
+				continue;
+			}
+			
+			for (int k = 0; k < 3; k++) {
+				int v = triangles[t * 3 + k];
+				if (v != to && v != from && marks[v] == iSharedMark - 1) {
+					marks[v] = iSharedMark;
+					iShared++;
+				}
+			}
+		}
+		
+		// An edge has one shared neighbor for each of its triangles.
+		return iSharedEdgeTriangles > 0 && iShared <= iSharedEdgeTriangles;
+	}
+	
+	
+	private void collapse(int from, int to) {
+		for (int i = 0; i < vertexTriangleCounts[from]; i++) {
+			int t = vertexTriangles[from][i];
+			if (deadTriangles[t]) {
+				continue;
+			}
+			
+			int a = t * 3;
+			if (triangles[a] == to || triangles[a + 1] == to || triangles[a + 2] == to) {
+				deadTriangles[t] = true;
+				iNumLiveTriangles--;
+				continue;
+			}
+			
+			for (int k = a; k < a + 3; k++) {
+				if (triangles[k] == from) {
+					triangles[k] = to;
+				}
+			}
+			addVertexTriangle(to, t);
+		}
+		
+		for (int i = 0; i < 10; i++) {
+			quadrics[to * 10 + i] += quadrics[from * 10 + i];
+		}
+		
+		deadVertices[from] = true;
+		vertexTriangles[from] = null;
+		vertexTriangleCounts[from] = 0;
+		versions[to]++;
+		
+		// Drops the dead triangles of to, and queues again its edges with the new quadric.
+		int iCount = 0;
+		for (int i = 0; i < vertexTriangleCounts[to]; i++) {
+			int t = vertexTriangles[to][i];
+			if (deadTriangles[t]) {
+				continue;
+			}
+			vertexTriangles[to][iCount++] = t;
+			
+			for (int k = 0; k < 3; k++) {
+				int v = triangles[t * 3 + k];
+				if (v != to) {
+					pushEdge(to, v);
+				}
+			}
+		}
+		vertexTriangleCounts[to] = iCount;
+	}
+	
+	private void addVertexTriangle(int v, int t) {
+		if (vertexTriangleCounts[v] == vertexTriangles[v].length) {
+			vertexTriangles[v] = Arrays.copyOf(vertexTriangles[v], Math.max(8, vertexTriangleCounts[v] * 2));
+		}
+		
+		vertexTriangles[v][vertexTriangleCounts[v]++] = t;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * Queues the collapse of the edge (a, b) in the direction that adds the smaller error.
+	 */
+	private void pushEdge(int a, int b) {
+		double costA = evaluate(a, b, a);
+		double costB = evaluate(a, b, b);
+		
+		int from = costA <= costB ? b : a;
+		int to = costA <= costB ? a : b;
+		
+		if (iHeapSize == heapCosts.length) {
+			int iCapacity = iHeapSize * 2;
+			heapCosts = Arrays.copyOf(heapCosts, iCapacity);
+			heapFrom = Arrays.copyOf(heapFrom, iCapacity);
+			heapTo = Arrays.copyOf(heapTo, iCapacity);
+			heapFromVersion = Arrays.copyOf(heapFromVersion, iCapacity);
+			heapToVersion = Arrays.copyOf(heapToVersion, iCapacity);
+		}
+		
+		int i = iHeapSize++;
+		setHeapEntry(i, (float) Math.min(costA, costB), from, to, versions[from], versions[to]);
+		
+		// sift up
+		while (i > 0) {
+			int iParent = (i - 1) >> 1;
+			if (heapCosts[iParent] <= heapCosts[i]) {
+				break;
+			}
+			swapHeapEntries(i, iParent);
+			i = iParent;
+		}
+	}
+	
+	private void popHeap() {
+		iHeapSize--;
+		if (iHeapSize == 0) {
+			return;
+		}
+		
+		swapHeapEntries(0, iHeapSize);
+		
+		// sift down
+		int i = 0;
+		while (true) {
+			int iSmallest = i;
+			int iLeft = i * 2 + 1, iRight = iLeft + 1;
+			
+			if (iLeft < iHeapSize && heapCosts[iLeft] < heapCosts[iSmallest]) {
+				iSmallest = iLeft;
+			}
+			if (iRight < iHeapSize && heapCosts[iRight] < heapCosts[iSmallest]) {
+				iSmallest = iRight;
+			}
+			if (iSmallest == i) {
+				break;
+			}
+			
+			swapHeapEntries(i, iSmallest);
+			i = iSmallest;
+		}
+	}
+	
+	private void setHeapEntry(int i, float fCost, int from, int to, int fromVersion, int toVersion) {
+		heapCosts[i] = fCost;
+		heapFrom[i] = from;
+		heapTo[i] = to;
+		heapFromVersion[i] = fromVersion;
+		heapToVersion[i] = toVersion;
+	}
+	
+	private void swapHeapEntries(int i, int j) {
+		float fCost = heapCosts[i];
+		int from = heapFrom[i], to = heapTo[i];
+		int fromVersion = heapFromVersion[i], toVersion = heapToVersion[i];
+		
+		setHeapEntry(i, heapCosts[j], heapFrom[j], heapTo[j], heapFromVersion[j], heapToVersion[j]);
+		setHeapEntry(j, fCost, from, to, fromVersion, toVersion);
+	}
+}
@@ -0,0 +1,228 @@
+package rosick.jglsdk.framework;
+
+import static org.lwjgl.opengl.GL11.*;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.List;
+
+import rosick.jglsdk.framework.MeshData.Attribute;
+
+
+/**
+ * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
+ * 
+ * How the attribute arrays of a mesh are placed in its vertex buffer. In the planar layout every
+ * array is stored whole, starting on a 16 bytes boundary (stride 0). In the interleaved layout the
+ * attributes of a vertex are stored next to each other: each one starts on a 4 bytes boundary of
+ * the vertex, and the stride is the vertex size rounded up to 4 bytes.
+ * 
+ * No OpenGL call is made here.
+ * 
+ * @author integeruser
+ */
+public class VertexLayout {
+	
+	private boolean bInterleaved;
+	private int iStride;
+	private int offsets[];
+	private int iNumVertices;
+	private int iBufferSize;
+	
+	
+	private VertexLayout(boolean bInterleaved, int iStride, int offsets[], int iNumVertices, int iBufferSize) {
+		this.bInterleaved = bInterleaved;
+		this.iStride = iStride;
+		this.offsets = offsets;
+		this.iNumVertices = iNumVertices;
+		this.iBufferSize = iBufferSize;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	static VertexLayout planar(List<Attribute> attribs) {
+		int offsets[] = new int[attribs.size()];
+		int iBufferSize = 0;
+		
+		for (int i = 0; i < attribs.size(); i++) {
+			iBufferSize = MeshData.align16(iBufferSize);
+			offsets[i] = iBufferSize;
+			iBufferSize += attribs.get(i).calcByteSize();
+		}
+		
+		return new VertexLayout(false, 0, offsets, getNumVertices(attribs), iBufferSize);
+	}
+	
+	static VertexLayout interleaved(List<Attribute> attribs) {
+		int offsets[] = new int[attribs.size()];
+		int iVertexSize = 0;
+		
+		for (int i = 0; i < attribs.size(); i++) {
+			Attribute attrib = attribs.get(i);
+			
+			iVertexSize = align4(iVertexSize);
+			offsets[i] = iVertexSize;
+			iVertexSize += attrib.iSize * attrib.pAttribType.iNumBytes;
+		}
+		
+		int iStride = align4(iVertexSize);
+		int iNumVertices = getNumVertices(attribs);
+		
+		return new VertexLayout(true, iStride, offsets, iNumVertices, iStride * iNumVertices);
+	}
+	
+	/**
+	 * Rebuilds an interleaved layout stored by MeshCache.
+	 */
+	static VertexLayout interleaved(int iStride, int offsets[], int iNumVertices) {
+		return new VertexLayout(true, iStride, offsets, iNumVertices, iStride * iNumVertices);
+	}
+	
+	
+	public boolean isInterleaved() {
+		return bInterleaved;
+	}
+	
+	/**
+	 * The stride to give to glVertexAttribPointer: 0 for the planar layout.
+	 */
+	public int getStride() {
+		return iStride;
+	}
+	
+	public int getOffset(int attribIx) {
+		return offsets[attribIx];
+	}
+	
+	public int getBufferSize() {
+		return iBufferSize;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * Copies the data of attribs in buffer (in native order, at least getBufferSize() bytes). With the
+	 * planar layout the data of every Attribute becomes a view of buffer.
+	 */
+	void pack(List<Attribute> attribs, ByteBuffer buffer) {
+		for (int i = 0; i < attribs.size(); i++) {
+			Attribute attrib = attribs.get(i);
+			
+			if (!bInterleaved) {
+				attrib.dataArray = MeshData.putBuffer(buffer, offsets[i], attrib.dataArray, attrib.pAttribType);
+				continue;
+			}
+			
+			Buffer data = attrib.dataArray;
+			int iNumBytes = attrib.pAttribType.iNumBytes;
+			
+			for (int iVertex = 0; iVertex < iNumVertices; iVertex++) {
+				int iDest = iVertex * iStride + offsets[i];
+				int iSrc = iVertex * attrib.iSize;
+				
+				for (int iComponent = 0; iComponent < attrib.iSize; iComponent++) {
+					if (attrib.pAttribType.eGLType == GL_FLOAT) {
+						buffer.putFloat(iDest, ((FloatBuffer) data).get(iSrc + iComponent));
+					} else if (iNumBytes == 4) {
+						buffer.putInt(iDest, ((IntBuffer) data).get(iSrc + iComponent));
+					} else if (iNumBytes == 2) {
+						buffer.putShort(iDest, ((ShortBuffer) data).get(iSrc + iComponent));
+					} else {
+						buffer.put(iDest, ((ByteBuffer) data).get(iSrc + iComponent));
+					}
+					
+					iDest += iNumBytes;
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * The opposite of pack() for the interleaved layout: gives every Attribute (whose type and size
+	 * must be set) its own copy of the data stored in buffer.
+	 */
+	void unpack(ByteBuffer buffer, List<Attribute> attribs) {
+		buffer = buffer.duplicate().order(ByteOrder.nativeOrder());
+		
+		for (int i = 0; i < attribs.size(); i++) {
+			Attribute attrib = attribs.get(i);
+			
+			int iNumBytes = attrib.pAttribType.iNumBytes;
+			int iNumValues = iNumVertices * attrib.iSize;
+			
+			float floats[] = null;
+			int ints[] = null;
+			short shorts[] = null;
+			byte bytes[] = null;
+			if (attrib.pAttribType.eGLType == GL_FLOAT) {
+				floats = new float[iNumValues];
+				attrib.dataArray = FloatBuffer.wrap(floats);
+			} else if (iNumBytes == 4) {
+				ints = new int[iNumValues];
+				attrib.dataArray = IntBuffer.wrap(ints);
+			} else if (iNumBytes == 2) {
+				shorts = new short[iNumValues];
+				attrib.dataArray = ShortBuffer.wrap(shorts);
+			} else {
+				bytes = new byte[iNumValues];
+				attrib.dataArray = ByteBuffer.wrap(bytes);
+			}
+			
+			for (int iVertex = 0; iVertex < iNumVertices; iVertex++) {
+				int iSrc = iVertex * iStride + offsets[i];
+				int iDest = iVertex * attrib.iSize;
+				
+				for (int iComponent = 0; iComponent < attrib.iSize; iComponent++) {
+					if (floats != null) {
+						floats[iDest + iComponent] = buffer.getFloat(iSrc);
+					} else if (ints != null) {
+						ints[iDest + iComponent] = buffer.getInt(iSrc);
+					} else if (shorts != null) {
+						shorts[iDest + iComponent] = buffer.getShort(iSrc);
+					} else {
+						bytes[iDest + iComponent] = buffer.get(iSrc);
+					}
+					
+					iSrc += iNumBytes;
+				}
+			}
+		}
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	private static int align4(int byteOffset) {
+		return (byteOffset + 3) & ~3;
+	}
+	
+	
+	private static int getNumVertices(List<Attribute> attribs) {
+		int iNumElements = 0;
+		
+		for (Attribute attrib : attribs) {
+			if (iNumElements != 0) {
+				if (iNumElements != attrib.numElements()) {
+					throw new RuntimeException("Some of the attribute arrays have different element counts.");
+				}
+			} else {
+				iNumElements = attrib.numElements();
+			}
+		}
+		
+		return iNumElements;
+	}
+}
@@ -1,9 +1,9 @@
 package rosick.jglsdk.glimg;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
+
+import org.lwjgl.BufferUtils;
 
-import rosick.PortingUtils;
 import rosick.jglsdk.glimg.ImageFormat.PixelDataType;
 import rosick.jglsdk.glimg.ImageSet.Dimensions;
 
@@ -49,8 +49,9 @@ public class ImageCreator {
 	private int m_mipmapCount;
 	private int m_arrayCount;
 	private int m_faceCount;
-	private ArrayList<ArrayList<Integer>> m_imageData;
-	private ArrayList<Integer> m_imageSizes;
+	private ByteBuffer m_imageData;
+	private int m_mipmapOffsets[];
+	private int m_imageSizes[];
 
 	
 	public ImageCreator(ImageFormat format, Dimensions dimensions, int mipmapCount, int arrayCount, int faceCount) throws CubemapsMustBe2DException, BadFaceCountException, No3DTextureArrayException, NoImagesSpecifiedException {
@@ -59,8 +60,8 @@ public class ImageCreator {
 		m_mipmapCount = mipmapCount;
 		m_arrayCount = arrayCount;
 		m_faceCount = faceCount;
-		m_imageData = new ArrayList<>(mipmapCount);
-		m_imageSizes = new ArrayList<>(mipmapCount);
+		m_mipmapOffsets = new int[mipmapCount];
+		m_imageSizes = new int[mipmapCount];
 
 		if (m_faceCount != 6 && m_faceCount != 1) {
 			throw new BadFaceCountException();
@@ -78,19 +79,18 @@ public class ImageCreator {
 			throw new NoImagesSpecifiedException();
 		}
 
-		// Allocate the memory for our data.
+		// Allocate the memory for our data: every mipmap level is stored in the same buffer, one after the other.
+		int totalSize = 0;
 		for (int level = 0; level < mipmapCount; level++) {
 			Dimensions mipmapDims = Util.modifySizeForMipmap(m_dims, level);
 			int imageSize = Util.calcImageByteSize(m_format, mipmapDims);
 
-			ArrayList<Integer> mipmap = new ArrayList<>();
-			for (int i = 0; i < imageSize * m_faceCount * m_arrayCount; i++) {
-				mipmap.add(0);
-			}
-			
-			m_imageData.add(mipmap);
-			m_imageSizes.add(imageSize);
+			m_mipmapOffsets[level] = totalSize;
+			m_imageSizes[level] = imageSize;
+			totalSize += imageSize * m_faceCount * m_arrayCount;
 		}
+		
+		m_imageData = BufferUtils.createByteBuffer(totalSize);
 	}	
 	
 
@@ -98,10 +98,10 @@ public class ImageCreator {
 	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
 	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
 
-	public void setImageData(List<Character> pixelData,
+	public void setImageData(ByteBuffer pixelData,
 			boolean isTopLeft, int mipmapLevel, int arrayIx, int faceIx) {
 
- 		if (m_imageData.isEmpty()) {
+ 		if (m_imageData == null) {
 			throw new ImageSetAlreadyCreatedException();
  		}
 			
@@ -118,29 +118,29 @@ public class ImageCreator {
 			throw new FaceIndexOutOfBoundsException();
 		}
 
-		int imageOffset = ((arrayIx * m_faceCount) + faceIx) * m_imageSizes.get(mipmapLevel);
-
-		ArrayList<Integer> pMipmapData = m_imageData.get(mipmapLevel);
-		List<Integer> pMipmapDataList = pMipmapData.subList(imageOffset, pMipmapData.size());
+		int imageOffset = m_mipmapOffsets[mipmapLevel] + ((arrayIx * m_faceCount) + faceIx) * m_imageSizes[mipmapLevel];
 		
 		if (!isTopLeft) {
 			//memcpy(pMipmapData, pixelData, m_imageSizes[mipmapLevel]);
 			throw new RuntimeException("Not yet implemented");
 		}
 		else {
-			copyImageFlipped(pixelData, pMipmapDataList, mipmapLevel);
+			copyImageFlipped(pixelData, imageOffset, mipmapLevel);
 		}
 	}
 
 
 	public ImageSet createImage() {
-		if (m_imageData.isEmpty()) {
+		if (m_imageData == null) {
 			throw new ImageSetAlreadyCreatedException();
 		}
 		
 		ImageSetImpl pImageData = new ImageSetImpl(m_format, m_dims,
-			m_mipmapCount, m_arrayCount, m_faceCount, m_imageData, m_imageSizes);
-
+			m_mipmapCount, m_arrayCount, m_faceCount, m_imageData, m_mipmapOffsets, m_imageSizes);
+		
+		// The ImageSet owns the data now.
+		m_imageData = null;
+		
 		return new ImageSet(pImageData);
 	}
 	
@@ -149,13 +149,13 @@ public class ImageCreator {
 	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
 	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
 	
-	private void copyImageFlipped(List<Character> pixelData,
-			List<Integer> pDstData, int mipmapLevel) {
+	private void copyImageFlipped(ByteBuffer pixelData,
+			int imageOffset, int mipmapLevel) {
 		Dimensions dims = Util.modifySizeForMipmap(new Dimensions(m_dims), mipmapLevel);
 		
 		if (m_format.type().ordinal() < PixelDataType.DT_NUM_UNCOMPRESSED_TYPES.ordinal()) {
-			copyPixelsFlipped(pDstData, dims, m_format, mipmapLevel, pixelData,
-				m_imageSizes.get(mipmapLevel));
+			copyPixelsFlipped(imageOffset, dims, m_format, mipmapLevel, pixelData,
+				m_imageSizes[mipmapLevel]);
 		} 
 		else {
 			throw new RuntimeException("Not yet implemented");
@@ -163,23 +163,28 @@ public class ImageCreator {
 	}
 	
 	
-	private void copyPixelsFlipped(List<Integer> pMipmapData, Dimensions dims,
-			ImageFormat format, int mipmapLevel, List<Character> pixelData,
+	private void copyPixelsFlipped(int imageOffset, Dimensions dims,
+			ImageFormat format, int mipmapLevel, ByteBuffer pixelData,
 			int imageSize) {
 		// Flip the data. Copy line by line.
 		int numLines = dims.numLines();
 		int lineByteSize = format.alignByteCount(Util.calcBytesPerPixel(format) * dims.width);
 		
+		ByteBuffer srcLine = pixelData.duplicate();
+		ByteBuffer dstLine = m_imageData.duplicate();
+		
 		// Move the pixel data to the last row.
-		int pInputRow = imageSize;
+		int pInputRow = pixelData.position() + imageSize;
 		pInputRow -= lineByteSize;
 		for (int line = 0; line < numLines; line++) {
 			int lineOffset = line * lineByteSize;
 			
-			for (int i = 0; i < lineByteSize; i++) {
-				int pixel = PortingUtils.toUnsignedInt(pixelData.get(pInputRow - lineOffset + i));
-				pMipmapData.set(lineOffset + i, pixel);
-			}
+			srcLine.clear();
+			srcLine.position(pInputRow - lineOffset);
+			srcLine.limit(pInputRow - lineOffset + lineByteSize);
+			
+			dstLine.position(imageOffset + lineOffset);
+			dstLine.put(srcLine);
 		}
 	}
 }
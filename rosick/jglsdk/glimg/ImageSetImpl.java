@@ -1,10 +1,6 @@
 package rosick.jglsdk.glimg;
 
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.List;
-
-import org.lwjgl.BufferUtils;
 
 import rosick.jglsdk.glimg.ImageSet.Dimensions;
 
@@ -13,19 +9,21 @@ public class ImageSetImpl {
 	
 	ImageFormat m_format;
 	Dimensions m_dimensions;
-	ArrayList<Integer> m_imageSizes;
-	ArrayList<ArrayList<Integer>> m_imageData;
+	ByteBuffer m_imageData;
+	int m_mipmapOffsets[];
+	int m_imageSizes[];
 	int m_mipmapCount;
 	int m_faceCount;
 
 	
 	ImageSetImpl(ImageFormat format, Dimensions dimensions,
 			int mipmapCount, int arrayCount, int faceCount,
-			ArrayList<ArrayList<Integer>> imageData,
-			ArrayList<Integer> imageSizes) {
+			ByteBuffer imageData, int mipmapOffsets[],
+			int imageSizes[]) {
 		m_format = format;
 		m_dimensions = dimensions;
 		m_imageData = imageData;
+		m_mipmapOffsets = mipmapOffsets;
 		m_imageSizes = imageSizes;
 		m_mipmapCount = mipmapCount;
 		m_faceCount = faceCount;
@@ -48,19 +46,15 @@ public class ImageSetImpl {
 		return Util.modifySizeForMipmap(m_dimensions, mipmapLevel);
 	}
 
-	public ByteBuffer getImageData(int mipmapLevel, int arrayIx, int faceIx) {		
-		int imageOffset = ((arrayIx * m_faceCount) + faceIx) * m_imageSizes.get(mipmapLevel);
-		ArrayList<Integer> image = m_imageData.get(mipmapLevel);
-		List<Integer> offsettedImage = image.subList(imageOffset, image.size());
-
-		ByteBuffer tempBuffer = BufferUtils.createByteBuffer(offsettedImage.size());
-		
-		for (Integer integer : offsettedImage) {
-			tempBuffer.put(integer.byteValue());
-		}
+	public ByteBuffer getImageData(int mipmapLevel, int arrayIx, int faceIx) {
+		int imageSize = m_imageSizes[mipmapLevel];
+		int imageOffset = m_mipmapOffsets[mipmapLevel] + ((arrayIx * m_faceCount) + faceIx) * imageSize;
 		
-		tempBuffer.flip();
+		// A read-only view of exactly one image: the pixels are never copied.
+		ByteBuffer image = m_imageData.asReadOnlyBuffer();
+		image.position(imageOffset);
+		image.limit(imageOffset + imageSize);
 		
-		return tempBuffer;
+		return image.slice();
 	}
 }
@@ -1,17 +1,22 @@
 package rosick.jglsdk.glimg.loaders;
 
-import static rosick.PortingUtils.*;
 import static rosick.jglsdk.glimg.ImageFormat.Bitdepth.*;
 import static rosick.jglsdk.glimg.ImageFormat.ComponentOrder.*;
 import static rosick.jglsdk.glimg.ImageFormat.PixelComponents.*;
 import static rosick.jglsdk.glimg.ImageFormat.PixelDataType.*;
 
-import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
-import java.util.ArrayList;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 
 import rosick.jglsdk.glimg.ImageCreator;
 import rosick.jglsdk.glimg.ImageFormat;
@@ -92,15 +97,15 @@ public class Dds {
 		int	dwBBitMask;
 		int	dwABitMask;
 
-		DdsPixelFormat(ArrayList<Character> ddsData, int startIndex) {
-			dwSize =		toUnsignedInt(ddsData, startIndex);
-			dwFlags =		toUnsignedInt(ddsData, startIndex +  4);
-			dwFourCC =		toUnsignedInt(ddsData, startIndex +  8);
-			dwRGBBitCount =	toUnsignedInt(ddsData, startIndex + 12);
-			dwRBitMask =	toUnsignedInt(ddsData, startIndex + 16);
-			dwGBitMask =	toUnsignedInt(ddsData, startIndex + 20);
-			dwBBitMask =	toUnsignedInt(ddsData, startIndex + 24);
-			dwABitMask =	toUnsignedInt(ddsData, startIndex + 28);
+		DdsPixelFormat(ByteBuffer ddsData, int startIndex) {
+			dwSize =		ddsData.getInt(startIndex);
+			dwFlags =		ddsData.getInt(startIndex +  4);
+			dwFourCC =		ddsData.getInt(startIndex +  8);
+			dwRGBBitCount =	ddsData.getInt(startIndex + 12);
+			dwRBitMask =	ddsData.getInt(startIndex + 16);
+			dwGBitMask =	ddsData.getInt(startIndex + 20);
+			dwBBitMask =	ddsData.getInt(startIndex + 24);
+			dwABitMask =	ddsData.getInt(startIndex + 28);
 		}
 	};
 	
@@ -132,27 +137,27 @@ public class Dds {
 
 		static final int SIZE = (7 + 11 + 8 + 5) * (Integer.SIZE / 8);
 
-		DdsHeader(ArrayList<Character> ddsData) {
+		DdsHeader(ByteBuffer ddsData) {
 			int startIndex = 4;
 			
-			dwSize = 				toUnsignedInt(ddsData, startIndex);
-			dwFlags = 				toUnsignedInt(ddsData, startIndex +  4);
-			dwHeight = 				toUnsignedInt(ddsData, startIndex +  8);
-			dwWidth = 				toUnsignedInt(ddsData, startIndex + 12);
-			dwPitchOrLinearSize = 	toUnsignedInt(ddsData, startIndex + 16);
-			dwDepth = 				toUnsignedInt(ddsData, startIndex + 20);
-			dwMipMapCount = 		toUnsignedInt(ddsData, startIndex + 24);
+			dwSize = 				ddsData.getInt(startIndex);
+			dwFlags = 				ddsData.getInt(startIndex +  4);
+			dwHeight = 				ddsData.getInt(startIndex +  8);
+			dwWidth = 				ddsData.getInt(startIndex + 12);
+			dwPitchOrLinearSize = 	ddsData.getInt(startIndex + 16);
+			dwDepth = 				ddsData.getInt(startIndex + 20);
+			dwMipMapCount = 		ddsData.getInt(startIndex + 24);
 
 			for (int i = 0; i < 11; i++) {
-				dwReserved1[i] = 	toUnsignedInt(ddsData, (startIndex + 28) + 4 * i);
+				dwReserved1[i] = 	ddsData.getInt((startIndex + 28) + 4 * i);
 			}
 
 			ddspf = 				new DdsPixelFormat(ddsData, 76);
-			dwCaps = 				toUnsignedInt(ddsData, startIndex + 104);
-			dwCaps2 = 				toUnsignedInt(ddsData, startIndex + 108);
-			dwCaps3 = 				toUnsignedInt(ddsData, startIndex + 112);
-			dwCaps4 = 				toUnsignedInt(ddsData, startIndex + 116);
-			dwReserved2 = 			toUnsignedInt(ddsData, startIndex + 120);
+			dwCaps = 				ddsData.getInt(startIndex + 104);
+			dwCaps2 = 				ddsData.getInt(startIndex + 108);
+			dwCaps3 = 				ddsData.getInt(startIndex + 112);
+			dwCaps4 = 				ddsData.getInt(startIndex + 116);
+			dwReserved2 = 			ddsData.getInt(startIndex + 120);
 		}
 	};
 
@@ -167,12 +172,12 @@ public class Dds {
 
 		Dds10Header() {}
 
-		Dds10Header(ArrayList<Character> ddsData, int startIndex) {
-			dxgiFormat = 		toUnsignedInt(ddsData, startIndex);
-			resourceDimension = toUnsignedInt(ddsData, startIndex +  4);
-			miscFlag = 			toUnsignedInt(ddsData, startIndex +  8);
-			arraySize = 		toUnsignedInt(ddsData, startIndex + 12);
-			reserved = 			toUnsignedInt(ddsData, startIndex + 16);
+		Dds10Header(ByteBuffer ddsData, int startIndex) {
+			dxgiFormat = 		ddsData.getInt(startIndex);
+			resourceDimension = ddsData.getInt(startIndex +  4);
+			miscFlag = 			ddsData.getInt(startIndex +  8);
+			arraySize = 		ddsData.getInt(startIndex + 12);
+			reserved = 			ddsData.getInt(startIndex + 16);
 		}
 	}
 
@@ -202,35 +207,42 @@ public class Dds {
 	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
 	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */	
 	
-	public static ImageSet loadFromFile(String filename) {
-		// Load the file.
-		ArrayList<Character> fileData = new ArrayList<>();
-
-		InputStream in = ClassLoader.class.getResourceAsStream(filename);
-		Reader buffer = new BufferedReader(new InputStreamReader(in));
-		int r;
+	public static ImageSet loadFromFile(String filename) throws IOException {
+		URL url = Dds.class.getResource(filename);
+		if (url == null) {
+			throw new FileNotFoundException(filename);
+		}
+		
+		// Files on disk are mapped directly, everything else (eg. jar entries) is streamed into a reused direct buffer.
+		File file = toFile(url);
+		if (file != null) {
+			try (FileInputStream in = new FileInputStream(file)) {
+				FileChannel channel = in.getChannel();
+				ByteBuffer ddsData = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				ddsData.order(ByteOrder.LITTLE_ENDIAN);
+				
+				return processDDSData(ddsData, filename);
+			}
+		}
 		
-        try {
-			while ((r = buffer.read()) != -1) {
-				fileData.add((char) r);
+		synchronized (Dds.class) {
+			try (InputStream in = url.openStream()) {
+				ByteBuffer ddsData = readFully(in);
+				
+				// The ImageCreator copies the pixels, so the pooled buffer can be reused by the next load.
+				return processDDSData(ddsData, filename);
 			}
-		} catch (IOException e) {
-			e.printStackTrace();
 		}
-        
-		return processDDSData(fileData, filename);
 	}
 	
 	
-	private static ImageSet processDDSData(ArrayList<Character> ddsData, String filename) {
+	private static ImageSet processDDSData(ByteBuffer ddsData, String filename) {
 		// Check the first 4 bytes.
-		int magicTest = toUnsignedInt(ddsData, 0);
-
-		if (magicTest != MagicNumbers.DDS_MAGIC_NUMBER) {
+		if (ddsData.limit() < 4 || ddsData.getInt(0) != MagicNumbers.DDS_MAGIC_NUMBER) {
 			throw new DdsFileMalformedException(filename, "The Magic number is missing from the file.");
 		}
 		
-		if (ddsData.size() < DdsHeader.SIZE + 4) {
+		if (ddsData.limit() < DdsHeader.SIZE + 4) {
 			throw new DdsFileMalformedException(filename, "The data is way too small to store actual information.");
 		}
 		
@@ -255,8 +267,18 @@ public class Dds {
 		for (int arrayIx = 0; arrayIx < numArrays; arrayIx++) {
 			for (int faceIx = 0; faceIx < numFaces; faceIx++) {
 				for (int mipmapLevel = 0; mipmapLevel < numMipmaps; mipmapLevel++) {
-					imgCreator.setImageData(ddsData.subList(cumulativeOffset, ddsData.size()), true, mipmapLevel, arrayIx, faceIx);
-					cumulativeOffset += calcMipmapSize(new Dimensions(dims), mipmapLevel, fmt);
+					int mipmapSize = calcMipmapSize(dims, mipmapLevel, fmt);
+					if (cumulativeOffset + mipmapSize > ddsData.limit()) {
+						throw new DdsFileMalformedException(filename, "The file is too small for the image data it declares.");
+					}
+					
+					// Hand the creator a view of the file data, no bytes are copied here.
+					ByteBuffer imageData = ddsData.duplicate();
+					imageData.position(cumulativeOffset);
+					imageData.limit(cumulativeOffset + mipmapSize);
+					
+					imgCreator.setImageData(imageData.slice(), true, mipmapLevel, arrayIx, faceIx);
+					cumulativeOffset += mipmapSize;
 				}
 			}
 		}
@@ -269,7 +291,7 @@ public class Dds {
 	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
 	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
 	
-	private static Dds10Header getDDS10Header(DdsHeader header, ArrayList<Character> ddsData) {
+	private static Dds10Header getDDS10Header(DdsHeader header, ByteBuffer ddsData) {
 		if (header.ddspf.dwFourCC == MagicNumbers.DDS10_FOUR_CC) {
 			Dds10Header header10;
 			int offsetToNewHeader = 4 + DdsHeader.SIZE;
@@ -435,6 +457,53 @@ public class Dds {
 	
 
 	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	private static ByteBuffer g_resourceBuffer;
+	
+	
+	private static File toFile(URL url) {
+		if (!url.getProtocol().equals("file")) {
+			return null;
+		}
+		
+		try {
+			return new File(url.toURI());
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			return null;
+		}
+	}
+	
+	
+	private static ByteBuffer readFully(InputStream in) throws IOException {
+		if (g_resourceBuffer == null) {
+			g_resourceBuffer = ByteBuffer.allocateDirect(Math.max(in.available(), 64 * 1024));
+		}
+		
+		ByteBuffer buffer = g_resourceBuffer;
+		buffer.clear();
+		
+		ReadableByteChannel channel = Channels.newChannel(in);
+		while (channel.read(buffer) != -1) {
+			if (!buffer.hasRemaining()) {
+				// Double the size of the pooled buffer.
+				ByteBuffer temp = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+				buffer.flip();
+				temp.put(buffer);
+				buffer = temp;
+			}
+		}
+		
+		g_resourceBuffer = buffer;
+		buffer.flip();
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		
+		return buffer;
+	}
+	
+	
+
 	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
 	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
 	
@@ -4,10 +4,21 @@ package rosick.jglsdk.glm;
 /**
  * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
  * 
+ * The static functions of this package with a dest argument store their result in dest and return it,
+ * without allocating anything. dest can also be one of the arguments.
+ * 
  * @author integeruser
  */
 public class Glm {
 	
+	// Below this half angle (in radians) angleAxis() and integrate() use their Taylor series, whose
+	// error is far under the float precision.
+	private static final double SMALL_HALF_ANGLE = 0.125;
+	
+	// Above this cosine slerp() uses nlerp(): the two are indistinguishable in float.
+	private static final float SLERP_THRESHOLD = 0.9995f;
+	
+	
 	public static float clamp(float x, float minVal, float maxVal) {
 		return Math.min(Math.max(x, minVal), maxVal);
 	}
@@ -27,38 +38,15 @@ public class Glm {
 	
 	
 	public static Vec3 normalize(Vec3 vec) {
-		Vec3 res = new Vec3();
-		
-		float invLength = 1.0f / length(vec);
-		res.x = vec.x * invLength;
-		res.y = vec.y * invLength;
-		res.z = vec.z * invLength;
-		
-		return res;
+		return normalize(vec, new Vec3());
 	}
 	
 	public static Vec4 normalize(Vec4 vec) {
-		Vec4 res = new Vec4();
-		
-		float invLength = 1.0f / length(vec);
-		res.x = vec.x * invLength;
-		res.y = vec.y * invLength;
-		res.z = vec.z * invLength;
-		res.w = vec.w * invLength;
-
-		return res;
+		return normalize(vec, new Vec4());
 	}
 	
 	public static Quaternion normalize(Quaternion quat) {		
-		Quaternion res = new Quaternion();
-		
-		float invLength = 1.0f / length(quat);
-		res.x = quat.x * invLength;
-		res.y = quat.y * invLength;
-		res.z = quat.z * invLength;
-		res.w = quat.w * invLength;
-
-		return res;
+		return normalize(quat, new Quaternion());
 	}
 	
 	
@@ -76,13 +64,7 @@ public class Glm {
 	
 	
 	public static Vec3 cross(Vec3 a, Vec3 b) {
-		Vec3 res = new Vec3();
-
-		res.x = a.y * b.z - a.z * b.y;
-		res.y = a.z * b.x - a.x * b.z;
-		res.z = a.x * b.y - a.y * b.x;
-
-		return res;
+		return cross(a, b, new Vec3());
 	}
 		
 	
@@ -91,7 +73,7 @@ public class Glm {
 	}
 	
 	public static Vec4 mix(Vec4 x, Vec4 y, float a) {
-		return Vec4.add(x, Vec4.sub(y, x).scale(a));
+		return mix(x, y, a, new Vec4());
 	}
 	
 	
@@ -101,21 +83,30 @@ public class Glm {
 	
 	
 	public static Quaternion angleAxis(float angle, Vec3 vec) {
-		Quaternion res = new Quaternion();
+		return angleAxis(angle, vec, new Quaternion());
+	}
+	
+	public static Quaternion angleAxis(float angle, Vec3 vec, Quaternion dest) {
+		Quaternion res = dest;
 
-		float a = (float) Math.toRadians(angle);
-        float s = (float) Math.sin(a * 0.5);
+		// Mouse drags produce small angles: skip the trigonometric functions for them.
+		double halfAngle = angle * (Math.PI / 360.0);
+		float s = (float) halfAngleSin(halfAngle);
 
         res.x = vec.x * s;
         res.y = vec.y * s;
         res.z = vec.z * s;
-        res.w = (float) Math.cos(a * 0.5);
+        res.w = (float) halfAngleCos(halfAngle);
 
         return res;
 	}
 	
 	
 	public static Quaternion quatCast(Mat4 mat) {
+		return quatCast(mat, new Quaternion());
+	}
+	
+	public static Quaternion quatCast(Mat4 mat, Quaternion dest) {
 		float fourXSquaredMinus1 = mat.matrix[0] 	- mat.matrix[5] 	- mat.matrix[10];
 		float fourYSquaredMinus1 = mat.matrix[5] 	- mat.matrix[0] 	- mat.matrix[10];
 		float fourZSquaredMinus1 = mat.matrix[10] 	- mat.matrix[0] 	- mat.matrix[5];
@@ -142,7 +133,7 @@ public class Glm {
 	    float biggestVal = (float) (Math.sqrt(fourBiggestSquaredMinus1 + 1) * 0.5f);
 	    float mult = 0.25f / biggestVal;
 
-		Quaternion res = new Quaternion();
+		Quaternion res = dest;
 
 		switch (biggestIndex) {
 		case 0:
@@ -176,148 +167,71 @@ public class Glm {
 	
 	
 	public static Mat3 inverse(Mat3 mat) {	
-		Mat3 res = new Mat3();
-		
-		res.matrix[0] = + (mat.matrix[4] * mat.matrix[8] - mat.matrix[7] * mat.matrix[5]);
-		res.matrix[3] = - (mat.matrix[3] * mat.matrix[8] - mat.matrix[6] * mat.matrix[5]);
-		res.matrix[6] = + (mat.matrix[3] * mat.matrix[7] - mat.matrix[6] * mat.matrix[4]);
-		res.matrix[1] = - (mat.matrix[1] * mat.matrix[8] - mat.matrix[7] * mat.matrix[2]);
-		res.matrix[4] = + (mat.matrix[0] * mat.matrix[8] - mat.matrix[6] * mat.matrix[2]);
-		res.matrix[7] = - (mat.matrix[0] * mat.matrix[7] - mat.matrix[6] * mat.matrix[1]);
-		res.matrix[2] = + (mat.matrix[1] * mat.matrix[5] - mat.matrix[4] * mat.matrix[2]);
-		res.matrix[5] = - (mat.matrix[0] * mat.matrix[5] - mat.matrix[3] * mat.matrix[2]);
-		res.matrix[8] = + (mat.matrix[0] * mat.matrix[4] - mat.matrix[3] * mat.matrix[1]);
-		
-		float determinant = mat.matrix[0] * (mat.matrix[4] * mat.matrix[8] - mat.matrix[5] * mat.matrix[7]) 
-				+ mat.matrix[1] * (mat.matrix[5] * mat.matrix[6] - mat.matrix[3] * mat.matrix[8])
-	            + mat.matrix[2] * (mat.matrix[3] * mat.matrix[7] - mat.matrix[4] * mat.matrix[6]);
-		
-		return res.scale(1.0f / determinant);	
+		return inverse(mat, new Mat3());
 	}
 	
 	public static Mat4 inverse(Mat4 mat) {
-		float coef00 = mat.matrix[10] * mat.matrix[15] - mat.matrix[14] * mat.matrix[11];
-		float coef02 = mat.matrix[6] * mat.matrix[15] - mat.matrix[14] * mat.matrix[7];
-		float coef03 = mat.matrix[6] * mat.matrix[11] - mat.matrix[10] * mat.matrix[7];
-
-		float coef04 = mat.matrix[9] * mat.matrix[15] - mat.matrix[13] * mat.matrix[11];
-		float coef06 = mat.matrix[5] * mat.matrix[15] - mat.matrix[13] * mat.matrix[7];
-		float coef07 = mat.matrix[5] * mat.matrix[11] - mat.matrix[9] * mat.matrix[7];
-
-		float coef08 = mat.matrix[9] * mat.matrix[14] - mat.matrix[13] * mat.matrix[10];
-		float coef10 = mat.matrix[5] * mat.matrix[14] - mat.matrix[13] * mat.matrix[6];
-		float coef11 = mat.matrix[5] * mat.matrix[10] - mat.matrix[9] * mat.matrix[6];
-
-		float coef12 = mat.matrix[8] * mat.matrix[15] - mat.matrix[12] * mat.matrix[11];
-		float coef14 = mat.matrix[4] * mat.matrix[15] - mat.matrix[12] * mat.matrix[7];
-		float coef15 = mat.matrix[4] * mat.matrix[11] - mat.matrix[8] * mat.matrix[7];
-
-		float coef16 = mat.matrix[8] * mat.matrix[14] - mat.matrix[12] * mat.matrix[10];
-		float coef18 = mat.matrix[4] * mat.matrix[14] - mat.matrix[12] * mat.matrix[6];
-		float coef19 = mat.matrix[4] * mat.matrix[10] - mat.matrix[8] * mat.matrix[6];
-
-		float coef20 = mat.matrix[8] * mat.matrix[13] - mat.matrix[12] * mat.matrix[9];
-		float coef22 = mat.matrix[4] * mat.matrix[13] - mat.matrix[12] * mat.matrix[5];
-		float coef23 = mat.matrix[4] * mat.matrix[9]  - mat.matrix[8] * mat.matrix[5];
-
-		final Vec4 signA = new Vec4(+1, -1, +1, -1);
-		final Vec4 signB = new Vec4(-1, +1, -1, +1);
-
-		Vec4 fac0 = new Vec4(coef00, coef00, coef02, coef03);
-		Vec4 fac1 = new Vec4(coef04, coef04, coef06, coef07);
-		Vec4 fac2 = new Vec4(coef08, coef08, coef10, coef11);
-		Vec4 fac3 = new Vec4(coef12, coef12, coef14, coef15);
-		Vec4 fac4 = new Vec4(coef16, coef16, coef18, coef19);
-		Vec4 fac5 = new Vec4(coef20, coef20, coef22, coef23);
-
-		Vec4 vec0 = new Vec4(mat.matrix[4], mat.matrix[0], mat.matrix[0], mat.matrix[0]);
-		Vec4 vec1 = new Vec4(mat.matrix[5], mat.matrix[1], mat.matrix[1], mat.matrix[1]);
-		Vec4 vec2 = new Vec4(mat.matrix[6], mat.matrix[2], mat.matrix[2], mat.matrix[2]);
-		Vec4 vec3 = new Vec4(mat.matrix[7], mat.matrix[3], mat.matrix[3], mat.matrix[3]);
-
-		Vec4 inv0 = Vec4.mul(signA, Vec4.mul(vec1, fac0).sub(Vec4.mul(vec2, fac1)).add(Vec4.mul(vec3, fac2)));
-		Vec4 inv1 = Vec4.mul(signB, Vec4.mul(vec0, fac0).sub(Vec4.mul(vec2, fac3)).add(Vec4.mul(vec3, fac4)));
-		Vec4 inv2 = Vec4.mul(signA, Vec4.mul(vec0, fac1).sub(Vec4.mul(vec1, fac3)).add(Vec4.mul(vec3, fac5)));
-		Vec4 inv3 = Vec4.mul(signB, Vec4.mul(vec0, fac2).sub(Vec4.mul(vec1, fac4)).add(Vec4.mul(vec2, fac5)));
-
-		Mat4 res = new Mat4(inv0, inv1, inv2, inv3);
-
-		Vec4 row0 = new Vec4(res.matrix[0], res.matrix[4], res.matrix[8], res.matrix[12]);
-
-		float determinant = Glm.dot(mat.getColumn(0), row0);
-
-		return res.scale(1.0f / determinant);
+		return inverse(mat, new Mat4());
 	}
 	
+	
+	public static float determinant(Mat3 mat) {
+		float m[] = mat.matrix;
 		
-	public static Mat4 translate(Mat4 mat, Vec3 vec) {		
-		Vec4 temp0 = mat.getColumn(0).scale(vec.x);
-		Vec4 temp1 = mat.getColumn(1).scale(vec.y);
-		Vec4 temp2 = mat.getColumn(2).scale(vec.z);
-		Vec4 temp3 = mat.getColumn(3);
-
-		Vec4 temp = temp0.add(temp1).add(temp2).add(temp3);
+		return m[0] * (m[4] * m[8] - m[5] * m[7]) 
+				+ m[1] * (m[5] * m[6] - m[3] * m[8])
+				+ m[2] * (m[3] * m[7] - m[4] * m[6]);
+	}
+	
+	public static float determinant(Mat4 mat) {
+		float m[] = mat.matrix;
+		float m0 = m[0], m4 = m[4], m8 = m[8], m12 = m[12];
+		float m1 = m[1], m5 = m[5], m9 = m[9], m13 = m[13];
+		float m2 = m[2], m6 = m[6], m10 = m[10], m14 = m[14];
+		float m3 = m[3], m7 = m[7], m11 = m[11], m15 = m[15];
 		
-		Mat4 res = new Mat4(mat);	
-		res.setColumn(3, temp);
+		// 2x2 minors of the last two columns.
+		float coef00 = m10 * m15 - m14 * m11;
+		float coef04 = m9 * m15 - m13 * m11;
+		float coef08 = m9 * m14 - m13 * m10;
+		float coef12 = m8 * m15 - m12 * m11;
+		float coef16 = m8 * m14 - m12 * m10;
+		float coef20 = m8 * m13 - m12 * m9;
 		
-		return res;
+		return m0 * (m5 * coef00 - m6 * coef04 + m7 * coef08)
+				- m1 * (m4 * coef00 - m6 * coef12 + m7 * coef16)
+				+ m2 * (m4 * coef04 - m5 * coef12 + m7 * coef20)
+				- m3 * (m4 * coef08 - m5 * coef16 + m6 * coef20);
+	}
+	
+		
+	public static Mat4 translate(Mat4 mat, Vec3 vec) {		
+		return translate(mat, vec, new Mat4());
 	}
 	
 	
 	public static Mat3 transpose(Mat3 mat) {
-		Mat3 res = new Mat3();
-		
-		res.matrix[0] = mat.matrix[0];
-		res.matrix[1] = mat.matrix[3];
-		res.matrix[2] = mat.matrix[6];
-
-		res.matrix[3] = mat.matrix[1];
-		res.matrix[4] = mat.matrix[4];
-		res.matrix[5] = mat.matrix[7];
-
-        res.matrix[6] = mat.matrix[2];
-        res.matrix[7] = mat.matrix[5];
-        res.matrix[8] = mat.matrix[8];
-        
-        return res;
+		return transpose(mat, new Mat3());
 	}
 	
 	public static Mat4 transpose(Mat4 mat) {		
-		Mat4 res = new Mat4();
-		
-		res.matrix[0] = mat.matrix[0];
-		res.matrix[1] = mat.matrix[4];
-		res.matrix[2] = mat.matrix[8];
-		res.matrix[3] = mat.matrix[12];
-		
-		res.matrix[4] = mat.matrix[1];
-		res.matrix[5] = mat.matrix[5];
-        res.matrix[6] = mat.matrix[9];
-        res.matrix[7] = mat.matrix[13];
-        
-		res.matrix[8] = mat.matrix[2];
-		res.matrix[9] = mat.matrix[6];
-        res.matrix[10] = mat.matrix[10];
-        res.matrix[11] = mat.matrix[14];
-        
-		res.matrix[12] = mat.matrix[3];
-		res.matrix[13] = mat.matrix[7];
-        res.matrix[14] = mat.matrix[11];
-        res.matrix[15] = mat.matrix[15];
-        
-        return res;
+		return transpose(mat, new Mat4());
 	}
 	
 	
 	public static Mat4 perspective(float fovy, float aspect, float zNear, float zFar) {	
+		return perspective(fovy, aspect, zNear, zFar, new Mat4());
+	}
+	
+	public static Mat4 perspective(float fovy, float aspect, float zNear, float zFar, Mat4 dest) {	
 		float range = (float) (Math.tan(Math.toRadians(fovy / 2.0f)) * zNear);	
 		float left = -range * aspect;
 		float right = range * aspect;
 		float bottom = -range;
 		float top = range;
 
-		Mat4 res = new Mat4(0.0f);
+		Mat4 res = dest;
+		res.clear(0.0f);
 
 		res.matrix[0] 	=  (2.0f * zNear) / (right - left);
 		res.matrix[5] 	=  (2.0f * zNear) / (top - bottom);
@@ -330,13 +244,17 @@ public class Glm {
 	
 	
 	public static Mat4 matCast(Quaternion quat) {
+		return matCast(quat, new Mat4());
+	}
+	
+	public static Mat4 matCast(Quaternion quat, Mat4 dest) {
 		//  Converts this quaternion to a rotation matrix.
 	    //  | 1 - 2(y^2 + z^2)	2(xy + wz)			2(xz - wy)			0  |
 	    //  | 2(xy - wz)		1 - 2(x^2 + z^2)	2(yz + wx)			0  |
 	    //  | 2(xz + wy)		2(yz - wx)			1 - 2(x^2 + y^2)	0  |
 	    //  | 0					0					0					1  |
 		
-		Mat4 res = new Mat4(0.0f);
+		Mat4 res = dest;
 
 		res.matrix[0] 	= 1 - 2 * quat.y * quat.y - 2 * quat.z * quat.z;
 		res.matrix[1] 	= 2 * quat.x * quat.y + 2 * quat.w * quat.z;
@@ -350,6 +268,10 @@ public class Glm {
 		res.matrix[9] 	= 2 * quat.y * quat.z - 2 * quat.w * quat.x;
 		res.matrix[10] 	= 1 - 2 * quat.x * quat.x - 2 * quat.y * quat.y;
 		
+		res.matrix[3] 	= 0.0f;
+		res.matrix[7] 	= 0.0f;
+		res.matrix[11] 	= 0.0f;
+	
 	    res.matrix[12] 	= 0.0f;
 	    res.matrix[13] 	= 0.0f;
 	    res.matrix[14] 	= 0.0f;
@@ -360,46 +282,36 @@ public class Glm {
 	
 	
 	public static Mat4 rotate(Mat4 m, float angle, Vec3 v) {
-        float a = (float) Math.toRadians(angle);
-        float c = (float) Math.cos(a);
-        float s = (float) Math.sin(a);
-
-        Vec3 axis = normalize(v);
-
-        Vec3 temp = Vec3.scale(axis, 1.0f - c);
-
-        Mat4 rotate = new Mat4();
-		rotate.set(0, 	c + temp.x * axis.x);
-		rotate.set(1, 	0 + temp.x * axis.y + s * axis.z);
-		rotate.set(2, 	0 + 0 + temp.x * axis.z - s * axis.y);
-
-		rotate.set(4, 	0 + temp.y * axis.x - s * axis.z);
-		rotate.set(5, 	c + temp.y * axis.y);
-		rotate.set(6, 	0 + temp.y * axis.z + s * axis.x);
-		
-		rotate.set(8, 	0 + temp.z * axis.x + s * axis.y);
-		rotate.set(9, 	0 + temp.z * axis.y - s * axis.x);
-		rotate.set(10, 	c + temp.z * axis.z);
-
-	    Mat4 result = new Mat4();
-	    result.setColumn(0, Vec4.scale(m.getColumn(0), rotate.matrix[0]).add(Vec4.scale(m.getColumn(1), rotate.matrix[1])).add(Vec4.scale(m.getColumn(2), rotate.matrix[2])));
-	    result.setColumn(1, Vec4.scale(m.getColumn(0), rotate.matrix[4]).add(Vec4.scale(m.getColumn(1), rotate.matrix[5])).add(Vec4.scale(m.getColumn(2), rotate.matrix[6])));
-	    result.setColumn(2, Vec4.scale(m.getColumn(0), rotate.matrix[8]).add(Vec4.scale(m.getColumn(1), rotate.matrix[9])).add(Vec4.scale(m.getColumn(2), rotate.matrix[10])));
-	    result.setColumn(3, m.getColumn(3));
-		
-		return result;
+		return rotate(m, angle, v, new Mat4());
+	}
+	
+	
+	public static Quaternion nlerp(Quaternion x, Quaternion y, float a) {
+		return nlerp(x, y, a, new Quaternion());
+	}
+	
+	public static Quaternion slerp(Quaternion x, Quaternion y, float a) {
+		return slerp(x, y, a, new Quaternion());
 	}
 
 
 	
 	
 	public static Mat4 lookAt(Vec3 eye, Vec3 center, Vec3 up) {
+		return lookAt(eye, center, up, new Mat4());
+	}
+	
+	/**
+	 * Unlike the other functions with a dest argument, this one allocates a few temporaries.
+	 */
+	public static Mat4 lookAt(Vec3 eye, Vec3 center, Vec3 up, Mat4 dest) {
         Vec3 f = normalize(Vec3.sub(center, eye));
         Vec3 u = normalize(up);
         Vec3 s = normalize(cross(f, u));
         u = cross(s, f);
 
-        Mat4 result = new Mat4(1.0f);
+        Mat4 result = dest;
+        result.clear(1.0f);
         result.set(0, 0, s.x);
         result.set(1, 0, s.y);
         result.set(2, 0, s.z);
@@ -410,6 +322,502 @@ public class Glm {
         result.set(1, 2, -f.y);
         result.set(2, 2, -f.z);
 
-		return translate(result, Vec3.negate(eye));
+		return translate(result, Vec3.negate(eye), result);
+	}
+	
+	
+	public static Vec3 unProject(Vec3 win, Mat4 model, Mat4 proj, Vec4 viewport) {
+		return unProject(win, model, proj, viewport, new Vec3());
+	}
+	
+	/**
+	 * The inverse of the projection of a point: win holds the window coordinates (x and y inside
+	 * viewport, given as x, y, width and height) and the depth (0 on the near plane, 1 on the far
+	 * one). Unlike the other functions with a dest argument, this one allocates a few temporaries.
+	 */
+	public static Vec3 unProject(Vec3 win, Mat4 model, Mat4 proj, Vec4 viewport, Vec3 dest) {
+		Mat4 inv = inverse(Mat4.mul(proj, model, new Mat4()), new Mat4());
+		
+		Vec4 tmp = new Vec4(
+				(win.x - viewport.x) / viewport.z * 2.0f - 1.0f,
+				(win.y - viewport.y) / viewport.w * 2.0f - 1.0f,
+				win.z * 2.0f - 1.0f,
+				1.0f);
+		Mat4.mul(inv, tmp, tmp);
+		
+		dest.x = tmp.x / tmp.w;
+		dest.y = tmp.y / tmp.w;
+		dest.z = tmp.z / tmp.w;
+		
+		return dest;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	public static Vec3 normalize(Vec3 vec, Vec3 dest) {
+		float invLength = 1.0f / length(vec);
+		dest.x = vec.x * invLength;
+		dest.y = vec.y * invLength;
+		dest.z = vec.z * invLength;
+		
+		return dest;
+	}
+	
+	public static Vec4 normalize(Vec4 vec, Vec4 dest) {
+		float invLength = 1.0f / length(vec);
+		dest.x = vec.x * invLength;
+		dest.y = vec.y * invLength;
+		dest.z = vec.z * invLength;
+		dest.w = vec.w * invLength;
+		
+		return dest;
+	}
+	
+	public static Quaternion normalize(Quaternion quat, Quaternion dest) {		
+		float invLength = 1.0f / length(quat);
+		dest.x = quat.x * invLength;
+		dest.y = quat.y * invLength;
+		dest.z = quat.z * invLength;
+		dest.w = quat.w * invLength;
+		
+		return dest;
+	}
+	
+	
+	public static Vec3 cross(Vec3 a, Vec3 b, Vec3 dest) {
+		float x = a.y * b.z - a.z * b.y;
+		float y = a.z * b.x - a.x * b.z;
+		float z = a.x * b.y - a.y * b.x;
+		
+		dest.x = x;
+		dest.y = y;
+		dest.z = z;
+		
+		return dest;
+	}
+	
+	
+	public static Vec4 mix(Vec4 x, Vec4 y, float a, Vec4 dest) {
+		dest.x = x.x + (y.x - x.x) * a;
+		dest.y = x.y + (y.y - x.y) * a;
+		dest.z = x.z + (y.z - x.z) * a;
+		dest.w = x.w + (y.w - x.w) * a;
+		
+		return dest;
+	}
+	
+	
+	public static Mat3 inverse(Mat3 mat, Mat3 dest) {
+		float m[] = mat.matrix;
+		float m0 = m[0], m1 = m[1], m2 = m[2];
+		float m3 = m[3], m4 = m[4], m5 = m[5];
+		float m6 = m[6], m7 = m[7], m8 = m[8];
+		
+		float determinant = m0 * (m4 * m8 - m5 * m7) 
+				+ m1 * (m5 * m6 - m3 * m8)
+	            + m2 * (m3 * m7 - m4 * m6);
+		float invDet = 1.0f / determinant;
+		
+		float res[] = dest.matrix;
+		res[0] = + (m4 * m8 - m7 * m5) * invDet;
+		res[3] = - (m3 * m8 - m6 * m5) * invDet;
+		res[6] = + (m3 * m7 - m6 * m4) * invDet;
+		res[1] = - (m1 * m8 - m7 * m2) * invDet;
+		res[4] = + (m0 * m8 - m6 * m2) * invDet;
+		res[7] = - (m0 * m7 - m6 * m1) * invDet;
+		res[2] = + (m1 * m5 - m4 * m2) * invDet;
+		res[5] = - (m0 * m5 - m3 * m2) * invDet;
+		res[8] = + (m0 * m4 - m3 * m1) * invDet;
+		
+		return dest;
+	}
+	
+	public static Mat4 inverse(Mat4 mat, Mat4 dest) {
+		float m[] = mat.matrix;
+		float m0 = m[0], m4 = m[4], m8 = m[8], m12 = m[12];
+		float m1 = m[1], m5 = m[5], m9 = m[9], m13 = m[13];
+		float m2 = m[2], m6 = m[6], m10 = m[10], m14 = m[14];
+		float m3 = m[3], m7 = m[7], m11 = m[11], m15 = m[15];
+		
+		float coef00 = m10 * m15 - m14 * m11;
+		float coef02 = m6 * m15 - m14 * m7;
+		float coef03 = m6 * m11 - m10 * m7;
+		
+		float coef04 = m9 * m15 - m13 * m11;
+		float coef06 = m5 * m15 - m13 * m7;
+		float coef07 = m5 * m11 - m9 * m7;
+		
+		float coef08 = m9 * m14 - m13 * m10;
+		float coef10 = m5 * m14 - m13 * m6;
+		float coef11 = m5 * m10 - m9 * m6;
+		
+		float coef12 = m8 * m15 - m12 * m11;
+		float coef14 = m4 * m15 - m12 * m7;
+		float coef15 = m4 * m11 - m8 * m7;
+		
+		float coef16 = m8 * m14 - m12 * m10;
+		float coef18 = m4 * m14 - m12 * m6;
+		float coef19 = m4 * m10 - m8 * m6;
+		
+		float coef20 = m8 * m13 - m12 * m9;
+		float coef22 = m4 * m13 - m12 * m5;
+		float coef23 = m4 * m9  - m8 * m5;
+		
+		float inv0 	= + (m5 * coef00 - m6 * coef04 + m7 * coef08);
+		float inv1 	= - (m1 * coef00 - m2 * coef04 + m3 * coef08);
+		float inv2 	= + (m1 * coef02 - m2 * coef06 + m3 * coef10);
+		float inv3 	= - (m1 * coef03 - m2 * coef07 + m3 * coef11);
+		
+		float inv4 	= - (m4 * coef00 - m6 * coef12 + m7 * coef16);
+		float inv5 	= + (m0 * coef00 - m2 * coef12 + m3 * coef16);
+		float inv6 	= - (m0 * coef02 - m2 * coef14 + m3 * coef18);
+		float inv7 	= + (m0 * coef03 - m2 * coef15 + m3 * coef19);
+		
+		float inv8 	= + (m4 * coef04 - m5 * coef12 + m7 * coef20);
+		float inv9 	= - (m0 * coef04 - m1 * coef12 + m3 * coef20);
+		float inv10 = + (m0 * coef06 - m1 * coef14 + m3 * coef22);
+		float inv11 = - (m0 * coef07 - m1 * coef15 + m3 * coef23);
+		
+		float inv12 = - (m4 * coef08 - m5 * coef16 + m6 * coef20);
+		float inv13 = + (m0 * coef08 - m1 * coef16 + m2 * coef20);
+		float inv14 = - (m0 * coef10 - m1 * coef18 + m2 * coef22);
+		float inv15 = + (m0 * coef11 - m1 * coef19 + m2 * coef23);
+		
+		float determinant = m0 * inv0 + m1 * inv4 + m2 * inv8 + m3 * inv12;
+		float invDet = 1.0f / determinant;
+		
+		float res[] = dest.matrix;
+		res[0] = inv0 * invDet;
+		res[1] = inv1 * invDet;
+		res[2] = inv2 * invDet;
+		res[3] = inv3 * invDet;
+		res[4] = inv4 * invDet;
+		res[5] = inv5 * invDet;
+		res[6] = inv6 * invDet;
+		res[7] = inv7 * invDet;
+		res[8] = inv8 * invDet;
+		res[9] = inv9 * invDet;
+		res[10] = inv10 * invDet;
+		res[11] = inv11 * invDet;
+		res[12] = inv12 * invDet;
+		res[13] = inv13 * invDet;
+		res[14] = inv14 * invDet;
+		res[15] = inv15 * invDet;
+		
+		return dest;
+	}
+	
+	
+	/**
+	 * Inverts a matrix whose last row is (0, 0, 0, 1), like a model or a camera matrix. The
+	 * upper 3x3 part is inverted by itself and the translation is rotated back.
+	 */
+	public static Mat4 affineInverse(Mat4 mat, Mat4 dest) {
+		float m[] = mat.matrix;
+		float m0 = m[0], m4 = m[4], m8 = m[8], m12 = m[12];
+		float m1 = m[1], m5 = m[5], m9 = m[9], m13 = m[13];
+		float m2 = m[2], m6 = m[6], m10 = m[10], m14 = m[14];
+		
+		float inv0 = m5 * m10 - m9 * m6;
+		float inv1 = m9 * m2 - m1 * m10;
+		float inv2 = m1 * m6 - m5 * m2;
+		float inv4 = m8 * m6 - m4 * m10;
+		float inv5 = m0 * m10 - m8 * m2;
+		float inv6 = m4 * m2 - m0 * m6;
+		float inv8 = m4 * m9 - m8 * m5;
+		float inv9 = m8 * m1 - m0 * m9;
+		float inv10 = m0 * m5 - m4 * m1;
+		
+		float invDet = 1.0f / (m0 * inv0 + m4 * inv1 + m8 * inv2);
+		inv0 *= invDet; inv1 *= invDet; inv2 *= invDet;
+		inv4 *= invDet; inv5 *= invDet; inv6 *= invDet;
+		inv8 *= invDet; inv9 *= invDet; inv10 *= invDet;
+		
+		float res[] = dest.matrix;
+		res[0] = inv0; res[1] = inv1; res[2] = inv2; res[3] = 0.0f;
+		res[4] = inv4; res[5] = inv5; res[6] = inv6; res[7] = 0.0f;
+		res[8] = inv8; res[9] = inv9; res[10] = inv10; res[11] = 0.0f;
+		res[12] = -(inv0 * m12 + inv4 * m13 + inv8 * m14);
+		res[13] = -(inv1 * m12 + inv5 * m13 + inv9 * m14);
+		res[14] = -(inv2 * m12 + inv6 * m13 + inv10 * m14);
+		res[15] = 1.0f;
+		
+		return dest;
+	}
+	
+	/**
+	 * Inverts a matrix made only of a rotation and a translation: the rotation is transposed and
+	 * the translation is rotated back.
+	 */
+	public static Mat4 rigidInverse(Mat4 mat, Mat4 dest) {
+		float m[] = mat.matrix;
+		float m0 = m[0], m4 = m[4], m8 = m[8], m12 = m[12];
+		float m1 = m[1], m5 = m[5], m9 = m[9], m13 = m[13];
+		float m2 = m[2], m6 = m[6], m10 = m[10], m14 = m[14];
+		
+		float res[] = dest.matrix;
+		res[0] = m0; res[1] = m4; res[2] = m8; res[3] = 0.0f;
+		res[4] = m1; res[5] = m5; res[6] = m9; res[7] = 0.0f;
+		res[8] = m2; res[9] = m6; res[10] = m10; res[11] = 0.0f;
+		res[12] = -(m0 * m12 + m1 * m13 + m2 * m14);
+		res[13] = -(m4 * m12 + m5 * m13 + m6 * m14);
+		res[14] = -(m8 * m12 + m9 * m13 + m10 * m14);
+		res[15] = 1.0f;
+		
+		return dest;
+	}
+	
+	
+	public static Mat4 translate(Mat4 mat, Vec3 vec, Mat4 dest) {
+		float m[] = mat.matrix;
+		float res[] = dest.matrix;
+		
+		if (dest != mat) {
+			System.arraycopy(m, 0, res, 0, 12);
+		}
+		
+		float x = vec.x, y = vec.y, z = vec.z;
+		res[12] = m[0] * x + m[4] * y + m[8] * z + m[12];
+		res[13] = m[1] * x + m[5] * y + m[9] * z + m[13];
+		res[14] = m[2] * x + m[6] * y + m[10] * z + m[14];
+		res[15] = m[3] * x + m[7] * y + m[11] * z + m[15];
+		
+		return dest;
+	}
+	
+	
+	public static Mat3 transpose(Mat3 mat, Mat3 dest) {
+		float m[] = mat.matrix;
+		float res[] = dest.matrix;
+		
+		float temp;
+		res[0] = m[0];
+		temp = m[1]; res[1] = m[3]; res[3] = temp;
+		temp = m[2]; res[2] = m[6]; res[6] = temp;
+		res[4] = m[4];
+		temp = m[5]; res[5] = m[7]; res[7] = temp;
+		res[8] = m[8];
+		
+		return dest;
+	}
+	
+	public static Mat4 transpose(Mat4 mat, Mat4 dest) {
+		float m[] = mat.matrix;
+		float res[] = dest.matrix;
+		
+		// Swapping the elements through a temporary works when dest is mat too.
+		float temp;
+		res[0] = m[0];
+		temp = m[1]; res[1] = m[4]; res[4] = temp;
+		temp = m[2]; res[2] = m[8]; res[8] = temp;
+		temp = m[3]; res[3] = m[12]; res[12] = temp;
+		res[5] = m[5];
+		temp = m[6]; res[6] = m[9]; res[9] = temp;
+		temp = m[7]; res[7] = m[13]; res[13] = temp;
+		res[10] = m[10];
+		temp = m[11]; res[11] = m[14]; res[14] = temp;
+		res[15] = m[15];
+		
+		return dest;
+	}
+	
+	
+	public static Mat4 rotate(Mat4 m, float angle, Vec3 v, Mat4 dest) {
+        float a = (float) Math.toRadians(angle);
+        float c = (float) Math.cos(a);
+        float s = (float) Math.sin(a);
+
+        float invLength = 1.0f / length(v);
+        float axisX = v.x * invLength;
+        float axisY = v.y * invLength;
+        float axisZ = v.z * invLength;
+
+        float tempX = axisX * (1.0f - c);
+        float tempY = axisY * (1.0f - c);
+        float tempZ = axisZ * (1.0f - c);
+
+        float r0 = c + tempX * axisX;
+        float r1 = tempX * axisY + s * axisZ;
+        float r2 = tempX * axisZ - s * axisY;
+
+        float r4 = tempY * axisX - s * axisZ;
+        float r5 = c + tempY * axisY;
+        float r6 = tempY * axisZ + s * axisX;
+
+        float r8 = tempZ * axisX + s * axisY;
+        float r9 = tempZ * axisY - s * axisX;
+        float r10 = c + tempZ * axisZ;
+
+        float mat[] = m.matrix;
+        float m0 = mat[0], m4 = mat[4], m8 = mat[8];
+        float m1 = mat[1], m5 = mat[5], m9 = mat[9];
+        float m2 = mat[2], m6 = mat[6], m10 = mat[10];
+        float m3 = mat[3], m7 = mat[7], m11 = mat[11];
+
+        float res[] = dest.matrix;
+        res[0] = m0 * r0 + m4 * r1 + m8 * r2;
+        res[1] = m1 * r0 + m5 * r1 + m9 * r2;
+        res[2] = m2 * r0 + m6 * r1 + m10 * r2;
+        res[3] = m3 * r0 + m7 * r1 + m11 * r2;
+
+        res[4] = m0 * r4 + m4 * r5 + m8 * r6;
+        res[5] = m1 * r4 + m5 * r5 + m9 * r6;
+        res[6] = m2 * r4 + m6 * r5 + m10 * r6;
+        res[7] = m3 * r4 + m7 * r5 + m11 * r6;
+
+        res[8] = m0 * r8 + m4 * r9 + m8 * r10;
+        res[9] = m1 * r8 + m5 * r9 + m9 * r10;
+        res[10] = m2 * r8 + m6 * r9 + m10 * r10;
+        res[11] = m3 * r8 + m7 * r9 + m11 * r10;
+
+        if (dest != m) {
+        	res[12] = mat[12];
+        	res[13] = mat[13];
+        	res[14] = mat[14];
+        	res[15] = mat[15];
+        }
+		
+		return dest;
+	}
+	
+	
+	/**
+	 * Normalized linear interpolation between x and y, along the shortest path. Cheaper than slerp(),
+	 * but the angular speed is not constant.
+	 */
+	public static Quaternion nlerp(Quaternion x, Quaternion y, float a, Quaternion dest) {
+		float b = dot(x, y) < 0.0f ? -a : a;
+		float c = 1.0f - a;
+		
+		dest.x = x.x * c + y.x * b;
+		dest.y = x.y * c + y.y * b;
+		dest.z = x.z * c + y.z * b;
+		dest.w = x.w * c + y.w * b;
+		
+		return normalize(dest, dest);
+	}
+	
+	/**
+	 * Spherical linear interpolation between the unit quaternions x and y, along the shortest path.
+	 * When they are very close it falls back to nlerp().
+	 */
+	public static Quaternion slerp(Quaternion x, Quaternion y, float a, Quaternion dest) {
+		float cosTheta = dot(x, y);
+		float sign = 1.0f;
+		if (cosTheta < 0.0f) {
+			cosTheta = -cosTheta;
+			sign = -1.0f;
+		}
+		
+		if (cosTheta > SLERP_THRESHOLD) {
+			return nlerp(x, y, a, dest);
+		}
+		
+		double theta = Math.acos(cosTheta);
+		double invSin = 1.0 / Math.sin(theta);
+		float c = (float) (Math.sin((1.0 - a) * theta) * invSin);
+		float b = (float) (Math.sin(a * theta) * invSin) * sign;
+		
+		dest.x = x.x * c + y.x * b;
+		dest.y = x.y * c + y.y * b;
+		dest.z = x.z * c + y.z * b;
+		dest.w = x.w * c + y.w * b;
+		
+		return dest;
+	}
+	
+	
+	/**
+	 * Rotates quat by the angular velocity angularVelocity (in world space, radians per second) for
+	 * dt seconds. Small steps don't call any trigonometric function.
+	 */
+	public static Quaternion integrate(Quaternion quat, Vec3 angularVelocity, float dt, Quaternion dest) {
+		float angVelLength = length(angularVelocity);
+		if (angVelLength == 0.0f) {
+			dest.x = quat.x;
+			dest.y = quat.y;
+			dest.z = quat.z;
+			dest.w = quat.w;
+			
+			return dest;
+		}
+		
+		double halfAngle = angVelLength * dt * 0.5;
+		float s = (float) (halfAngleSin(halfAngle) / angVelLength);
+		
+		// The rotation of angVelLength * dt radians around angularVelocity, applied after quat.
+		float rx = angularVelocity.x * s;
+		float ry = angularVelocity.y * s;
+		float rz = angularVelocity.z * s;
+		float rw = (float) halfAngleCos(halfAngle);
+		
+		float newX = (rx * quat.w) + (rw * quat.x) + (ry * quat.z) - (rz * quat.y);
+		float newY = (ry * quat.w) + (rw * quat.y) + (rz * quat.x) - (rx * quat.z);
+		float newZ = (rz * quat.w) + (rw * quat.z) + (rx * quat.y) - (ry * quat.x);
+		float newW = (rw * quat.w) - (rx * quat.x) - (ry * quat.y) - (rz * quat.z);
+		
+		dest.x = newX;
+		dest.y = newY;
+		dest.z = newZ;
+		dest.w = newW;
+		
+		// Repeated steps make the length drift.
+		return normalize(dest, dest);
+	}
+	
+	
+	/**
+	 * translate(translation) * matCast(rotation), built directly.
+	 */
+	public static Mat4 composeTRS(Vec3 translation, Quaternion rotation, Mat4 dest) {
+		matCast(rotation, dest);
+		
+		dest.matrix[12] = translation.x;
+		dest.matrix[13] = translation.y;
+		dest.matrix[14] = translation.z;
+		
+		return dest;
+	}
+	
+	/**
+	 * translate(translation) * matCast(rotation) * scale(scale), built directly.
+	 */
+	public static Mat4 composeTRS(Vec3 translation, Quaternion rotation, Vec3 scale, Mat4 dest) {
+		composeTRS(translation, rotation, dest);
+		
+		float res[] = dest.matrix;
+		res[0] *= scale.x; res[1] *= scale.x; res[2] *= scale.x;
+		res[4] *= scale.y; res[5] *= scale.y; res[6] *= scale.y;
+		res[8] *= scale.z; res[9] *= scale.z; res[10] *= scale.z;
+		
+		return dest;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	private static double halfAngleSin(double halfAngle) {
+		if (Math.abs(halfAngle) < SMALL_HALF_ANGLE) {
+			double h2 = halfAngle * halfAngle;
+			
+			return halfAngle * (1.0 - h2 / 6.0 * (1.0 - h2 / 20.0 * (1.0 - h2 / 42.0)));
+		}
+		
+		return Math.sin(halfAngle);
+	}
+	
+	private static double halfAngleCos(double halfAngle) {
+		if (Math.abs(halfAngle) < SMALL_HALF_ANGLE) {
+			double h2 = halfAngle * halfAngle;
+			
+			return 1.0 - h2 / 2.0 * (1.0 - h2 / 12.0 * (1.0 - h2 / 30.0 * (1.0 - h2 / 56.0)));
+		}
+		
+		return Math.cos(halfAngle);
 	}
 }
@@ -155,27 +155,68 @@ public class Mat4 extends BufferableData<FloatBuffer> {
 	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
 	
 	public Mat4 mul(Mat4 mat) {
-		float[] res = new float[16];
-		float[] m1 = matrix;
-		float[] m2 = mat.matrix;
-
-		for (int r = 0; r < 4; r++) {
-			for (int c = 0; c < 4; c++) { 
-				float sum = 0;
-				
-				for (int k = 0; k < 4; k++) {
-					float a = m1[r + 4*k];
-					float b = m2[4*c + k];
-					sum += a * b;
-				}
+		return mul(this, mat, this);
+	}
+	
+	
+	/**
+	 * Transforms count points stored as x, y, z triplets in src, starting at srcOff, and stores
+	 * them in dst starting at dstOff. The points get w = 1 and the w of the result is dropped, so the
+	 * matrix should be affine. src and dst can be the same array.
+	 */
+	public void transformPoints(float src[], int srcOff, float dst[], int dstOff, int count) {
+		float m0 = matrix[0], m4 = matrix[4], m8 = matrix[8], m12 = matrix[12];
+		float m1 = matrix[1], m5 = matrix[5], m9 = matrix[9], m13 = matrix[13];
+		float m2 = matrix[2], m6 = matrix[6], m10 = matrix[10], m14 = matrix[14];
+		
+		if (src == dst && srcOff < dstOff && dstOff < srcOff + count * 3) {
+			// The output overlaps the points still to read: go backwards.
+			for (int i = count - 1; i >= 0; i--) {
+				int iSrc = srcOff + i * 3;
+				int iDst = dstOff + i * 3;
+				float x = src[iSrc], y = src[iSrc + 1], z = src[iSrc + 2];
 				
-				res[r + 4*c] = sum;
+				dst[iDst] 		= m0 * x + m4 * y + m8 * z + m12;
+				dst[iDst + 1] 	= m1 * x + m5 * y + m9 * z + m13;
+				dst[iDst + 2] 	= m2 * x + m6 * y + m10 * z + m14;
 			}
+			
+			return;
 		}
-
-		System.arraycopy(res, 0, matrix, 0, 16);
 		
-		return this;
+		int iSrcEnd = srcOff + count * 3;
+		for (int iSrc = srcOff, iDst = dstOff; iSrc < iSrcEnd; iSrc += 3, iDst += 3) {
+			float x = src[iSrc], y = src[iSrc + 1], z = src[iSrc + 2];
+			
+			dst[iDst] 		= m0 * x + m4 * y + m8 * z + m12;
+			dst[iDst + 1] 	= m1 * x + m5 * y + m9 * z + m13;
+			dst[iDst + 2] 	= m2 * x + m6 * y + m10 * z + m14;
+		}
+	}
+	
+	/**
+	 * Same as transformPoints(float[], int, float[], int, int), with the offsets counted in floats
+	 * from the start of the buffers. The positions of the buffers are not changed, and they must not
+	 * overlap unless src and dst are the same buffer with srcOff == dstOff.
+	 */
+	public void transformPoints(FloatBuffer src, int srcOff, FloatBuffer dst, int dstOff, int count) {
+		if (src.hasArray() && dst.hasArray()) {
+			transformPoints(src.array(), src.arrayOffset() + srcOff, dst.array(), dst.arrayOffset() + dstOff, count);
+			return;
+		}
+		
+		float m0 = matrix[0], m4 = matrix[4], m8 = matrix[8], m12 = matrix[12];
+		float m1 = matrix[1], m5 = matrix[5], m9 = matrix[9], m13 = matrix[13];
+		float m2 = matrix[2], m6 = matrix[6], m10 = matrix[10], m14 = matrix[14];
+		
+		int iSrcEnd = srcOff + count * 3;
+		for (int iSrc = srcOff, iDst = dstOff; iSrc < iSrcEnd; iSrc += 3, iDst += 3) {
+			float x = src.get(iSrc), y = src.get(iSrc + 1), z = src.get(iSrc + 2);
+			
+			dst.put(iDst, 		m0 * x + m4 * y + m8 * z + m12);
+			dst.put(iDst + 1, 	m1 * x + m5 * y + m9 * z + m13);
+			dst.put(iDst + 2, 	m2 * x + m6 * y + m10 * z + m14);
+		}
 	}
 	
 	
@@ -225,41 +266,85 @@ public class Mat4 extends BufferableData<FloatBuffer> {
 	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
 
 	public static Vec4 mul(Mat4 mat, Vec4 vec) {
-		Vec4 res = new Vec4();
-		
-		for (int i = 0; i < 4; i++) {
-			float temp = 0;
-			switch (i) {
-			case 0:
-				temp = vec.x;
-				break;
-			case 1:
-				temp = vec.y;
-				break;
-			case 2:
-				temp = vec.z;
-				break;
-			case 3:
-				temp = vec.w;
-				break;
-			}
-			
-			res.x += mat.matrix[4*i + 0] * temp;
-			res.y += mat.matrix[4*i + 1] * temp;
-			res.z += mat.matrix[4*i + 2] * temp;
-			res.w += mat.matrix[4*i + 3] * temp;
-		}
-
-		return res;
+		return mul(mat, vec, new Vec4());
 	}
 	
 	
 	public static Mat4 getRotateX(float angDeg) {
+		return getRotateX(angDeg, new Mat4());
+	}
+	
+	public static Mat4 getRotateY(float angDeg) {
+		return getRotateY(angDeg, new Mat4());
+	}
+	
+	public static Mat4 getRotateZ(float angDeg) {
+		return getRotateZ(angDeg, new Mat4());
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	public static Mat4 mul(Mat4 a, Mat4 b, Mat4 dest) {
+		float m1[] = a.matrix;
+		float m2[] = b.matrix;
+		float res[] = dest.matrix;
+		
+		float a0 = m1[0], a4 = m1[4], a8 = m1[8], a12 = m1[12];
+		float a1 = m1[1], a5 = m1[5], a9 = m1[9], a13 = m1[13];
+		float a2 = m1[2], a6 = m1[6], a10 = m1[10], a14 = m1[14];
+		float a3 = m1[3], a7 = m1[7], a11 = m1[11], a15 = m1[15];
+		
+		// Column c of the result only needs column c of b, so it can be written over it.
+		float b0 = m2[0], b1 = m2[1], b2 = m2[2], b3 = m2[3];
+		res[0] 	= a0 * b0 + a4 * b1 + a8 * b2 + a12 * b3;
+		res[1] 	= a1 * b0 + a5 * b1 + a9 * b2 + a13 * b3;
+		res[2] 	= a2 * b0 + a6 * b1 + a10 * b2 + a14 * b3;
+		res[3] 	= a3 * b0 + a7 * b1 + a11 * b2 + a15 * b3;
+		
+		b0 = m2[4]; b1 = m2[5]; b2 = m2[6]; b3 = m2[7];
+		res[4] 	= a0 * b0 + a4 * b1 + a8 * b2 + a12 * b3;
+		res[5] 	= a1 * b0 + a5 * b1 + a9 * b2 + a13 * b3;
+		res[6] 	= a2 * b0 + a6 * b1 + a10 * b2 + a14 * b3;
+		res[7] 	= a3 * b0 + a7 * b1 + a11 * b2 + a15 * b3;
+		
+		b0 = m2[8]; b1 = m2[9]; b2 = m2[10]; b3 = m2[11];
+		res[8] 	= a0 * b0 + a4 * b1 + a8 * b2 + a12 * b3;
+		res[9] 	= a1 * b0 + a5 * b1 + a9 * b2 + a13 * b3;
+		res[10] = a2 * b0 + a6 * b1 + a10 * b2 + a14 * b3;
+		res[11] = a3 * b0 + a7 * b1 + a11 * b2 + a15 * b3;
+		
+		b0 = m2[12]; b1 = m2[13]; b2 = m2[14]; b3 = m2[15];
+		res[12] = a0 * b0 + a4 * b1 + a8 * b2 + a12 * b3;
+		res[13] = a1 * b0 + a5 * b1 + a9 * b2 + a13 * b3;
+		res[14] = a2 * b0 + a6 * b1 + a10 * b2 + a14 * b3;
+		res[15] = a3 * b0 + a7 * b1 + a11 * b2 + a15 * b3;
+		
+		return dest;
+	}
+	
+	public static Vec4 mul(Mat4 mat, Vec4 vec, Vec4 dest) {
+		float m[] = mat.matrix;
+		float x = vec.x, y = vec.y, z = vec.z, w = vec.w;
+		
+		dest.x = m[0] * x + m[4] * y + m[8] * z + m[12] * w;
+		dest.y = m[1] * x + m[5] * y + m[9] * z + m[13] * w;
+		dest.z = m[2] * x + m[6] * y + m[10] * z + m[14] * w;
+		dest.w = m[3] * x + m[7] * y + m[11] * z + m[15] * w;
+		
+		return dest;
+	}
+	
+	
+	public static Mat4 getRotateX(float angDeg, Mat4 dest) {
 		float fAngRad = (float) Math.toRadians(angDeg);
 		float fCos = (float) Math.cos(fAngRad);
 		float fSin = (float) Math.sin(fAngRad);
 
-		Mat4 res = new Mat4();
+		Mat4 res = dest;
+		res.clear(1.0f);
 
 		// X column
 		res.matrix[0] 	= 1; 														// x
@@ -282,12 +367,13 @@ public class Mat4 extends BufferableData<FloatBuffer> {
 		return res;
 	}
 
-	public static Mat4 getRotateY(float angDeg) {
+	public static Mat4 getRotateY(float angDeg, Mat4 dest) {
 		float fAngRad = (float) Math.toRadians(angDeg);
 		float fCos = (float) Math.cos(fAngRad);
 		float fSin = (float) Math.sin(fAngRad);
 
-		Mat4 res = new Mat4();
+		Mat4 res = dest;
+		res.clear(1.0f);
 
 		// X column
 		res.matrix[0] 	= fCos; 
@@ -310,12 +396,13 @@ public class Mat4 extends BufferableData<FloatBuffer> {
 		return res;
 	}
 
-	public static Mat4 getRotateZ(float angDeg) {
+	public static Mat4 getRotateZ(float angDeg, Mat4 dest) {
 		float fAngRad = (float) Math.toRadians(angDeg);
 		float fCos = (float) Math.cos(fAngRad);
 		float fSin = (float) Math.sin(fAngRad);
 
-		Mat4 res = new Mat4();
+		Mat4 res = dest;
+		res.clear(1.0f);
 
 		// X column
 		res.matrix[0] 	= fCos; 
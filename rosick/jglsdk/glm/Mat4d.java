@@ -0,0 +1,219 @@
+package rosick.jglsdk.glm;
+
+import java.nio.FloatBuffer;
+
+
+/**
+ * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
+ * 
+ * The double precision version of Mat4. A float has 24 bits of mantissa, so 1e7 units from the
+ * origin it can't tell apart two points closer than one unit: world transforms of large scenes are
+ * composed with this class, and converted to float only after the camera position has been
+ * subtracted (see CameraRelative).
+ * 
+ * @author integeruser
+ */
+public class Mat4d {
+	
+	public double matrix[];
+	
+	
+	public Mat4d() {
+		matrix = new double[16];
+		
+		matrix[0] 	= 1.0;
+		matrix[5] 	= 1.0;
+		matrix[10] 	= 1.0;
+		matrix[15] 	= 1.0;
+	}
+	
+	public Mat4d(double diagonal) {
+		matrix = new double[16];
+		
+		matrix[0] 	= diagonal;
+		matrix[5] 	= diagonal;
+		matrix[10] 	= diagonal;
+		matrix[15] 	= diagonal;
+	}
+	
+	public Mat4d(Mat4d mat) {
+		matrix = new double[16];
+		
+		System.arraycopy(mat.matrix, 0, matrix, 0, 16);
+	}
+	
+	public Mat4d(Mat4 mat) {
+		matrix = new double[16];
+		
+		for (int i = 0; i < 16; i++) {
+			matrix[i] = mat.matrix[i];
+		}
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	public double[] get() {
+		return matrix;
+	}
+	
+	public double get(int index) {
+		return matrix[index];
+	}
+	
+	
+	public void set(int index, double value) {
+		matrix[index] = value;
+	}
+	
+	public void set(int columnIndex, int rowIndex, double value) {
+		matrix[columnIndex * 4 + rowIndex] = value;
+	}
+	
+	
+	public Mat4d mul(Mat4d mat) {
+		return mul(this, mat, this);
+	}
+	
+	
+	public void clear(double diagonal) {
+		for (int i = 0; i < 16; i++) {
+			matrix[i] = 0.0;
+		}
+		
+		matrix[0] 	= diagonal;
+		matrix[5] 	= diagonal;
+		matrix[10] 	= diagonal;
+		matrix[15] 	= diagonal;
+	}
+	
+	public void clear(Mat4d mat) {
+		System.arraycopy(mat.matrix, 0, matrix, 0, 16);
+	}
+	
+	
+	/**
+	 * Rounds every element to float. Only useful when the elements are small enough to fit: for a
+	 * world transform, use CameraRelative instead.
+	 */
+	public Mat4 toMat4(Mat4 dest) {
+		for (int i = 0; i < 16; i++) {
+			dest.matrix[i] = (float) matrix[i];
+		}
+		
+		return dest;
+	}
+	
+	/**
+	 * Same as toMat4(), putting the 16 floats (column-major) in buffer.
+	 */
+	public FloatBuffer fillBuffer(FloatBuffer buffer) {
+		for (int i = 0; i < 16; i++) {
+			buffer.put((float) matrix[i]);
+		}
+		
+		return buffer;
+	}
+	
+	
+	@Override
+	public String toString() {
+		String res = "";
+		
+		for (int i = 0; i < 4; i++) {
+			res += matrix[i * 4] + " " + matrix[i * 4 + 1] + " " + matrix[i * 4 + 2] + " " + matrix[i * 4 + 3] + "\n";
+		}
+		
+		return res;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	public static Mat4d mul(Mat4d a, Mat4d b, Mat4d dest) {
+		double m1[] = a.matrix;
+		double m2[] = b.matrix;
+		double res[] = dest.matrix;
+		
+		double a0 = m1[0], a4 = m1[4], a8 = m1[8], a12 = m1[12];
+		double a1 = m1[1], a5 = m1[5], a9 = m1[9], a13 = m1[13];
+		double a2 = m1[2], a6 = m1[6], a10 = m1[10], a14 = m1[14];
+		double a3 = m1[3], a7 = m1[7], a11 = m1[11], a15 = m1[15];
+		
+		// Column c of the result only needs column c of b, so it can be written over it.
+		for (int c = 0; c < 16; c += 4) {
+			double b0 = m2[c], b1 = m2[c + 1], b2 = m2[c + 2], b3 = m2[c + 3];
+			
+			res[c] 		= a0 * b0 + a4 * b1 + a8 * b2 + a12 * b3;
+			res[c + 1] 	= a1 * b0 + a5 * b1 + a9 * b2 + a13 * b3;
+			res[c + 2] 	= a2 * b0 + a6 * b1 + a10 * b2 + a14 * b3;
+			res[c + 3] 	= a3 * b0 + a7 * b1 + a11 * b2 + a15 * b3;
+		}
+		
+		return dest;
+	}
+	
+	public static Vec4d mul(Mat4d mat, Vec4d vec, Vec4d dest) {
+		double m[] = mat.matrix;
+		double x = vec.x, y = vec.y, z = vec.z, w = vec.w;
+		
+		dest.x = m[0] * x + m[4] * y + m[8] * z + m[12] * w;
+		dest.y = m[1] * x + m[5] * y + m[9] * z + m[13] * w;
+		dest.z = m[2] * x + m[6] * y + m[10] * z + m[14] * w;
+		dest.w = m[3] * x + m[7] * y + m[11] * z + m[15] * w;
+		
+		return dest;
+	}
+	
+	
+	public static Mat4d translate(Mat4d mat, Vec3d vec, Mat4d dest) {
+		double m[] = mat.matrix;
+		double res[] = dest.matrix;
+		
+		if (dest != mat) {
+			System.arraycopy(m, 0, res, 0, 12);
+		}
+		
+		double x = vec.x, y = vec.y, z = vec.z;
+		res[12] = m[0] * x + m[4] * y + m[8] * z + m[12];
+		res[13] = m[1] * x + m[5] * y + m[9] * z + m[13];
+		res[14] = m[2] * x + m[6] * y + m[10] * z + m[14];
+		res[15] = m[3] * x + m[7] * y + m[11] * z + m[15];
+		
+		return dest;
+	}
+	
+	/**
+	 * The rotation matrix of quat, see Glm.matCast().
+	 */
+	public static Mat4d matCast(Quaterniond quat, Mat4d dest) {
+		double res[] = dest.matrix;
+		double x = quat.x, y = quat.y, z = quat.z, w = quat.w;
+		
+		res[0] 	= 1 - 2 * y * y - 2 * z * z;
+		res[1] 	= 2 * x * y + 2 * w * z;
+		res[2] 	= 2 * x * z - 2 * w * y;
+		res[3] 	= 0.0;
+		
+		res[4] 	= 2 * x * y - 2 * w * z;
+		res[5] 	= 1 - 2 * x * x - 2 * z * z;
+		res[6] 	= 2 * y * z + 2 * w * x;
+		res[7] 	= 0.0;
+		
+		res[8] 	= 2 * x * z + 2 * w * y;
+		res[9] 	= 2 * y * z - 2 * w * x;
+		res[10] = 1 - 2 * x * x - 2 * y * y;
+		res[11] = 0.0;
+		
+		res[12] = 0.0;
+		res[13] = 0.0;
+		res[14] = 0.0;
+		res[15] = 1.0;
+		
+		return dest;
+	}
+}
@@ -79,31 +79,14 @@ public class Quaternion extends BufferableData<FloatBuffer> {
 	}
 	
 	public Quaternion mul(Quaternion quat) {	
-		float newX = (x * quat.w) + (w * quat.x) + (y * quat.z) - (z * quat.y);
-		float newY = (y * quat.w) + (w * quat.y) + (z * quat.x) - (x * quat.z);
-		float newZ = (z * quat.w) + (w * quat.z) + (x * quat.y) - (y * quat.x);
-		float newW = (w * quat.w) - (x * quat.x) - (y * quat.y) - (z * quat.z);
-		
-		x = newX;
-		y = newY;
-		z = newZ;
-		w = newW;
-
-		return this;
+		return mul(this, quat, this);
 	}
 	
+	/**
+	 * Rotates v (which is modified) by this quaternion.
+	 */
 	public Vec3 mul(Vec3 v) {	
-		float two = 2.0f;
-		Vec3 uv, uuv;
-		Vec3 quatVector = new Vec3(x, y, z);
-
-		uv = Glm.cross(quatVector, v);
-		uuv = Glm.cross(quatVector, uv);
-			
-		uv.scale(two * w); 
-		uuv.scale(two); 
-
-		return v.add(uv).add(uuv);
+		return mul(this, v, v);
 	}
 	
 	
@@ -152,9 +135,7 @@ public class Quaternion extends BufferableData<FloatBuffer> {
 	}
 	
 	public static Vec3 mul(Quaternion a, Vec3 b) {
-		Quaternion res = new Quaternion(a);
-		
-		return res.mul(b);
+		return mul(a, b, new Vec3());
 	}
 	
 	
@@ -176,4 +157,81 @@ public class Quaternion extends BufferableData<FloatBuffer> {
 		
 		return res.conjugate();
 	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	public static Quaternion add(Quaternion a, Quaternion b, Quaternion dest) {
+		dest.x = a.x + b.x;
+		dest.y = a.y + b.y;
+		dest.z = a.z + b.z;
+		dest.w = a.w + b.w;
+		
+		return dest;
+	}
+	
+	public static Quaternion mul(Quaternion a, Quaternion b, Quaternion dest) {
+		float newX = (a.x * b.w) + (a.w * b.x) + (a.y * b.z) - (a.z * b.y);
+		float newY = (a.y * b.w) + (a.w * b.y) + (a.z * b.x) - (a.x * b.z);
+		float newZ = (a.z * b.w) + (a.w * b.z) + (a.x * b.y) - (a.y * b.x);
+		float newW = (a.w * b.w) - (a.x * b.x) - (a.y * b.y) - (a.z * b.z);
+		
+		dest.x = newX;
+		dest.y = newY;
+		dest.z = newZ;
+		dest.w = newW;
+		
+		return dest;
+	}
+	
+	public static Vec3 mul(Quaternion a, Vec3 b, Vec3 dest) {
+		// v + 2w * (q x v) + 2 * (q x (q x v))
+		float uvX = a.y * b.z - a.z * b.y;
+		float uvY = a.z * b.x - a.x * b.z;
+		float uvZ = a.x * b.y - a.y * b.x;
+		
+		float uuvX = a.y * uvZ - a.z * uvY;
+		float uuvY = a.z * uvX - a.x * uvZ;
+		float uuvZ = a.x * uvY - a.y * uvX;
+		
+		float two = 2.0f;
+		float twoW = two * a.w;
+		
+		dest.x = b.x + uvX * twoW + uuvX * two;
+		dest.y = b.y + uvY * twoW + uuvY * two;
+		dest.z = b.z + uvZ * twoW + uuvZ * two;
+		
+		return dest;
+	}
+	
+	
+	public static Quaternion scale(Quaternion quat, float scalar, Quaternion dest) {
+		dest.x = quat.x * scalar;
+		dest.y = quat.y * scalar;
+		dest.z = quat.z * scalar;
+		dest.w = quat.w * scalar;
+		
+		return dest;
+	}
+	
+	
+	public static Quaternion negate(Quaternion quat, Quaternion dest) {
+		dest.x = -quat.x;
+		dest.y = -quat.y;
+		dest.z = -quat.z;
+		dest.w = -quat.w;
+		
+		return dest;
+	}
+	
+	public static Quaternion conjugate(Quaternion quat, Quaternion dest) {
+		dest.x = -quat.x;
+		dest.y = -quat.y;
+		dest.z = -quat.z;
+		dest.w = quat.w;
+		
+		return dest;
+	}
 }
\ No newline at end of file
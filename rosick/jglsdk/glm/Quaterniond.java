@@ -0,0 +1,99 @@
+package rosick.jglsdk.glm;
+
+
+/**
+ * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
+ * 
+ * The double precision version of Quaternion.
+ * 
+ * @author integeruser
+ */
+public class Quaterniond {
+	
+	public double w, x, y, z;
+	
+	
+	public Quaterniond() {
+	}
+	
+	public Quaterniond(double w, double x, double y, double z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.w = w;
+	}
+	
+	public Quaterniond(Quaterniond quat) {
+		x = quat.x;
+		y = quat.y;
+		z = quat.z;
+		w = quat.w;
+	}
+	
+	public Quaterniond(Quaternion quat) {
+		x = quat.x;
+		y = quat.y;
+		z = quat.z;
+		w = quat.w;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	public Quaterniond mul(Quaterniond quat) {
+		return mul(this, quat, this);
+	}
+	
+	/**
+	 * Rotates v (which is modified) by this quaternion.
+	 */
+	public Vec3d mul(Vec3d v) {
+		return mul(this, v, v);
+	}
+	
+	
+	@Override
+	public String toString() {
+		return "W: " + w + ", X: " + x + ", Y: " + y + ", Z: " + z;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	public static Quaterniond mul(Quaterniond a, Quaterniond b, Quaterniond dest) {
+		double newX = (a.x * b.w) + (a.w * b.x) + (a.y * b.z) - (a.z * b.y);
+		double newY = (a.y * b.w) + (a.w * b.y) + (a.z * b.x) - (a.x * b.z);
+		double newZ = (a.z * b.w) + (a.w * b.z) + (a.x * b.y) - (a.y * b.x);
+		double newW = (a.w * b.w) - (a.x * b.x) - (a.y * b.y) - (a.z * b.z);
+		
+		dest.x = newX;
+		dest.y = newY;
+		dest.z = newZ;
+		dest.w = newW;
+		
+		return dest;
+	}
+	
+	public static Vec3d mul(Quaterniond a, Vec3d b, Vec3d dest) {
+		// v + 2w * (q x v) + 2 * (q x (q x v))
+		double uvX = a.y * b.z - a.z * b.y;
+		double uvY = a.z * b.x - a.x * b.z;
+		double uvZ = a.x * b.y - a.y * b.x;
+		
+		double uuvX = a.y * uvZ - a.z * uvY;
+		double uuvY = a.z * uvX - a.x * uvZ;
+		double uuvZ = a.x * uvY - a.y * uvX;
+		
+		double twoW = 2.0 * a.w;
+		
+		dest.x = b.x + uvX * twoW + uuvX * 2.0;
+		dest.y = b.y + uvY * twoW + uuvY * 2.0;
+		dest.z = b.z + uvZ * twoW + uuvZ * 2.0;
+		
+		return dest;
+	}
+}
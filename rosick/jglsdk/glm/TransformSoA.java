@@ -0,0 +1,206 @@
+package rosick.jglsdk.glm;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+
+/**
+ * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
+ * 
+ * The transforms of many objects, stored as parallel arrays instead of one Mat4 per object: the
+ * position (x, y, z), the orientation (a quaternion as x, y, z, w) and the scale (x, y, z) of the
+ * object i start at i * 3, i * 4 and i * 3.
+ * 
+ * The local matrix of an object is translation * rotation * scale, its world matrix is the world
+ * matrix of its parent times its local matrix.
+ * 
+ * @author integeruser
+ */
+public class TransformSoA {
+	
+	public float positions[];
+	public float orientations[];
+	public float scales[];
+	
+	private int iSize;
+	private float worldMatrices[];
+	
+	
+	public TransformSoA(int capacity) {
+		positions = new float[capacity * 3];
+		orientations = new float[capacity * 4];
+		scales = new float[capacity * 3];
+		worldMatrices = new float[capacity * 16];
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * Adds an object with the identity transform and returns its index.
+	 */
+	public int add() {
+		if (iSize * 3 == positions.length) {
+			int iCapacity = Math.max(16, iSize * 2);
+			positions = Arrays.copyOf(positions, iCapacity * 3);
+			orientations = Arrays.copyOf(orientations, iCapacity * 4);
+			scales = Arrays.copyOf(scales, iCapacity * 3);
+			worldMatrices = Arrays.copyOf(worldMatrices, iCapacity * 16);
+		}
+		
+		int index = iSize;
+		iSize++;
+		
+		setPosition(index, 0.0f, 0.0f, 0.0f);
+		setOrientation(index, 1.0f, 0.0f, 0.0f, 0.0f);
+		setScale(index, 1.0f, 1.0f, 1.0f);
+		
+		return index;
+	}
+	
+	public int size() {
+		return iSize;
+	}
+	
+	
+	public void setPosition(int index, float x, float y, float z) {
+		positions[index * 3] 	 = x;
+		positions[index * 3 + 1] = y;
+		positions[index * 3 + 2] = z;
+	}
+	
+	public void setPosition(int index, Vec3 vec) {
+		setPosition(index, vec.x, vec.y, vec.z);
+	}
+	
+	
+	public void setOrientation(int index, float w, float x, float y, float z) {
+		orientations[index * 4] 	= x;
+		orientations[index * 4 + 1] = y;
+		orientations[index * 4 + 2] = z;
+		orientations[index * 4 + 3] = w;
+	}
+	
+	public void setOrientation(int index, Quaternion quat) {
+		setOrientation(index, quat.w, quat.x, quat.y, quat.z);
+	}
+	
+	
+	public void setScale(int index, float x, float y, float z) {
+		scales[index * 3] 	  = x;
+		scales[index * 3 + 1] = y;
+		scales[index * 3 + 2] = z;
+	}
+	
+	public void setScale(int index, Vec3 vec) {
+		setScale(index, vec.x, vec.y, vec.z);
+	}
+	
+	
+	/**
+	 * The world matrices computed by the last computeWorldMatrices(), 16 floats (column-major) for
+	 * each object.
+	 */
+	public float[] getWorldMatrices() {
+		return worldMatrices;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * Computes the world matrix of every object and puts them in buffer (16 floats for each object,
+	 * column-major, in the index order), which must have enough room left.
+	 * 
+	 * parentIndices[i] is the index of the parent of the object i, or -1 if it has none. A parent must
+	 * come before its children. If parentIndices is null every object is a root.
+	 */
+	public void computeWorldMatrices(int parentIndices[], FloatBuffer buffer) {
+		computeWorldMatrices(parentIndices, 0, iSize);
+		
+		buffer.put(worldMatrices, 0, iSize * 16);
+	}
+	
+	
+	/**
+	 * Computes the world matrices of the objects from iFirst (included) to iLast (excluded). The
+	 * world matrices of their parents must be already computed.
+	 */
+	void computeWorldMatrices(int parentIndices[], int iFirst, int iLast) {
+		for (int i = iFirst; i < iLast; i++) {
+			int iParent = parentIndices != null ? parentIndices[i] : -1;
+			
+			if (iParent >= i) {
+				throw new RuntimeException("The parent of the object " + i + " comes after it.");
+			}
+			
+			computeLocalMatrix(i, worldMatrices, i * 16);
+			
+			if (iParent >= 0) {
+				mulAffine(worldMatrices, iParent * 16, worldMatrices, i * 16);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Stores the local matrix of the object index in dest, starting at destOff.
+	 */
+	public void computeLocalMatrix(int index, float dest[], int destOff) {
+		float qx = orientations[index * 4];
+		float qy = orientations[index * 4 + 1];
+		float qz = orientations[index * 4 + 2];
+		float qw = orientations[index * 4 + 3];
+		
+		float sx = scales[index * 3];
+		float sy = scales[index * 3 + 1];
+		float sz = scales[index * 3 + 2];
+		
+		// The rotation matrix of the quaternion (see Glm.matCast()), with its columns scaled.
+		dest[destOff] 		= (1 - 2 * qy * qy - 2 * qz * qz) * sx;
+		dest[destOff + 1] 	= (2 * qx * qy + 2 * qw * qz) * sx;
+		dest[destOff + 2] 	= (2 * qx * qz - 2 * qw * qy) * sx;
+		dest[destOff + 3] 	= 0.0f;
+		
+		dest[destOff + 4] 	= (2 * qx * qy - 2 * qw * qz) * sy;
+		dest[destOff + 5] 	= (1 - 2 * qx * qx - 2 * qz * qz) * sy;
+		dest[destOff + 6] 	= (2 * qy * qz + 2 * qw * qx) * sy;
+		dest[destOff + 7] 	= 0.0f;
+		
+		dest[destOff + 8] 	= (2 * qx * qz + 2 * qw * qy) * sz;
+		dest[destOff + 9] 	= (2 * qy * qz - 2 * qw * qx) * sz;
+		dest[destOff + 10] 	= (1 - 2 * qx * qx - 2 * qy * qy) * sz;
+		dest[destOff + 11] 	= 0.0f;
+		
+		dest[destOff + 12] 	= positions[index * 3];
+		dest[destOff + 13] 	= positions[index * 3 + 1];
+		dest[destOff + 14] 	= positions[index * 3 + 2];
+		dest[destOff + 15] 	= 1.0f;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * b = a * b, for two matrices whose last row is (0, 0, 0, 1).
+	 */
+	private static void mulAffine(float a[], int aOff, float b[], int bOff) {
+		float a0 = a[aOff], a4 = a[aOff + 4], a8 = a[aOff + 8], a12 = a[aOff + 12];
+		float a1 = a[aOff + 1], a5 = a[aOff + 5], a9 = a[aOff + 9], a13 = a[aOff + 13];
+		float a2 = a[aOff + 2], a6 = a[aOff + 6], a10 = a[aOff + 10], a14 = a[aOff + 14];
+		
+		for (int c = bOff; c < bOff + 16; c += 4) {
+			float b0 = b[c], b1 = b[c + 1], b2 = b[c + 2], b3 = b[c + 3];
+			
+			b[c] 	 = a0 * b0 + a4 * b1 + a8 * b2 + a12 * b3;
+			b[c + 1] = a1 * b0 + a5 * b1 + a9 * b2 + a13 * b3;
+			b[c + 2] = a2 * b0 + a6 * b1 + a10 * b2 + a14 * b3;
+		}
+	}
+}
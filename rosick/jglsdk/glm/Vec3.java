@@ -146,4 +146,51 @@ public class Vec3 extends BufferableData<FloatBuffer> {
 		
 		return res.negate();
 	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	public static Vec3 add(Vec3 a, Vec3 b, Vec3 dest) {
+		dest.x = a.x + b.x;
+		dest.y = a.y + b.y;
+		dest.z = a.z + b.z;
+		
+		return dest;
+	}
+	
+	public static Vec3 sub(Vec3 a, Vec3 b, Vec3 dest) {
+		dest.x = a.x - b.x;
+		dest.y = a.y - b.y;
+		dest.z = a.z - b.z;
+		
+		return dest;
+	}
+	
+	public static Vec3 mul(Vec3 a, Vec3 b, Vec3 dest) {
+		dest.x = a.x * b.x;
+		dest.y = a.y * b.y;
+		dest.z = a.z * b.z;
+		
+		return dest;
+	}
+	
+	
+	public static Vec3 scale(Vec3 vec, float scalar, Vec3 dest) {
+		dest.x = vec.x * scalar;
+		dest.y = vec.y * scalar;
+		dest.z = vec.z * scalar;
+		
+		return dest;
+	}
+	
+	
+	public static Vec3 negate(Vec3 vec, Vec3 dest) {
+		dest.x = -vec.x;
+		dest.y = -vec.y;
+		dest.z = -vec.z;
+		
+		return dest;
+	}
 }
\ No newline at end of file
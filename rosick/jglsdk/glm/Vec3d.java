@@ -0,0 +1,97 @@
+package rosick.jglsdk.glm;
+
+
+/**
+ * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
+ * 
+ * The double precision version of Vec3, for world positions far from the origin.
+ * 
+ * @author integeruser
+ */
+public class Vec3d {
+	
+	public double x, y, z;
+	
+	
+	public Vec3d() {
+	}
+	
+	public Vec3d(double x, double y, double z) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+	}
+	
+	public Vec3d(Vec3d vec) {
+		x = vec.x;
+		y = vec.y;
+		z = vec.z;
+	}
+	
+	public Vec3d(Vec3 vec) {
+		x = vec.x;
+		y = vec.y;
+		z = vec.z;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	public Vec3d add(Vec3d vec) {
+		return add(this, vec, this);
+	}
+	
+	public Vec3d sub(Vec3d vec) {
+		return sub(this, vec, this);
+	}
+	
+	public Vec3d scale(double scalar) {
+		return scale(this, scalar, this);
+	}
+	
+	
+	public Vec3 toVec3(Vec3 dest) {
+		dest.x = (float) x;
+		dest.y = (float) y;
+		dest.z = (float) z;
+		
+		return dest;
+	}
+	
+	
+	@Override
+	public String toString() {
+		return "X: " + x + ", Y: " + y + ", Z: " + z;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	public static Vec3d add(Vec3d a, Vec3d b, Vec3d dest) {
+		dest.x = a.x + b.x;
+		dest.y = a.y + b.y;
+		dest.z = a.z + b.z;
+		
+		return dest;
+	}
+	
+	public static Vec3d sub(Vec3d a, Vec3d b, Vec3d dest) {
+		dest.x = a.x - b.x;
+		dest.y = a.y - b.y;
+		dest.z = a.z - b.z;
+		
+		return dest;
+	}
+	
+	public static Vec3d scale(Vec3d vec, double scalar, Vec3d dest) {
+		dest.x = vec.x * scalar;
+		dest.y = vec.y * scalar;
+		dest.z = vec.z * scalar;
+		
+		return dest;
+	}
+}
@@ -132,4 +132,46 @@ public class Vec4 extends BufferableData<FloatBuffer> {
 
 		return res.scale(scalar);
 	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	public static Vec4 add(Vec4 a, Vec4 b, Vec4 dest) {
+		dest.x = a.x + b.x;
+		dest.y = a.y + b.y;
+		dest.z = a.z + b.z;
+		dest.w = a.w + b.w;
+		
+		return dest;
+	}
+	
+	public static Vec4 sub(Vec4 a, Vec4 b, Vec4 dest) {
+		dest.x = a.x - b.x;
+		dest.y = a.y - b.y;
+		dest.z = a.z - b.z;
+		dest.w = a.w - b.w;
+		
+		return dest;
+	}
+	
+	public static Vec4 mul(Vec4 a, Vec4 b, Vec4 dest) {
+		dest.x = a.x * b.x;
+		dest.y = a.y * b.y;
+		dest.z = a.z * b.z;
+		dest.w = a.w * b.w;
+		
+		return dest;
+	}
+	
+	
+	public static Vec4 scale(Vec4 vec, float scalar, Vec4 dest) {
+		dest.x = vec.x * scalar;
+		dest.y = vec.y * scalar;
+		dest.z = vec.z * scalar;
+		dest.w = vec.w * scalar;
+		
+		return dest;
+	}
 }
\ No newline at end of file
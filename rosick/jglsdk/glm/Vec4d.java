@@ -0,0 +1,59 @@
+package rosick.jglsdk.glm;
+
+
+/**
+ * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
+ * 
+ * The double precision version of Vec4, for world positions far from the origin.
+ * 
+ * @author integeruser
+ */
+public class Vec4d {
+	
+	public double x, y, z, w;
+	
+	
+	public Vec4d() {
+	}
+	
+	public Vec4d(double x, double y, double z, double w) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.w = w;
+	}
+	
+	public Vec4d(Vec3d vec, double w) {
+		x = vec.x;
+		y = vec.y;
+		z = vec.z;
+		this.w = w;
+	}
+	
+	public Vec4d(Vec4d vec) {
+		x = vec.x;
+		y = vec.y;
+		z = vec.z;
+		w = vec.w;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	public Vec4 toVec4(Vec4 dest) {
+		dest.x = (float) x;
+		dest.y = (float) y;
+		dest.z = (float) z;
+		dest.w = (float) w;
+		
+		return dest;
+	}
+	
+	
+	@Override
+	public String toString() {
+		return "X: " + x + ", Y: " + y + ", Z: " + z + ", W: " + w;
+	}
+}
@@ -0,0 +1,683 @@
+package rosick.jglsdk.glutil;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import rosick.jglsdk.glm.Vec3;
+
+
+/**
+ * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
+ * 
+ * A bounding volume hierarchy over the boxes of many objects, for frustum and ray queries that don't
+ * test every object. The bounds of the object i are passed from i * 6 as min x, y, z and max x, y, z.
+ * 
+ * The tree is built with the surface area heuristic (on 16 bins of the centroids), splitting the
+ * subtrees with at least PARALLEL_THRESHOLD objects across a ForkJoinPool, then flattened in depth
+ * first order: the left child of a node comes right after it, and the objects of a subtree are
+ * contiguous in the object order. Moving objects are handled by setObjectBounds() and refit(), which
+ * keep the tree and only enlarge or shrink the boxes of the nodes above them: rebuild the hierarchy
+ * when the objects have moved too much.
+ * 
+ * The queries use an internal stack, so a hierarchy must not be queried by more threads at once.
+ * 
+ * @author integeruser
+ */
+public class BoundingVolumeHierarchy {
+	
+	public static final int PARALLEL_THRESHOLD = 16384;
+	
+	private static final int MAX_LEAF_SIZE = 4;
+	private static final int NUM_BINS = 16;
+	private static final int ITEM_SIZE = 9;
+	
+	private static ForkJoinPool g_pool;
+	
+	private int iNumObjects;
+	
+	// The objects sorted as the leaves reference them, their bounds in the same order, and the
+	// position of every object in that order.
+	private int objectOrder[];
+	private float objectBounds[];
+	private int objectPositions[];
+	
+	// 6 floats for each node (its box) and 3 ints: the first object (in objectOrder), the number of
+	// objects and the right child, or -1 for the leaves.
+	private int iNumNodes;
+	private float nodeBounds[];
+	private int nodeData[];
+	private int nodeParents[];
+	private int objectLeaves[];
+	
+	private BitSet dirtyNodes = new BitSet();
+	private float tempBounds[] = new float[6];
+	
+	private int stack[] = new int[64];
+	private float fHitDistance;
+	
+	
+	/**
+	 * Builds the hierarchy over the first numObjects boxes of objectBounds, which is copied.
+	 */
+	public BoundingVolumeHierarchy(float objectBounds[], int numObjects) {
+		iNumObjects = numObjects;
+		
+		build(objectBounds);
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * Computes the intersection between a ray and an object, for raycast().
+	 */
+	public interface RayIntersector {
+		
+		/**
+		 * Returns the distance (in units of direction) at which the ray hits the object, or
+		 * Float.POSITIVE_INFINITY if it misses it or the hit is farther than maxDistance.
+		 */
+		float intersect(int object, Vec3 origin, Vec3 direction, float maxDistance);
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	public int getNumObjects() {
+		return iNumObjects;
+	}
+	
+	public int getNumNodes() {
+		return iNumNodes;
+	}
+	
+	
+	/**
+	 * Changes the bounds of an object. The nodes above it are updated by the next refit().
+	 */
+	public void setObjectBounds(int object, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+		int iOffset = objectPositions[object] * 6;
+		objectBounds[iOffset] 	  = minX;
+		objectBounds[iOffset + 1] = minY;
+		objectBounds[iOffset + 2] = minZ;
+		objectBounds[iOffset + 3] = maxX;
+		objectBounds[iOffset + 4] = maxY;
+		objectBounds[iOffset + 5] = maxZ;
+		
+		dirtyNodes.set(objectLeaves[object]);
+	}
+	
+	public void setObjectBounds(int object, Vec3 min, Vec3 max) {
+		setObjectBounds(object, min.x, min.y, min.z, max.x, max.y, max.z);
+	}
+	
+	
+	/**
+	 * Recomputes the boxes of the leaves containing the objects changed by setObjectBounds(), and of
+	 * their ancestors. A node whose box doesn't change doesn't dirty its parent.
+	 */
+	public void refit() {
+		// The children come after their parent, so going backwards every node is recomputed once,
+		// after its children.
+		for (int node = dirtyNodes.length() - 1; node >= 0; node = dirtyNodes.previousSetBit(node - 1)) {
+			if (computeNodeBounds(node) && nodeParents[node] >= 0) {
+				dirtyNodes.set(nodeParents[node]);
+			}
+		}
+		
+		dirtyNodes.clear();
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * Sets in visible the objects whose box is not outside the frustum of culler (the same result of
+	 * FrustumCuller.cullBoxes()). visible is cleared first. Returns visible.
+	 */
+	public BitSet queryFrustum(FrustumCuller culler, BitSet visible) {
+		visible.clear();
+		
+		if (iNumNodes == 0) {
+			return visible;
+		}
+		
+		int iStackSize = 0;
+		stack[iStackSize++] = 0;
+		
+		while (iStackSize > 0) {
+			int node = stack[--iStackSize];
+			int iFirst = nodeData[node * 3];
+			int iCount = nodeData[node * 3 + 1];
+			int iRight = nodeData[node * 3 + 2];
+			
+			int result = culler.classifyBox(nodeBounds, node * 6);
+			if (result == FrustumCuller.OUTSIDE) {
+				continue;
+			}
+			
+			if (result == FrustumCuller.INSIDE) {
+				// Everything below is visible.
+				for (int i = iFirst; i < iFirst + iCount; i++) {
+					visible.set(objectOrder[i]);
+				}
+			} else if (iRight < 0) {
+				for (int i = iFirst; i < iFirst + iCount; i++) {
+					if (culler.classifyBox(objectBounds, i * 6) != FrustumCuller.OUTSIDE) {
+						visible.set(objectOrder[i]);
+					}
+				}
+			} else {
+				iStackSize = push(iStackSize, iRight);
+				iStackSize = push(iStackSize, node + 1);
+			}
+		}
+		
+		return visible;
+	}
+	
+	
+	/**
+	 * Sets in hits the objects whose box is crossed by the ray origin + t * direction, with t between 0
+	 * and maxDistance. hits is cleared first. Returns hits.
+	 */
+	public BitSet queryRay(Vec3 origin, Vec3 direction, float maxDistance, BitSet hits) {
+		hits.clear();
+		
+		if (iNumNodes == 0) {
+			return hits;
+		}
+		
+		// The misses are Float.POSITIVE_INFINITY, so they must not pass the test with an infinite
+		// maxDistance.
+		maxDistance = Math.min(maxDistance, Float.MAX_VALUE);
+		
+		float invDirX = 1.0f / direction.x, invDirY = 1.0f / direction.y, invDirZ = 1.0f / direction.z;
+		
+		int iStackSize = 0;
+		stack[iStackSize++] = 0;
+		
+		while (iStackSize > 0) {
+			int node = stack[--iStackSize];
+			
+			if (intersectBox(nodeBounds, node * 6, origin, invDirX, invDirY, invDirZ, maxDistance) > maxDistance) {
+				continue;
+			}
+			
+			int iRight = nodeData[node * 3 + 2];
+			if (iRight < 0) {
+				int iFirst = nodeData[node * 3];
+				int iCount = nodeData[node * 3 + 1];
+				
+				for (int i = iFirst; i < iFirst + iCount; i++) {
+					if (intersectBox(objectBounds, i * 6, origin, invDirX, invDirY, invDirZ, maxDistance) <= maxDistance) {
+						hits.set(objectOrder[i]);
+					}
+				}
+			} else {
+				iStackSize = push(iStackSize, iRight);
+				iStackSize = push(iStackSize, node + 1);
+			}
+		}
+		
+		return hits;
+	}
+	
+	
+	/**
+	 * Returns the object nearest to origin hit by the ray origin + t * direction (with t between 0 and
+	 * maxDistance), or -1. The distance of the hit is returned by getHitDistance().
+	 * 
+	 * The objects whose box is crossed by the ray are tested with intersector, or count as hit where
+	 * the ray enters their box if intersector is null. The nodes are visited nearest first, and those
+	 * farther than the nearest hit found so far are skipped.
+	 */
+	public int raycast(Vec3 origin, Vec3 direction, float maxDistance, RayIntersector intersector) {
+		int iHitObject = -1;
+		fHitDistance = Float.POSITIVE_INFINITY;
+		
+		if (iNumNodes == 0) {
+			return iHitObject;
+		}
+		
+		float invDirX = 1.0f / direction.x, invDirY = 1.0f / direction.y, invDirZ = 1.0f / direction.z;
+		float fNearest = Math.min(maxDistance, Float.MAX_VALUE);		// as in queryRay()
+		
+		int iStackSize = 0;
+		if (intersectBox(nodeBounds, 0, origin, invDirX, invDirY, invDirZ, fNearest) <= fNearest) {
+			stack[iStackSize++] = 0;
+		}
+		
+		while (iStackSize > 0) {
+			int node = stack[--iStackSize];
+			int iRight = nodeData[node * 3 + 2];
+			
+			if (iRight < 0) {
+				int iFirst = nodeData[node * 3];
+				int iCount = nodeData[node * 3 + 1];
+				
+				for (int i = iFirst; i < iFirst + iCount; i++) {
+					int object = objectOrder[i];
+					
+					float t = intersectBox(objectBounds, i * 6, origin, invDirX, invDirY, invDirZ, fNearest);
+					if (t > fNearest) {
+						continue;
+					}
+					if (intersector != null) {
+						t = intersector.intersect(object, origin, direction, fNearest);
+					}
+					
+					if (t <= fNearest) {
+						fNearest = t;
+						fHitDistance = t;
+						iHitObject = object;
+					}
+				}
+			} else {
+				// The children are checked before being pushed, the nearest one is pushed last.
+				int iLeft = node + 1;
+				float tLeft = intersectBox(nodeBounds, iLeft * 6, origin, invDirX, invDirY, invDirZ, fNearest);
+				float tRight = intersectBox(nodeBounds, iRight * 6, origin, invDirX, invDirY, invDirZ, fNearest);
+				
+				int iNear = tLeft <= tRight ? iLeft : iRight;
+				int iFar = tLeft <= tRight ? iRight : iLeft;
+				
+				if (Math.max(tLeft, tRight) <= fNearest) {
+					iStackSize = push(iStackSize, iFar);
+				}
+				if (Math.min(tLeft, tRight) <= fNearest) {
+					iStackSize = push(iStackSize, iNear);
+				}
+			}
+		}
+		
+		return iHitObject;
+	}
+	
+	/**
+	 * The distance of the hit found by the last raycast().
+	 */
+	public float getHitDistance() {
+		return fHitDistance;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * Returns the distance at which the ray enters the box stored in bounds from offset (0 if origin is
+	 * inside it), or Float.POSITIVE_INFINITY if the ray misses it or enters it after maxDistance.
+	 */
+	private static float intersectBox(float bounds[], int offset, Vec3 origin, float invDirX, float invDirY, float invDirZ, float maxDistance) {
+		float tNear = 0.0f, tFar = maxDistance;
+		
+		// A zero direction gives a NaN when origin lies on a slab boundary: it fails all the comparisons,
+		// so the slab doesn't restrict the ray, as origin is inside it.
+		float t1 = (bounds[offset] - origin.x) * invDirX;
+		float t2 = (bounds[offset + 3] - origin.x) * invDirX;
+		if (t1 > t2) { float t = t1; t1 = t2; t2 = t; }
+		if (t1 > tNear) tNear = t1;
+		if (t2 < tFar) tFar = t2;
+		
+		t1 = (bounds[offset + 1] - origin.y) * invDirY;
+		t2 = (bounds[offset + 4] - origin.y) * invDirY;
+		if (t1 > t2) { float t = t1; t1 = t2; t2 = t; }
+		if (t1 > tNear) tNear = t1;
+		if (t2 < tFar) tFar = t2;
+		
+		t1 = (bounds[offset + 2] - origin.z) * invDirZ;
+		t2 = (bounds[offset + 5] - origin.z) * invDirZ;
+		if (t1 > t2) { float t = t1; t1 = t2; t2 = t; }
+		if (t1 > tNear) tNear = t1;
+		if (t2 < tFar) tFar = t2;
+		
+		if (tNear > tFar) {
+			return Float.POSITIVE_INFINITY;
+		}
+		
+		return tNear;
+	}
+	
+	
+	private int push(int iStackSize, int node) {
+		if (iStackSize == stack.length) {
+			stack = Arrays.copyOf(stack, stack.length * 2);
+		}
+		
+		stack[iStackSize] = node;
+		
+		return iStackSize + 1;
+	}
+	
+	
+	/**
+	 * Recomputes the box of node from its objects or its children. Returns true if it changed.
+	 */
+	private boolean computeNodeBounds(int node) {
+		float bounds[] = tempBounds;
+		int iRight = nodeData[node * 3 + 2];
+		
+		emptyBounds(bounds, 0);
+		if (iRight < 0) {
+			int iFirst = nodeData[node * 3];
+			int iCount = nodeData[node * 3 + 1];
+			
+			for (int i = iFirst; i < iFirst + iCount; i++) {
+				growBounds(bounds, 0, objectBounds, i * 6);
+			}
+		} else {
+			growBounds(bounds, 0, nodeBounds, (node + 1) * 6);
+			growBounds(bounds, 0, nodeBounds, iRight * 6);
+		}
+		
+		boolean bChanged = false;
+		for (int i = 0; i < 6; i++) {
+			if (nodeBounds[node * 6 + i] != bounds[i]) {
+				nodeBounds[node * 6 + i] = bounds[i];
+				bChanged = true;
+			}
+		}
+		
+		return bChanged;
+	}
+	
+	
+	private static void emptyBounds(float bounds[], int offset) {
+		bounds[offset] = bounds[offset + 1] = bounds[offset + 2] = Float.POSITIVE_INFINITY;
+		bounds[offset + 3] = bounds[offset + 4] = bounds[offset + 5] = Float.NEGATIVE_INFINITY;
+	}
+	
+	private static void growBounds(float bounds[], int offset, float src[], int srcOff) {
+		// Plain comparisons are cheaper than Math.min() and Math.max(), which handle NaNs and -0.
+		for (int c = 0; c < 3; c++) {
+			float fMin = src[srcOff + c], fMax = src[srcOff + 3 + c];
+			
+			if (fMin < bounds[offset + c]) {
+				bounds[offset + c] = fMin;
+			}
+			if (fMax > bounds[offset + 3 + c]) {
+				bounds[offset + 3 + c] = fMax;
+			}
+		}
+	}
+	
+	/**
+	 * Half the surface area of the box, the SAH only compares areas.
+	 */
+	private static float halfArea(float bounds[]) {
+		float dx = bounds[3] - bounds[0], dy = bounds[4] - bounds[1], dz = bounds[5] - bounds[2];
+		
+		return dx * dy + dy * dz + dz * dx;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	private static class BuildNode {
+		float bounds[] = new float[6];
+		int iFirst, iCount;
+		BuildNode left, right;
+		int iNumNodes = 1;
+	}
+	
+	
+	private void build(float bounds[]) {
+		objectOrder = new int[iNumObjects];
+		objectBounds = new float[iNumObjects * 6];
+		objectPositions = new int[iNumObjects];
+		objectLeaves = new int[iNumObjects];
+		
+		if (iNumObjects == 0) {
+			nodeBounds = new float[0];
+			nodeData = new int[0];
+			nodeParents = new int[0];
+			return;
+		}
+		
+		// The box and the centroid of the objects, moved together with objectOrder while partitioning:
+		// the build reads them sequentially instead of jumping around bounds.
+		float items[] = new float[iNumObjects * ITEM_SIZE];
+		for (int i = 0; i < iNumObjects; i++) {
+			objectOrder[i] = i;
+			System.arraycopy(bounds, i * 6, items, i * ITEM_SIZE, 6);
+			items[i * ITEM_SIZE + 6] = (bounds[i * 6] + bounds[i * 6 + 3]) * 0.5f;
+			items[i * ITEM_SIZE + 7] = (bounds[i * 6 + 1] + bounds[i * 6 + 4]) * 0.5f;
+			items[i * ITEM_SIZE + 8] = (bounds[i * 6 + 2] + bounds[i * 6 + 5]) * 0.5f;
+		}
+		
+		BuildNode root = new BuildNode();
+		root.iFirst = 0;
+		root.iCount = iNumObjects;
+		
+		BuildTask task = new BuildTask(root, items);
+		if (iNumObjects >= PARALLEL_THRESHOLD) {
+			getPool().invoke(task);
+		} else {
+			task.compute();
+		}
+		
+		for (int i = 0; i < iNumObjects; i++) {
+			System.arraycopy(items, i * ITEM_SIZE, objectBounds, i * 6, 6);
+			objectPositions[objectOrder[i]] = i;
+		}
+		
+		iNumNodes = root.iNumNodes;
+		nodeBounds = new float[iNumNodes * 6];
+		nodeData = new int[iNumNodes * 3];
+		nodeParents = new int[iNumNodes];
+		
+		flatten(root, 0, -1);
+	}
+	
+	
+	private class BuildTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private BuildNode node;
+		private float items[];
+		
+		
+		BuildTask(BuildNode node, float items[]) {
+			this.node = node;
+			this.items = items;
+		}
+		
+		
+		@Override
+		protected void compute() {
+			split(node, items);
+			
+			if (node.left == null) {
+				return;
+			}
+			
+			BuildTask leftTask = new BuildTask(node.left, items);
+			BuildTask rightTask = new BuildTask(node.right, items);
+			
+			if (node.iCount >= PARALLEL_THRESHOLD) {
+				invokeAll(leftTask, rightTask);
+			} else {
+				leftTask.compute();
+				rightTask.compute();
+			}
+			
+			node.iNumNodes = 1 + node.left.iNumNodes + node.right.iNumNodes;
+		}
+	}
+	
+	
+	/**
+	 * Computes the box of node and, unless it should be a leaf, partitions its objects and creates its
+	 * children.
+	 */
+	private void split(BuildNode node, float items[]) {
+		int iFirst = node.iFirst;
+		int iLast = node.iFirst + node.iCount;
+		
+		float centroidBounds[] = new float[6];
+		emptyBounds(node.bounds, 0);
+		emptyBounds(centroidBounds, 0);
+		for (int i = iFirst; i < iLast; i++) {
+			growBounds(node.bounds, 0, items, i * ITEM_SIZE);
+			
+			for (int c = 0; c < 3; c++) {
+				float fCentroid = items[i * ITEM_SIZE + 6 + c];
+				
+				if (fCentroid < centroidBounds[c]) {
+					centroidBounds[c] = fCentroid;
+				}
+				if (fCentroid > centroidBounds[c + 3]) {
+					centroidBounds[c + 3] = fCentroid;
+				}
+			}
+		}
+		
+		if (node.iCount <= MAX_LEAF_SIZE) {
+			return;
+		}
+		
+		// Split along the longest axis of the centroids.
+		int iAxis = 0;
+		for (int c = 1; c < 3; c++) {
+			if (centroidBounds[c + 3] - centroidBounds[c] > centroidBounds[iAxis + 3] - centroidBounds[iAxis]) {
+				iAxis = c;
+			}
+		}
+		
+		float fMin = centroidBounds[iAxis];
+		float fExtent = centroidBounds[iAxis + 3] - fMin;
+		int iMiddle;
+		
+		if (fExtent > 0.0f) {
+			// Small nodes don't need all the bins.
+			int iNumBins = Math.min(NUM_BINS, node.iCount);
+			float fScale = iNumBins / fExtent;
+			
+			int binCounts[] = new int[iNumBins];
+			float binBounds[] = new float[iNumBins * 6];
+			for (int b = 0; b < iNumBins; b++) {
+				emptyBounds(binBounds, b * 6);
+			}
+			for (int i = iFirst; i < iLast; i++) {
+				int iBin = getBin(items[i * ITEM_SIZE + 6 + iAxis], fMin, fScale, iNumBins);
+				
+				binCounts[iBin]++;
+				growBounds(binBounds, iBin * 6, items, i * ITEM_SIZE);
+			}
+			
+			// The cost of splitting after the bin b is area(left) * count(left) + area(right) * count(right).
+			float rightCosts[] = new float[iNumBins];
+			float bounds[] = new float[6];
+			emptyBounds(bounds, 0);
+			int iCount = 0;
+			for (int b = iNumBins - 1; b > 0; b--) {
+				growBounds(bounds, 0, binBounds, b * 6);
+				iCount += binCounts[b];
+				rightCosts[b] = iCount > 0 ? halfArea(bounds) * iCount : 0.0f;
+			}
+			
+			int iBestSplit = -1;
+			float fBestCost = Float.POSITIVE_INFINITY;
+			emptyBounds(bounds, 0);
+			iCount = 0;
+			for (int b = 0; b < iNumBins - 1; b++) {
+				growBounds(bounds, 0, binBounds, b * 6);
+				iCount += binCounts[b];
+				
+				float fCost = (iCount > 0 ? halfArea(bounds) * iCount : 0.0f) + rightCosts[b + 1];
+				if (iCount > 0 && iCount < node.iCount && fCost < fBestCost) {
+					fBestCost = fCost;
+					iBestSplit = b;
+				}
+			}
+			
+			// Partition: the objects in the bins up to iBestSplit go left.
+			int i = iFirst, j = iLast - 1;
+			while (i <= j) {
+				if (getBin(items[i * ITEM_SIZE + 6 + iAxis], fMin, fScale, iNumBins) <= iBestSplit) {
+					i++;
+				} else {
+					swap(items, i, j);
+					j--;
+				}
+			}
+			iMiddle = i;
+		} else {
+			// All the centroids coincide: just halve the objects.
+			iMiddle = (iFirst + iLast) >>> 1;
+		}
+		
+		node.left = new BuildNode();
+		node.left.iFirst = iFirst;
+		node.left.iCount = iMiddle - iFirst;
+		
+		node.right = new BuildNode();
+		node.right.iFirst = iMiddle;
+		node.right.iCount = iLast - iMiddle;
+	}
+	
+	
+	private void swap(float items[], int i, int j) {
+		int temp = objectOrder[i];
+		objectOrder[i] = objectOrder[j];
+		objectOrder[j] = temp;
+		
+		for (int k = 0; k < ITEM_SIZE; k++) {
+			float fTemp = items[i * ITEM_SIZE + k];
+			items[i * ITEM_SIZE + k] = items[j * ITEM_SIZE + k];
+			items[j * ITEM_SIZE + k] = fTemp;
+		}
+	}
+	
+	private static int getBin(float centroid, float fMin, float fScale, int iNumBins) {
+		return Math.min(iNumBins - 1, (int) ((centroid - fMin) * fScale));
+	}
+	
+	
+	/**
+	 * Stores node and its subtree from the index node, in depth first order. Returns the index after the
+	 * subtree.
+	 */
+	private int flatten(BuildNode buildNode, int node, int iParent) {
+		System.arraycopy(buildNode.bounds, 0, nodeBounds, node * 6, 6);
+		nodeData[node * 3] = buildNode.iFirst;
+		nodeData[node * 3 + 1] = buildNode.iCount;
+		nodeParents[node] = iParent;
+		
+		if (buildNode.left == null) {
+			nodeData[node * 3 + 2] = -1;
+			
+			for (int i = buildNode.iFirst; i < buildNode.iFirst + buildNode.iCount; i++) {
+				objectLeaves[objectOrder[i]] = node;
+			}
+			
+			return node + 1;
+		}
+		
+		int iRight = flatten(buildNode.left, node + 1, node);
+		nodeData[node * 3 + 2] = iRight;
+		
+		return flatten(buildNode.right, iRight, node);
+	}
+	
+	
+	private static synchronized ForkJoinPool getPool() {
+		if (g_pool == null) {
+			g_pool = new ForkJoinPool();
+		}
+		
+		return g_pool;
+	}
+}
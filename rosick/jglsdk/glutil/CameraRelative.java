@@ -0,0 +1,126 @@
+package rosick.jglsdk.glutil;
+
+import java.nio.FloatBuffer;
+
+import rosick.jglsdk.glm.Mat4;
+import rosick.jglsdk.glm.Mat4d;
+import rosick.jglsdk.glm.Vec3;
+import rosick.jglsdk.glm.Vec3d;
+
+
+/**
+ * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
+ * 
+ * Builds the model-to-camera matrices of objects far from the origin. The world-to-camera matrix
+ * is a rotation times a translation by -cameraPosition: the translation is applied to the double
+ * modelToWorld matrix, and only its result, which is small near the camera, is rounded to float and
+ * rotated. Going through a float modelToWorld instead loses everything below a unit at 1e7 units
+ * from the origin.
+ * 
+ * @author integeruser
+ */
+public class CameraRelative {
+	
+	private Vec3d cameraPosition = new Vec3d();
+	private Mat4 viewRotation = new Mat4(1.0f);
+	
+	private Mat4 tempMatrix = new Mat4();
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * Sets the camera position in world space and the rotation from world to camera space (only its
+	 * upper 3x3 part is used).
+	 */
+	public void setCamera(Vec3d position, Mat4 rotation) {
+		cameraPosition.x = position.x;
+		cameraPosition.y = position.y;
+		cameraPosition.z = position.z;
+		
+		float r[] = rotation.get();
+		float res[] = viewRotation.get();
+		for (int iColumn = 0; iColumn < 12; iColumn += 4) {
+			res[iColumn] 	 = r[iColumn];
+			res[iColumn + 1] = r[iColumn + 1];
+			res[iColumn + 2] = r[iColumn + 2];
+		}
+	}
+	
+	/**
+	 * Sets the camera from a rigid worldToCamera matrix (a rotation and a translation).
+	 */
+	public void setCamera(Mat4d worldToCamera) {
+		double m[] = worldToCamera.get();
+		float res[] = viewRotation.get();
+		for (int iColumn = 0; iColumn < 12; iColumn += 4) {
+			res[iColumn] 	 = (float) m[iColumn];
+			res[iColumn + 1] = (float) m[iColumn + 1];
+			res[iColumn + 2] = (float) m[iColumn + 2];
+		}
+		
+		// The camera position is -transpose(R) * t.
+		cameraPosition.x = -(m[0] * m[12] + m[1] * m[13] + m[2] * m[14]);
+		cameraPosition.y = -(m[4] * m[12] + m[5] * m[13] + m[6] * m[14]);
+		cameraPosition.z = -(m[8] * m[12] + m[9] * m[13] + m[10] * m[14]);
+	}
+	
+	
+	public Vec3d getCameraPosition() {
+		return cameraPosition;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * Stores in dest the translation by -cameraPosition times modelToWorld, rounded to float.
+	 */
+	public Mat4 getCameraRelative(Mat4d modelToWorld, Mat4 dest) {
+		double m[] = modelToWorld.get();
+		float res[] = dest.get();
+		double cx = cameraPosition.x, cy = cameraPosition.y, cz = cameraPosition.z;
+		
+		for (int iColumn = 0; iColumn < 16; iColumn += 4) {
+			double w = m[iColumn + 3];
+			
+			res[iColumn] 	 = (float) (m[iColumn] - cx * w);
+			res[iColumn + 1] = (float) (m[iColumn + 1] - cy * w);
+			res[iColumn + 2] = (float) (m[iColumn + 2] - cz * w);
+			res[iColumn + 3] = (float) w;
+		}
+		
+		return dest;
+	}
+	
+	/**
+	 * The position of point relative to the camera (not rotated), rounded to float.
+	 */
+	public Vec3 getCameraRelative(Vec3d point, Vec3 dest) {
+		dest.x = (float) (point.x - cameraPosition.x);
+		dest.y = (float) (point.y - cameraPosition.y);
+		dest.z = (float) (point.z - cameraPosition.z);
+		
+		return dest;
+	}
+	
+	
+	public Mat4 getModelToCamera(Mat4d modelToWorld, Mat4 dest) {
+		getCameraRelative(modelToWorld, dest);
+		
+		return Mat4.mul(viewRotation, dest, dest);
+	}
+	
+	/**
+	 * Puts the model-to-camera matrix of modelToWorld in buffer, 16 floats (column-major).
+	 */
+	public FloatBuffer fillBuffer(Mat4d modelToWorld, FloatBuffer buffer) {
+		getModelToCamera(modelToWorld, tempMatrix);
+		
+		return buffer.put(tempMatrix.get());
+	}
+}
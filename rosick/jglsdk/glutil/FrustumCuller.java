@@ -0,0 +1,251 @@
+package rosick.jglsdk.glutil;
+
+import java.util.BitSet;
+
+import rosick.jglsdk.glm.Mat4;
+import rosick.jglsdk.glm.Vec3;
+
+
+/**
+ * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
+ * 
+ * Tests bounding volumes against the six planes of a view frustum, extracted from a worldToClip
+ * (cameraToClip * worldToCamera) matrix. The tests are conservative: a volume is culled only if it
+ * is entirely outside one of the planes, so a few volumes near the corners of the frustum are kept
+ * even if they are not visible.
+ * 
+ * The batch functions take the bounds as parallel arrays (one per coordinate) and set in a BitSet
+ * the indices of the visible ones.
+ * 
+ * @author integeruser
+ */
+public class FrustumCuller {
+	
+	public static final int OUTSIDE 		= 0;
+	public static final int INTERSECTING 	= 1;
+	public static final int INSIDE 			= 2;
+	
+	// Left, right, bottom, top, near and far planes, as a, b, c, d with ax + by + cz + d >= 0 inside
+	// and (a, b, c) of unit length.
+	private float planes[] = new float[24];
+	
+	// The absolute values of the plane normals, used to project the extents of the boxes.
+	private float absNormals[] = new float[18];
+	
+	private Mat4 tempMatrix = new Mat4();
+	
+	
+	public FrustumCuller() {
+	}
+	
+	public FrustumCuller(Mat4 worldToClip) {
+		setMatrix(worldToClip);
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	public void setMatrix(Mat4 worldToClip) {
+		float m[] = worldToClip.get();
+		
+		for (int iPlane = 0; iPlane < 6; iPlane++) {
+			// Plane 2k is row 3 + row k, plane 2k + 1 is row 3 - row k.
+			int iRow = iPlane / 2;
+			float sign = iPlane % 2 == 0 ? 1.0f : -1.0f;
+			
+			float a = m[3] + sign * m[iRow];
+			float b = m[7] + sign * m[4 + iRow];
+			float c = m[11] + sign * m[8 + iRow];
+			float d = m[15] + sign * m[12 + iRow];
+			
+			float invLength = 1.0f / (float) Math.sqrt(a * a + b * b + c * c);
+			planes[iPlane * 4] 		= a * invLength;
+			planes[iPlane * 4 + 1] 	= b * invLength;
+			planes[iPlane * 4 + 2] 	= c * invLength;
+			planes[iPlane * 4 + 3] 	= d * invLength;
+			
+			absNormals[iPlane * 3] 	   = Math.abs(planes[iPlane * 4]);
+			absNormals[iPlane * 3 + 1] = Math.abs(planes[iPlane * 4 + 1]);
+			absNormals[iPlane * 3 + 2] = Math.abs(planes[iPlane * 4 + 2]);
+		}
+	}
+	
+	public void setMatrices(Mat4 cameraToClip, Mat4 worldToCamera) {
+		setMatrix(Mat4.mul(cameraToClip, worldToCamera, tempMatrix));
+	}
+	
+	
+	/**
+	 * The planes as a, b, c, d, in the order left, right, bottom, top, near, far. Must not be modified.
+	 */
+	public float[] getPlanes() {
+		return planes;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	public boolean isSphereVisible(Vec3 center, float radius) {
+		for (int i = 0; i < 24; i += 4) {
+			if (planes[i] * center.x + planes[i + 1] * center.y + planes[i + 2] * center.z + planes[i + 3] < -radius) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	public boolean isBoxVisible(Vec3 min, Vec3 max) {
+		float cx = (min.x + max.x) * 0.5f, ex = (max.x - min.x) * 0.5f;
+		float cy = (min.y + max.y) * 0.5f, ey = (max.y - min.y) * 0.5f;
+		float cz = (min.z + max.z) * 0.5f, ez = (max.z - min.z) * 0.5f;
+		
+		for (int iPlane = 0; iPlane < 6; iPlane++) {
+			int iP = iPlane * 4, iN = iPlane * 3;
+			
+			// The distance of the center must not be less than minus the projected half extent.
+			float r = absNormals[iN] * ex + absNormals[iN + 1] * ey + absNormals[iN + 2] * ez;
+			if (planes[iP] * cx + planes[iP + 1] * cy + planes[iP + 2] * cz + planes[iP + 3] < -r) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	
+	/**
+	 * Classifies the box stored in bounds from offset as min x, y, z and max x, y, z. Returns OUTSIDE,
+	 * INTERSECTING or INSIDE (entirely inside all the planes).
+	 */
+	public int classifyBox(float bounds[], int offset) {
+		float minX = bounds[offset], minY = bounds[offset + 1], minZ = bounds[offset + 2];
+		float maxX = bounds[offset + 3], maxY = bounds[offset + 4], maxZ = bounds[offset + 5];
+		float cx = (minX + maxX) * 0.5f, ex = (maxX - minX) * 0.5f;
+		float cy = (minY + maxY) * 0.5f, ey = (maxY - minY) * 0.5f;
+		float cz = (minZ + maxZ) * 0.5f, ez = (maxZ - minZ) * 0.5f;
+		
+		int result = INSIDE;
+		for (int iPlane = 0; iPlane < 6; iPlane++) {
+			int iP = iPlane * 4, iN = iPlane * 3;
+			float r = absNormals[iN] * ex + absNormals[iN + 1] * ey + absNormals[iN + 2] * ez;
+			float distance = planes[iP] * cx + planes[iP + 1] * cy + planes[iP + 2] * cz + planes[iP + 3];
+			
+			if (distance < -r) {
+				return OUTSIDE;
+			}
+			if (distance < r) {
+				result = INTERSECTING;
+			}
+		}
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Tests count spheres, the i-th centered in (centersX[i], centersY[i], centersZ[i]) with radius
+	 * radii[i]. visible is cleared, then the bits of the visible spheres are set. Returns visible.
+	 */
+	public BitSet cullSpheres(float centersX[], float centersY[], float centersZ[], float radii[], int count, BitSet visible) {
+		visible.clear();
+		
+		float p[] = planes;
+		float a0 = p[0], b0 = p[1], c0 = p[2], d0 = p[3];
+		float a1 = p[4], b1 = p[5], c1 = p[6], d1 = p[7];
+		float a2 = p[8], b2 = p[9], c2 = p[10], d2 = p[11];
+		float a3 = p[12], b3 = p[13], c3 = p[14], d3 = p[15];
+		float a4 = p[16], b4 = p[17], c4 = p[18], d4 = p[19];
+		float a5 = p[20], b5 = p[21], c5 = p[22], d5 = p[23];
+		
+		for (int i = 0; i < count; i++) {
+			float x = centersX[i], y = centersY[i], z = centersZ[i], r = -radii[i];
+			
+			if (a0 * x + b0 * y + c0 * z + d0 >= r
+					&& a1 * x + b1 * y + c1 * z + d1 >= r
+					&& a2 * x + b2 * y + c2 * z + d2 >= r
+					&& a3 * x + b3 * y + c3 * z + d3 >= r
+					&& a4 * x + b4 * y + c4 * z + d4 >= r
+					&& a5 * x + b5 * y + c5 * z + d5 >= r) {
+				visible.set(i);
+			}
+		}
+		
+		return visible;
+	}
+	
+	/**
+	 * Tests count boxes, the i-th going from (minX[i], minY[i], minZ[i]) to (maxX[i], maxY[i],
+	 * maxZ[i]). visible is cleared, then the bits of the visible boxes are set. Returns visible.
+	 */
+	public BitSet cullBoxes(float minX[], float minY[], float minZ[], float maxX[], float maxY[], float maxZ[], int count, BitSet visible) {
+		visible.clear();
+		
+		for (int i = 0; i < count; i++) {
+			float cx = (minX[i] + maxX[i]) * 0.5f, ex = (maxX[i] - minX[i]) * 0.5f;
+			float cy = (minY[i] + maxY[i]) * 0.5f, ey = (maxY[i] - minY[i]) * 0.5f;
+			float cz = (minZ[i] + maxZ[i]) * 0.5f, ez = (maxZ[i] - minZ[i]) * 0.5f;
+			
+			boolean bVisible = true;
+			for (int iPlane = 0; iPlane < 6 && bVisible; iPlane++) {
+				int iP = iPlane * 4, iN = iPlane * 3;
+				float r = absNormals[iN] * ex + absNormals[iN + 1] * ey + absNormals[iN + 2] * ez;
+				
+				bVisible = planes[iP] * cx + planes[iP + 1] * cy + planes[iP + 2] * cz + planes[iP + 3] >= -r;
+			}
+			
+			if (bVisible) {
+				visible.set(i);
+			}
+		}
+		
+		return visible;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * Transforms the sphere (center, radius) by modelToWorld. Stores the new center in destCenter
+	 * and returns the new radius, scaled by the biggest scale factor of the matrix.
+	 */
+	public static float transformSphere(Mat4 modelToWorld, Vec3 center, float radius, Vec3 destCenter) {
+		float m[] = modelToWorld.get();
+		float x = center.x, y = center.y, z = center.z;
+		
+		destCenter.x = m[0] * x + m[4] * y + m[8] * z + m[12];
+		destCenter.y = m[1] * x + m[5] * y + m[9] * z + m[13];
+		destCenter.z = m[2] * x + m[6] * y + m[10] * z + m[14];
+		
+		float scaleXSq = m[0] * m[0] + m[1] * m[1] + m[2] * m[2];
+		float scaleYSq = m[4] * m[4] + m[5] * m[5] + m[6] * m[6];
+		float scaleZSq = m[8] * m[8] + m[9] * m[9] + m[10] * m[10];
+		
+		return radius * (float) Math.sqrt(Math.max(scaleXSq, Math.max(scaleYSq, scaleZSq)));
+	}
+	
+	/**
+	 * Stores in destMin and destMax the box, aligned to the world axes, that contains the box (min,
+	 * max) transformed by the affine matrix modelToWorld.
+	 */
+	public static void transformBox(Mat4 modelToWorld, Vec3 min, Vec3 max, Vec3 destMin, Vec3 destMax) {
+		float m[] = modelToWorld.get();
+		float minX = min.x, minY = min.y, minZ = min.z;
+		float maxX = max.x, maxY = max.y, maxZ = max.z;
+		
+		// Every row of the matrix adds the smallest and the biggest product to the translation.
+		destMin.x = m[12] + Math.min(m[0] * minX, m[0] * maxX) + Math.min(m[4] * minY, m[4] * maxY) + Math.min(m[8] * minZ, m[8] * maxZ);
+		destMin.y = m[13] + Math.min(m[1] * minX, m[1] * maxX) + Math.min(m[5] * minY, m[5] * maxY) + Math.min(m[9] * minZ, m[9] * maxZ);
+		destMin.z = m[14] + Math.min(m[2] * minX, m[2] * maxX) + Math.min(m[6] * minY, m[6] * maxY) + Math.min(m[10] * minZ, m[10] * maxZ);
+		
+		destMax.x = m[12] + Math.max(m[0] * minX, m[0] * maxX) + Math.max(m[4] * minY, m[4] * maxY) + Math.max(m[8] * minZ, m[8] * maxZ);
+		destMax.y = m[13] + Math.max(m[1] * minX, m[1] * maxX) + Math.max(m[5] * minY, m[5] * maxY) + Math.max(m[9] * minZ, m[9] * maxZ);
+		destMax.z = m[14] + Math.max(m[2] * minX, m[2] * maxX) + Math.max(m[6] * minY, m[6] * maxY) + Math.max(m[10] * minZ, m[10] * maxZ);
+	}
+}
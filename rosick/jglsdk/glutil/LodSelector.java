@@ -0,0 +1,96 @@
+package rosick.jglsdk.glutil;
+
+import rosick.jglsdk.glm.Mat4;
+import rosick.jglsdk.glm.Vec3;
+
+
+/**
+ * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
+ * 
+ * Chooses the level of detail of a mesh from the size on screen of its error: the coarsest LOD whose
+ * error, projected at the distance of the object, is at most maxPixelError pixels. The errors are
+ * the ones of Mesh.getLodErrors(), growing with the LOD.
+ * 
+ * To avoid switching back and forth at the limit, an object moves to a coarser LOD only when its
+ * error is below maxPixelError * (1 - hysteresis), and back to a finer one only when the error of the
+ * current LOD is above maxPixelError * (1 + hysteresis). The caller keeps the current LOD of every
+ * object.
+ * 
+ * @author integeruser
+ */
+public class LodSelector {
+	
+	private float lodErrors[];
+	private float fMaxPixelError;
+	private float fHysteresis;
+	
+	// Pixels for a unit of error at distance 1 (or at any distance, with an orthographic projection).
+	private float fPixelsPerUnit;
+	private boolean bPerspective;
+	
+	private Vec3 tempCenter = new Vec3();
+	
+	
+	public LodSelector(float lodErrors[], float maxPixelError, float hysteresis) {
+		this.lodErrors = lodErrors.clone();
+		fMaxPixelError = maxPixelError;
+		fHysteresis = hysteresis;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * Must be called when the projection or the height of the viewport change.
+	 */
+	public void setProjection(Mat4 cameraToClip, int viewportHeight) {
+		// The y of a camera space point becomes y * m[5] / w in NDC, with w = -z for the perspective
+		// projections and 1 for the orthographic ones.
+		fPixelsPerUnit = cameraToClip.get(5) * viewportHeight * 0.5f;
+		bPerspective = cameraToClip.get(11) != 0.0f;
+	}
+	
+	
+	/**
+	 * The error of the LOD lod, in pixels, for an object at the given distance from the camera.
+	 */
+	public float getPixelError(int lod, float distance) {
+		float fPixels = lodErrors[lod] * fPixelsPerUnit;
+		
+		return bPerspective ? fPixels / Math.max(distance, Float.MIN_NORMAL) : fPixels;
+	}
+	
+	
+	/**
+	 * Returns the LOD to use for an object at the given distance from the camera, currently drawn
+	 * with currentLod.
+	 */
+	public int select(int currentLod, float distance) {
+		int lod = Math.max(0, Math.min(currentLod, lodErrors.length - 1));
+		
+		while (lod > 0 && getPixelError(lod, distance) > fMaxPixelError * (1.0f + fHysteresis)) {
+			lod--;
+		}
+		while (lod < lodErrors.length - 1 && getPixelError(lod + 1, distance) <= fMaxPixelError * (1.0f - fHysteresis)) {
+			lod++;
+		}
+		
+		return lod;
+	}
+	
+	/**
+	 * Same as select(currentLod, distance), using the distance of the nearest point of the bounding
+	 * sphere of the mesh. The errors are scaled as the sphere by modelToCamera.
+	 */
+	public int select(int currentLod, Mat4 modelToCamera, Vec3 sphereCenter, float sphereRadius) {
+		float fScale = FrustumCuller.transformSphere(modelToCamera, sphereCenter, 1.0f, tempCenter);
+		float fRadius = sphereRadius * fScale;
+		
+		float fDistance = (float) Math.sqrt(tempCenter.x * tempCenter.x + tempCenter.y * tempCenter.y + tempCenter.z * tempCenter.z);
+		
+		// Scaling the error is the same as shrinking the distance.
+		return select(currentLod, (fDistance - fRadius) / fScale);
+	}
+}
@@ -0,0 +1,150 @@
+package rosick.jglsdk.glutil;
+
+import static org.lwjgl.opengl.GL15.*;
+
+import java.nio.FloatBuffer;
+
+import org.lwjgl.BufferUtils;
+
+import rosick.jglsdk.glm.Mat3;
+import rosick.jglsdk.glm.Mat4;
+
+
+/**
+ * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
+ * 
+ * Collects the matrices of many draws in one direct FloatBuffer, so that they can be sent to a
+ * uniform (or texture) buffer object with a single glBufferSubData, instead of a glUniformMatrix4
+ * for every draw.
+ * 
+ * Every entry holds a model matrix (a mat4) and, if requested, a normal matrix (a mat3 stored as
+ * three vec4 columns, as the std140 layout wants). Each entry starts on a multiple of the alignment
+ * given to the constructor: pass GL_UNIFORM_BUFFER_OFFSET_ALIGNMENT to bind every entry by
+ * itself with glBindBufferRange, or 16 to use the whole batch as an array.
+ * 
+ * @author integeruser
+ */
+public class MatrixBatch {
+	
+	private static final int FLOAT_SIZE = Float.SIZE / 8;
+	
+	private FloatBuffer buffer;
+	private boolean bNormalMatrices;
+	private int iEntryFloats;
+	private int iMaxEntries;
+	private int iNumEntries;
+	
+	
+	public MatrixBatch(int maxEntries, boolean bNormalMatrices, int entryAlignment) {
+		int iEntrySize = (16 + (bNormalMatrices ? 12 : 0)) * FLOAT_SIZE;
+		iEntrySize = ((iEntrySize + entryAlignment - 1) / entryAlignment) * entryAlignment;
+		
+		this.bNormalMatrices = bNormalMatrices;
+		iEntryFloats = iEntrySize / FLOAT_SIZE;
+		iMaxEntries = maxEntries;
+		
+		buffer = BufferUtils.createFloatBuffer(maxEntries * iEntryFloats);
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * Adds an entry and returns its index. The batch must have no normal matrices, or the entry would
+	 * keep the normal matrix of an older one.
+	 */
+	public int add(Mat4 modelMatrix) {
+		if (bNormalMatrices) {
+			throw new RuntimeException("The batch needs a normal matrix for every entry.");
+		}
+		
+		return addModelMatrix(modelMatrix);
+	}
+	
+	/**
+	 * Adds an entry with a normal matrix and returns its index.
+	 */
+	public int add(Mat4 modelMatrix, Mat3 normalMatrix) {
+		if (!bNormalMatrices) {
+			throw new RuntimeException("The batch has no room for normal matrices.");
+		}
+		
+		int index = addModelMatrix(modelMatrix);
+		
+		float normal[] = normalMatrix.get();
+		for (int iColumn = 0; iColumn < 3; iColumn++) {
+			buffer.put(normal, iColumn * 3, 3);
+			buffer.put(0.0f);
+		}
+		
+		return index;
+	}
+	
+	private int addModelMatrix(Mat4 modelMatrix) {
+		if (iNumEntries == iMaxEntries) {
+			throw new RuntimeException("The batch is full (" + iMaxEntries + " entries).");
+		}
+		
+		int index = iNumEntries;
+		iNumEntries++;
+		
+		buffer.position(index * iEntryFloats);
+		buffer.put(modelMatrix.get());
+		
+		return index;
+	}
+	
+	
+	public void clear() {
+		iNumEntries = 0;
+	}
+	
+	
+	public int getNumEntries() {
+		return iNumEntries;
+	}
+	
+	/**
+	 * The size in bytes of an entry, padding included.
+	 */
+	public int getEntrySize() {
+		return iEntryFloats * FLOAT_SIZE;
+	}
+	
+	/**
+	 * The offset in bytes of the entry index, to use with glBindBufferRange.
+	 */
+	public int getEntryOffset(int index) {
+		return index * iEntryFloats * FLOAT_SIZE;
+	}
+	
+	
+	/**
+	 * The entries added so far, from position 0 to the limit.
+	 */
+	public FloatBuffer getBuffer() {
+		buffer.position(0);
+		buffer.limit(iNumEntries * iEntryFloats);
+		
+		FloatBuffer entries = buffer.slice();
+		buffer.clear();
+		
+		return entries;
+	}
+	
+	
+	/**
+	 * Copies all the entries at the start of the buffer object bufferObject, bound to target.
+	 */
+	public void upload(int target, int bufferObject) {
+		if (iNumEntries == 0) {
+			return;
+		}
+		
+		glBindBuffer(target, bufferObject);
+		glBufferSubData(target, 0, getBuffer());
+		glBindBuffer(target, 0);
+	}
+}
@@ -8,6 +8,8 @@ import rosick.jglsdk.glm.Vec3;
 /**
  * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
  * 
+ * top() always returns the same Mat4: every operation modifies it in place, without allocating.
+ * 
  * @author integeruser
  */
 public class MatrixStack {	
@@ -15,6 +17,8 @@ public class MatrixStack {
 	private Mat4 currentMatrix;
 	private float matrices[];
 	private int firstIndexUsable;
+	
+	private Mat4 tempMatrix = new Mat4();
 		
 	
 	public MatrixStack() {
@@ -60,11 +64,11 @@ public class MatrixStack {
 		
 	
 	public void setIdentity() {
-		currentMatrix = new Mat4(1.0f);
+		currentMatrix.clear(1.0f);
 	}
 	
 	public void setMatrix(Mat4 mat) {
-		currentMatrix = new Mat4(mat);
+		currentMatrix.clear(mat);
 	}
 	
 	
@@ -80,19 +84,56 @@ public class MatrixStack {
 	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */	
 	
 	public void rotate(Vec3 axis, float angDegCCW) {
-		currentMatrix = Glm.rotate(currentMatrix, angDegCCW, axis);
+		Glm.rotate(currentMatrix, angDegCCW, axis, currentMatrix);
 	}
 	
+	
+	// The functions below multiply currentMatrix by a rotation, scale or translation matrix
+	// computing only the columns that change.
+	
 	public void rotateX(float fAngDeg) {
-		currentMatrix.mul(Mat4.getRotateX(fAngDeg));
+		float fAngRad = (float) Math.toRadians(fAngDeg);
+		float fCos = (float) Math.cos(fAngRad);
+		float fSin = (float) Math.sin(fAngRad);
+		
+		float m[] = currentMatrix.get();
+		for (int i = 0; i < 4; i++) {
+			float y = m[4 + i];
+			float z = m[8 + i];
+			
+			m[4 + i] = y * fCos + z * fSin;
+			m[8 + i] = y * -fSin + z * fCos;
+		}
 	}
 
 	public void rotateY(float fAngDeg) {
-		currentMatrix.mul(Mat4.getRotateY(fAngDeg));
+		float fAngRad = (float) Math.toRadians(fAngDeg);
+		float fCos = (float) Math.cos(fAngRad);
+		float fSin = (float) Math.sin(fAngRad);
+		
+		float m[] = currentMatrix.get();
+		for (int i = 0; i < 4; i++) {
+			float x = m[i];
+			float z = m[8 + i];
+			
+			m[i] 	 = x * fCos + z * -fSin;
+			m[8 + i] = x * fSin + z * fCos;
+		}
 	}
 
 	public void rotateZ(float fAngDeg) {
-		currentMatrix.mul(Mat4.getRotateZ(fAngDeg));
+		float fAngRad = (float) Math.toRadians(fAngDeg);
+		float fCos = (float) Math.cos(fAngRad);
+		float fSin = (float) Math.sin(fAngRad);
+		
+		float m[] = currentMatrix.get();
+		for (int i = 0; i < 4; i++) {
+			float x = m[i];
+			float y = m[4 + i];
+			
+			m[i] 	 = x * fCos + y * fSin;
+			m[4 + i] = x * -fSin + y * fCos;
+		}
 	}
 
 	
@@ -101,15 +142,12 @@ public class MatrixStack {
 	}
 	
 	public void scale(float x, float y, float z) {
-		Mat4 mat = new Mat4();
-		
-		mat.clear(0);
-		mat.set(0, x);
-		mat.set(5, y);
-		mat.set(10, z);
-		mat.set(15, 1);
-
-		currentMatrix.mul(mat);
+		float m[] = currentMatrix.get();
+		for (int i = 0; i < 4; i++) {
+			m[i] 	 *= x;
+			m[4 + i] *= y;
+			m[8 + i] *= z;
+		}
 	}
 
 	public void scale(Vec3 vec) {
@@ -118,14 +156,10 @@ public class MatrixStack {
 
 	
 	public void translate(float x, float y, float z) {
-		Mat4 mat = new Mat4();
-
-		mat.clear(1);
-		mat.set(12, x);
-		mat.set(13, y);
-		mat.set(14, z);
-
-		currentMatrix.mul(mat);
+		float m[] = currentMatrix.get();
+		for (int i = 0; i < 4; i++) {
+			m[12 + i] = m[i] * x + m[4 + i] * y + m[8 + i] * z + m[12 + i];
+		}
 	}
 
 	public void translate(Vec3 vec) {
@@ -134,6 +168,6 @@ public class MatrixStack {
 	
 	
 	public void perspective(float fovy, float aspect, float zNear, float zFar) {
-		currentMatrix.mul(Glm.perspective(fovy, aspect, zNear, zFar));
+		currentMatrix.mul(Glm.perspective(fovy, aspect, zNear, zFar, tempMatrix));
 	}
 }
\ No newline at end of file
@@ -7,7 +7,6 @@ import rosick.jglsdk.glm.Mat4;
 import rosick.jglsdk.glm.Quaternion;
 import rosick.jglsdk.glm.Vec2;
 import rosick.jglsdk.glm.Vec3;
-import rosick.jglsdk.glm.Vec4;
 
 
 /**
@@ -50,6 +49,14 @@ public class MousePoles {
 
 	public static abstract class ViewProvider extends Pole {
 		public abstract Mat4 calcMatrix();
+		
+		/**
+		 * The rotation part of calcMatrix(). Subclasses that know it should override this, to avoid
+		 * building the matrix and converting it back.
+		 */
+		public Quaternion calcOrientation() {
+			return Glm.quatCast(calcMatrix());
+		}
 	}
 
 
@@ -263,11 +270,23 @@ public class MousePoles {
 		}
 		
 		
+		/**
+		 * Makes the pole manipulate another object, like the one returned by a ScenePicker. Ignored
+		 * while dragging.
+		 */
+		public void setObjectData(ObjectData objectData) {
+			if (!m_bIsDragging) {
+				m_po = objectData;
+			}
+		}
+		
+		public ObjectData getObjectData() {
+			return m_po;
+		}
+		
+		
 		public Mat4 calcMatrix() {
-			Mat4 translateMat = new Mat4(1.0f);
-			translateMat.setColumn(3, new Vec4(m_po.position, 1.0f));
-
-			return translateMat.mul(Glm.matCast(m_po.orientation));
+			return Glm.composeTRS(m_po.position, m_po.orientation, new Mat4());
 		}
 
 
@@ -294,7 +313,7 @@ public class MousePoles {
 			}
 			
 			if (m_pView != null) {
-				Quaternion viewQuat = Glm.quatCast(m_pView.calcMatrix());
+				Quaternion viewQuat = m_pView.calcOrientation();
 				Quaternion invViewQuat = Glm.conjugate(viewQuat);
 
 				m_po.orientation = Glm.normalize(Quaternion.mul(Quaternion.mul(invViewQuat,rot), (viewQuat)).mul(bFromInitial ? m_startDragOrient : m_po.orientation));		
@@ -516,23 +535,24 @@ public class MousePoles {
 		
 		@Override
 		public Mat4 calcMatrix() {
-			Mat4 mat = new Mat4(1.0f);
+			Mat4 mat = new Mat4();
 
 			// Remember: these transforms are in reverse order.
 
-			// In this space, we are facing in the correct direction. Which means that the camera point
-			// is directly behind us by the radius number of units.
-			mat = Glm.translate(mat, new Vec3(0.0f, 0.0f, -m_currView.radius));
-
 			// Rotate the world to look in the right direction..
-			Quaternion fullRotation = Glm.angleAxis(m_currView.degSpinRotation, new Vec3(0.0f, 0.0f, 1.0f)).mul(m_currView.orient);
+			Glm.matCast(calcFullRotation(), mat);
 
-			mat.mul(Glm.matCast(fullRotation));
+			// In this space, we are facing in the correct direction. Which means that the camera point
+			// is directly behind us by the radius number of units.
+			mat.matrix[14] = -m_currView.radius;
 
 			// Translate the world by the negation of the lookat point, placing the origin at the lookat point.
-			mat = Glm.translate(mat, Vec3.negate(m_currView.targetPos));
-
-			return mat;
+			return Glm.translate(mat, Vec3.negate(m_currView.targetPos), mat);
+		}
+		
+		@Override
+		public Quaternion calcOrientation() {
+			return Glm.normalize(calcFullRotation());
 		}
 
 		
@@ -556,6 +576,11 @@ public class MousePoles {
 		/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
 		 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
 		
+		private Quaternion calcFullRotation() {
+			return Glm.angleAxis(m_currView.degSpinRotation, new Vec3(0.0f, 0.0f, 1.0f)).mul(m_currView.orient);
+		}
+		
+		
 		private void beginDragRotate(Vec2 ptStart, RotateMode rotMode) {
 			m_RotateMode = rotMode;
 			m_startDragMouseLoc = ptStart;
@@ -683,11 +708,10 @@ public class MousePoles {
 		}
 
 		private void offsetTargetPos(Vec3 cameraOffset, float lastFrameDuration) {
-			Mat4 currMat = calcMatrix();
-			Quaternion orientation = Glm.quatCast(currMat);
+			Quaternion orientation = calcOrientation();
 
 			Quaternion invOrient = Glm.conjugate(orientation);
-			Vec3 worldOffset = invOrient.mul(cameraOffset);
+			Vec3 worldOffset = Quaternion.mul(invOrient, cameraOffset);
 
 			m_currView.targetPos.add(worldOffset);
 		}
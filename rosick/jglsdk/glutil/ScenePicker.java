@@ -0,0 +1,223 @@
+package rosick.jglsdk.glutil;
+
+import java.util.ArrayList;
+
+import rosick.jglsdk.glm.Glm;
+import rosick.jglsdk.glm.Mat4;
+import rosick.jglsdk.glm.Vec2;
+import rosick.jglsdk.glm.Vec3;
+import rosick.jglsdk.glm.Vec4;
+import rosick.jglsdk.glutil.BoundingVolumeHierarchy.RayIntersector;
+
+
+/**
+ * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
+ * 
+ * Finds the object under the mouse. Every object is a TriangleBvh (built once per mesh, see
+ * MeshData.buildTriangleBvh()) placed in the world by a model matrix; the same TriangleBvh can be
+ * used by many objects. The world boxes of the objects are kept in a BoundingVolumeHierarchy, and
+ * the objects crossed by the ray are tested by moving the ray in their model space.
+ * 
+ * pick() takes the mouse position passed to MousePole.forwardMouseButton(), which has the origin in
+ * the lower left corner like the window coordinates of OpenGL. The returned index can be used to
+ * give the ObjectData of the picked object to an ObjectPole, with setObjectData().
+ * 
+ * No OpenGL call is made, and a ScenePicker must not be used by more threads at once.
+ * 
+ * @author integeruser
+ */
+public class ScenePicker {
+	
+	private ArrayList<TriangleBvh> meshes = new ArrayList<>();
+	private ArrayList<Mat4> worldToModel = new ArrayList<>();
+	private float objectBounds[] = new float[16 * 6];
+	
+	// null when objects have been added since the last raycast().
+	private BoundingVolumeHierarchy bvh;
+	private boolean bRefit;
+	
+	private RayIntersector intersector = new ObjectIntersector();
+	private Vec3 localOrigin = new Vec3(), localDirection = new Vec3();
+	private Vec3 tempMin = new Vec3(), tempMax = new Vec3();
+	
+	private Vec3 rayOrigin = new Vec3(), rayDirection = new Vec3();
+	private int iHitTriangle;
+	private float fHitU, fHitV;
+	private float fHitDistance;
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * Adds an object and returns its index.
+	 */
+	public int add(TriangleBvh mesh, Mat4 modelToWorld) {
+		int index = meshes.size();
+		
+		if (objectBounds.length < (index + 1) * 6) {
+			float newBounds[] = new float[objectBounds.length * 2];
+			System.arraycopy(objectBounds, 0, newBounds, 0, objectBounds.length);
+			objectBounds = newBounds;
+		}
+		
+		meshes.add(mesh);
+		worldToModel.add(new Mat4());
+		bvh = null;
+		
+		setModelToWorld(index, modelToWorld);
+		
+		return index;
+	}
+	
+	public int getNumObjects() {
+		return meshes.size();
+	}
+	
+	
+	/**
+	 * Moves an object. The hierarchy is refitted by the next pick.
+	 */
+	public void setModelToWorld(int object, Mat4 modelToWorld) {
+		Glm.affineInverse(modelToWorld, worldToModel.get(object));
+		
+		TriangleBvh mesh = meshes.get(object);
+		if (mesh.getNumTriangles() > 0) {
+			FrustumCuller.transformBox(modelToWorld, mesh.getBoundsMin(), mesh.getBoundsMax(), tempMin, tempMax);
+		} else {
+			// An empty box, where the origin of the object is.
+			tempMin.x = tempMax.x = modelToWorld.get(12);
+			tempMin.y = tempMax.y = modelToWorld.get(13);
+			tempMin.z = tempMax.z = modelToWorld.get(14);
+		}
+		
+		// Also kept here, in case the hierarchy is rebuilt.
+		objectBounds[object * 6] 	 = tempMin.x;
+		objectBounds[object * 6 + 1] = tempMin.y;
+		objectBounds[object * 6 + 2] = tempMin.z;
+		objectBounds[object * 6 + 3] = tempMax.x;
+		objectBounds[object * 6 + 4] = tempMax.y;
+		objectBounds[object * 6 + 5] = tempMax.z;
+		
+		if (bvh != null) {
+			bvh.setObjectBounds(object, tempMin, tempMax);
+			bRefit = true;
+		}
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * Returns the object under mousePos (in window coordinates, inside viewport given as x, y, width
+	 * and height), or -1. The ray starts on the near plane and ends on the far one.
+	 */
+	public int pick(Vec2 mousePos, Vec4 viewport, Mat4 worldToCamera, Mat4 cameraToClip) {
+		Vec3 near = Glm.unProject(new Vec3(mousePos.x, mousePos.y, 0.0f), worldToCamera, cameraToClip, viewport);
+		Vec3 far = Glm.unProject(new Vec3(mousePos.x, mousePos.y, 1.0f), worldToCamera, cameraToClip, viewport);
+		
+		Vec3 direction = Vec3.sub(far, near);
+		float fLength = Glm.length(direction);
+		
+		return raycast(near, direction.scale(1.0f / fLength), fLength);
+	}
+	
+	
+	/**
+	 * Returns the object nearest to origin hit by the ray origin + t * direction (with t between 0 and
+	 * maxDistance), or -1.
+	 */
+	public int raycast(Vec3 origin, Vec3 direction, float maxDistance) {
+		if (bvh == null) {
+			// The objects added in a row are built in a single go.
+			bvh = new BoundingVolumeHierarchy(objectBounds, meshes.size());
+			bRefit = false;
+		} else if (bRefit) {
+			bvh.refit();
+			bRefit = false;
+		}
+		
+		rayOrigin.x = origin.x; rayOrigin.y = origin.y; rayOrigin.z = origin.z;
+		rayDirection.x = direction.x; rayDirection.y = direction.y; rayDirection.z = direction.z;
+		
+		iHitTriangle = -1;
+		int iHitObject = bvh.raycast(origin, direction, maxDistance, intersector);
+		fHitDistance = bvh.getHitDistance();
+		
+		return iHitObject;
+	}
+	
+	
+	/**
+	 * The distance (in units of the ray direction; world units for pick()) of the hit found by the last
+	 * pick() or raycast().
+	 */
+	public float getHitDistance() {
+		return fHitDistance;
+	}
+	
+	/**
+	 * The hit point, in world space, of the last pick() or raycast().
+	 */
+	public Vec3 getHitPoint(Vec3 dest) {
+		dest.x = rayOrigin.x + rayDirection.x * fHitDistance;
+		dest.y = rayOrigin.y + rayDirection.y * fHitDistance;
+		dest.z = rayOrigin.z + rayDirection.z * fHitDistance;
+		
+		return dest;
+	}
+	
+	/**
+	 * The triangle of the picked object that has been hit, and the barycentric coordinates of the hit
+	 * (see TriangleBvh.getHitU()).
+	 */
+	public int getHitTriangle() {
+		return iHitTriangle;
+	}
+	
+	public float getHitU() {
+		return fHitU;
+	}
+	
+	public float getHitV() {
+		return fHitV;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	private class ObjectIntersector implements RayIntersector {
+		
+		@Override
+		public float intersect(int object, Vec3 origin, Vec3 direction, float maxDistance) {
+			// The direction is moved but not normalized, so t is the same in both spaces.
+			float m[] = worldToModel.get(object).get();
+			float x = origin.x, y = origin.y, z = origin.z;
+			localOrigin.x = m[0] * x + m[4] * y + m[8] * z + m[12];
+			localOrigin.y = m[1] * x + m[5] * y + m[9] * z + m[13];
+			localOrigin.z = m[2] * x + m[6] * y + m[10] * z + m[14];
+			
+			x = direction.x; y = direction.y; z = direction.z;
+			localDirection.x = m[0] * x + m[4] * y + m[8] * z;
+			localDirection.y = m[1] * x + m[5] * y + m[9] * z;
+			localDirection.z = m[2] * x + m[6] * y + m[10] * z;
+			
+			TriangleBvh mesh = meshes.get(object);
+			int iTriangle = mesh.raycast(localOrigin, localDirection, maxDistance);
+			if (iTriangle < 0) {
+				return Float.POSITIVE_INFINITY;
+			}
+			
+			iHitTriangle = iTriangle;
+			fHitU = mesh.getHitU();
+			fHitV = mesh.getHitV();
+			
+			return mesh.getHitDistance();
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package rosick.jglsdk.glutil;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import rosick.jglsdk.glm.Mat4;
+
+
+/**
+ * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
+ * 
+ * A tree of transforms stored as flat arrays: parentIndices[i] is the parent of the node i (-1 for
+ * the roots), and a parent must come before its children. Every node has a local matrix, and
+ * update() computes its world matrix as the world matrix of its parent times its local matrix (the
+ * root matrix for the roots).
+ * 
+ * The result is the same as walking the tree with a MatrixStack whose top starts as the root
+ * matrix, calling push(), applyMatrix() with the local matrix of each node and pop().
+ * 
+ * The nodes of the same depth don't depend on each other, so update() goes one depth at a time, and
+ * the depths with at least PARALLEL_THRESHOLD nodes are split across a ForkJoinPool.
+ * 
+ * @author integeruser
+ */
+public class TransformHierarchy {
+	
+	public static final int PARALLEL_THRESHOLD = 8192;
+	
+	private static final int TASK_SIZE = 2048;
+	
+	private static ForkJoinPool g_pool;
+	
+	private int parentIndices[];
+	private float localMatrices[];
+	private float worldMatrices[];
+	private float rootMatrix[] = new Mat4(1.0f).get();
+	
+	// The nodes sorted by depth; the nodes of depth d are levelOrder[levelStarts[d]...levelStarts[d + 1] - 1].
+	private int levelOrder[];
+	private int levelStarts[];
+	
+	
+	public TransformHierarchy(int parentIndices[]) {
+		int iNumNodes = parentIndices.length;
+		
+		this.parentIndices = parentIndices.clone();
+		localMatrices = new float[iNumNodes * 16];
+		worldMatrices = new float[iNumNodes * 16];
+		
+		Mat4 identity = new Mat4(1.0f);
+		for (int i = 0; i < iNumNodes; i++) {
+			System.arraycopy(identity.get(), 0, localMatrices, i * 16, 16);
+		}
+		
+		buildLevels();
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	public int getNumNodes() {
+		return parentIndices.length;
+	}
+	
+	public int getParent(int node) {
+		return parentIndices[node];
+	}
+	
+	
+	public void setRootMatrix(Mat4 mat) {
+		System.arraycopy(mat.get(), 0, rootMatrix, 0, 16);
+	}
+	
+	public void setLocalMatrix(int node, Mat4 mat) {
+		System.arraycopy(mat.get(), 0, localMatrices, node * 16, 16);
+	}
+	
+	
+	/**
+	 * The local matrices of all the nodes, 16 floats (column-major) for each one. They can be
+	 * modified directly.
+	 */
+	public float[] getLocalMatrices() {
+		return localMatrices;
+	}
+	
+	/**
+	 * The world matrices computed by the last update(), 16 floats (column-major) for each node.
+	 */
+	public float[] getWorldMatrices() {
+		return worldMatrices;
+	}
+	
+	public Mat4 getWorldMatrix(int node, Mat4 dest) {
+		System.arraycopy(worldMatrices, node * 16, dest.get(), 0, 16);
+		
+		return dest;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	public void update() {
+		for (int iLevel = 0; iLevel < levelStarts.length - 1; iLevel++) {
+			int iFirst = levelStarts[iLevel];
+			int iLast = levelStarts[iLevel + 1];
+			
+			if (iLast - iFirst >= PARALLEL_THRESHOLD) {
+				getPool().invoke(new UpdateTask(iFirst, iLast));
+			} else {
+				update(iFirst, iLast);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Updates the world matrices of the nodes from levelOrder[iFirst] to levelOrder[iLast - 1].
+	 */
+	private void update(int iFirst, int iLast) {
+		for (int i = iFirst; i < iLast; i++) {
+			int node = levelOrder[i];
+			int iParent = parentIndices[node];
+			
+			if (iParent < 0) {
+				mul(rootMatrix, 0, localMatrices, node * 16, worldMatrices, node * 16);
+			} else {
+				mul(worldMatrices, iParent * 16, localMatrices, node * 16, worldMatrices, node * 16);
+			}
+		}
+	}
+	
+	
+	private class UpdateTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private int iFirst, iLast;
+		
+		
+		UpdateTask(int iFirst, int iLast) {
+			this.iFirst = iFirst;
+			this.iLast = iLast;
+		}
+		
+		
+		@Override
+		protected void compute() {
+			if (iLast - iFirst <= TASK_SIZE) {
+				update(iFirst, iLast);
+				return;
+			}
+			
+			int iMiddle = (iFirst + iLast) >>> 1;
+			invokeAll(new UpdateTask(iFirst, iMiddle), new UpdateTask(iMiddle, iLast));
+		}
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	private void buildLevels() {
+		int iNumNodes = parentIndices.length;
+		int depths[] = new int[iNumNodes];
+		int iMaxDepth = 0;
+		
+		for (int i = 0; i < iNumNodes; i++) {
+			int iParent = parentIndices[i];
+			
+			if (iParent >= i) {
+				throw new RuntimeException("The parent of the node " + i + " comes after it.");
+			}
+			
+			depths[i] = iParent < 0 ? 0 : depths[iParent] + 1;
+			iMaxDepth = Math.max(iMaxDepth, depths[i]);
+		}
+		
+		// Counting sort of the nodes by depth.
+		levelStarts = new int[iNumNodes > 0 ? iMaxDepth + 2 : 1];
+		for (int i = 0; i < iNumNodes; i++) {
+			levelStarts[depths[i] + 1]++;
+		}
+		for (int iLevel = 1; iLevel < levelStarts.length; iLevel++) {
+			levelStarts[iLevel] += levelStarts[iLevel - 1];
+		}
+		
+		levelOrder = new int[iNumNodes];
+		int next[] = levelStarts.clone();
+		for (int i = 0; i < iNumNodes; i++) {
+			levelOrder[next[depths[i]]++] = i;
+		}
+	}
+	
+	
+	/**
+	 * Same operations (and so the same result) of Mat4.mul(Mat4, Mat4, Mat4), on matrices stored in
+	 * arrays. dest must not overlap a.
+	 */
+	private static void mul(float a[], int aOff, float b[], int bOff, float dest[], int destOff) {
+		float a0 = a[aOff], a4 = a[aOff + 4], a8 = a[aOff + 8], a12 = a[aOff + 12];
+		float a1 = a[aOff + 1], a5 = a[aOff + 5], a9 = a[aOff + 9], a13 = a[aOff + 13];
+		float a2 = a[aOff + 2], a6 = a[aOff + 6], a10 = a[aOff + 10], a14 = a[aOff + 14];
+		float a3 = a[aOff + 3], a7 = a[aOff + 7], a11 = a[aOff + 11], a15 = a[aOff + 15];
+		
+		for (int c = 0; c < 16; c += 4) {
+			float b0 = b[bOff + c], b1 = b[bOff + c + 1], b2 = b[bOff + c + 2], b3 = b[bOff + c + 3];
+			
+			dest[destOff + c] 		= a0 * b0 + a4 * b1 + a8 * b2 + a12 * b3;
+			dest[destOff + c + 1] 	= a1 * b0 + a5 * b1 + a9 * b2 + a13 * b3;
+			dest[destOff + c + 2] 	= a2 * b0 + a6 * b1 + a10 * b2 + a14 * b3;
+			dest[destOff + c + 3] 	= a3 * b0 + a7 * b1 + a11 * b2 + a15 * b3;
+		}
+	}
+	
+	
+	private static synchronized ForkJoinPool getPool() {
+		if (g_pool == null) {
+			g_pool = new ForkJoinPool();
+		}
+		
+		return g_pool;
+	}
+}
@@ -0,0 +1,147 @@
+package rosick.jglsdk.glutil;
+
+import java.util.ArrayList;
+
+import rosick.jglsdk.glm.Mat4;
+
+
+/**
+ * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
+ * 
+ * A node of a transform hierarchy that caches its local and world matrices. The local matrix is
+ * built by computeLocalMatrix() on a MatrixStack, and only after invalidate() has been called; the
+ * world matrix (the world matrix of the parent times the local matrix) only when the node or one of
+ * its ancestors has been invalidated. Unchanged parts of the hierarchy cost nothing.
+ * 
+ * @author integeruser
+ */
+public class TransformNode {
+	
+	private static MatrixStack g_localStack = new MatrixStack();
+	private static int g_iNumRecomputed;
+	private static int g_iNumReused;
+	
+	private TransformNode parent;
+	private ArrayList<TransformNode> children = new ArrayList<>();
+	
+	private Mat4 localMatrix = new Mat4(1.0f);
+	private Mat4 worldMatrix = new Mat4(1.0f);
+	
+	// When a node is worldDirty, all its descendants are too.
+	private boolean bLocalDirty = true;
+	private boolean bWorldDirty = true;
+	
+	
+	public TransformNode() {
+	}
+	
+	public TransformNode(TransformNode parent) {
+		this.parent = parent;
+		
+		parent.children.add(this);
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * Applies the local transform of this node to modelMatrix, which starts as the identity. The
+	 * default implementation leaves the identity.
+	 */
+	protected void computeLocalMatrix(MatrixStack modelMatrix) {
+	}
+	
+	
+	/**
+	 * Must be called when something used by computeLocalMatrix() changes.
+	 */
+	public void invalidate() {
+		bLocalDirty = true;
+		invalidateWorld();
+	}
+	
+	
+	public TransformNode getParent() {
+		return parent;
+	}
+	
+	
+	public Mat4 getLocalMatrix() {
+		if (bLocalDirty) {
+			g_localStack.setIdentity();
+			computeLocalMatrix(g_localStack);
+			localMatrix.clear(g_localStack.top());
+			
+			bLocalDirty = false;
+		}
+		
+		return localMatrix;
+	}
+	
+	/**
+	 * Returns the world matrix of this node, recomputing it (and the ones of its ancestors) only if
+	 * needed. The returned Mat4 must not be modified.
+	 */
+	public Mat4 getWorldMatrix() {
+		if (!bWorldDirty) {
+			g_iNumReused++;
+			return worldMatrix;
+		}
+		
+		if (parent != null) {
+			Mat4.mul(parent.getWorldMatrix(), getLocalMatrix(), worldMatrix);
+		} else {
+			worldMatrix.clear(getLocalMatrix());
+		}
+		
+		bWorldDirty = false;
+		g_iNumRecomputed++;
+		
+		return worldMatrix;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	/**
+	 * The number of getWorldMatrix() calls that had to recompute the matrix since the last
+	 * resetCounters().
+	 */
+	public static int getNumRecomputed() {
+		return g_iNumRecomputed;
+	}
+	
+	/**
+	 * The number of getWorldMatrix() calls that returned the cached matrix since the last
+	 * resetCounters().
+	 */
+	public static int getNumReused() {
+		return g_iNumReused;
+	}
+	
+	public static void resetCounters() {
+		g_iNumRecomputed = 0;
+		g_iNumReused = 0;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	private void invalidateWorld() {
+		if (bWorldDirty) {
+			return;
+		}
+		
+		bWorldDirty = true;
+		
+		for (int i = 0; i < children.size(); i++) {
+			children.get(i).invalidateWorld();
+		}
+	}
+}
@@ -0,0 +1,187 @@
+package rosick.jglsdk.glutil;
+
+import rosick.jglsdk.glm.Vec3;
+import rosick.jglsdk.glutil.BoundingVolumeHierarchy.RayIntersector;
+
+
+/**
+ * Visit https://github.com/rosickteam/OpenGL for project info, updates and license terms.
+ * 
+ * A BoundingVolumeHierarchy over the triangles of a mesh, for ray picking on the CPU. The triangles
+ * are stored as parallel arrays (the first vertex and the two edges leaving it, one array for every
+ * component), which is what the Moller-Trumbore test reads. Both sides of a triangle can be hit.
+ * 
+ * raycast() uses the internal state of the hierarchy, so a TriangleBvh must not be used by more
+ * threads at once.
+ * 
+ * @author integeruser
+ */
+public class TriangleBvh {
+	
+	private int iNumTriangles;
+	
+	private float v0x[], v0y[], v0z[];
+	private float e1x[], e1y[], e1z[];
+	private float e2x[], e2y[], e2z[];
+	
+	private BoundingVolumeHierarchy bvh;
+	private Vec3 boundsMin, boundsMax;
+	
+	private RayIntersector intersector = new TriangleIntersector();
+	private float fHitU, fHitV;
+	
+	
+	/**
+	 * positions holds 3 floats for each vertex, triangles 3 vertex indices for each triangle.
+	 */
+	public TriangleBvh(float positions[], int triangles[]) {
+		iNumTriangles = triangles.length / 3;
+		
+		v0x = new float[iNumTriangles]; v0y = new float[iNumTriangles]; v0z = new float[iNumTriangles];
+		e1x = new float[iNumTriangles]; e1y = new float[iNumTriangles]; e1z = new float[iNumTriangles];
+		e2x = new float[iNumTriangles]; e2y = new float[iNumTriangles]; e2z = new float[iNumTriangles];
+		
+		float bounds[] = new float[iNumTriangles * 6];
+		boundsMin = new Vec3(Float.POSITIVE_INFINITY);
+		boundsMax = new Vec3(Float.NEGATIVE_INFINITY);
+		
+		for (int i = 0; i < iNumTriangles; i++) {
+			int a = triangles[i * 3] * 3, b = triangles[i * 3 + 1] * 3, c = triangles[i * 3 + 2] * 3;
+			
+			if (a + 2 >= positions.length || b + 2 >= positions.length || c + 2 >= positions.length) {
+				throw new RuntimeException("The triangle " + i + " references a missing vertex.");
+			}
+			
+			v0x[i] = positions[a];
+			v0y[i] = positions[a + 1];
+			v0z[i] = positions[a + 2];
+			e1x[i] = positions[b] - v0x[i];
+			e1y[i] = positions[b + 1] - v0y[i];
+			e1z[i] = positions[b + 2] - v0z[i];
+			e2x[i] = positions[c] - v0x[i];
+			e2y[i] = positions[c + 1] - v0y[i];
+			e2z[i] = positions[c + 2] - v0z[i];
+			
+			for (int iAxis = 0; iAxis < 3; iAxis++) {
+				float fMin = Math.min(positions[a + iAxis], Math.min(positions[b + iAxis], positions[c + iAxis]));
+				float fMax = Math.max(positions[a + iAxis], Math.max(positions[b + iAxis], positions[c + iAxis]));
+				
+				bounds[i * 6 + iAxis] = fMin;
+				bounds[i * 6 + 3 + iAxis] = fMax;
+			}
+		}
+		
+		for (int i = 0; i < iNumTriangles; i++) {
+			boundsMin.x = Math.min(boundsMin.x, bounds[i * 6]);
+			boundsMin.y = Math.min(boundsMin.y, bounds[i * 6 + 1]);
+			boundsMin.z = Math.min(boundsMin.z, bounds[i * 6 + 2]);
+			boundsMax.x = Math.max(boundsMax.x, bounds[i * 6 + 3]);
+			boundsMax.y = Math.max(boundsMax.y, bounds[i * 6 + 4]);
+			boundsMax.z = Math.max(boundsMax.z, bounds[i * 6 + 5]);
+		}
+		
+		bvh = new BoundingVolumeHierarchy(bounds, iNumTriangles);
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	public int getNumTriangles() {
+		return iNumTriangles;
+	}
+	
+	/**
+	 * The box containing all the triangles (min > max if there are none). Must not be modified.
+	 */
+	public Vec3 getBoundsMin() {
+		return boundsMin;
+	}
+	
+	public Vec3 getBoundsMax() {
+		return boundsMax;
+	}
+	
+	
+	/**
+	 * Returns the triangle nearest to origin hit by the ray origin + t * direction (with t between 0
+	 * and maxDistance), or -1. The hit is described by getHitDistance(), getHitU() and getHitV().
+	 */
+	public int raycast(Vec3 origin, Vec3 direction, float maxDistance) {
+		return bvh.raycast(origin, direction, maxDistance, intersector);
+	}
+	
+	/**
+	 * The distance (in units of direction) of the hit found by the last raycast().
+	 */
+	public float getHitDistance() {
+		return bvh.getHitDistance();
+	}
+	
+	/**
+	 * The barycentric coordinates of the hit found by the last raycast(): the hit point is
+	 * v0 + u * (v1 - v0) + v * (v2 - v0).
+	 */
+	public float getHitU() {
+		return fHitU;
+	}
+	
+	public float getHitV() {
+		return fHitV;
+	}
+	
+	
+	
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	private class TriangleIntersector implements RayIntersector {
+		
+		@Override
+		public float intersect(int i, Vec3 origin, Vec3 direction, float maxDistance) {
+			float dx = direction.x, dy = direction.y, dz = direction.z;
+			float ax = e1x[i], ay = e1y[i], az = e1z[i];
+			float bx = e2x[i], by = e2y[i], bz = e2z[i];
+			
+			// pvec = direction x e2
+			float px = dy * bz - dz * by;
+			float py = dz * bx - dx * bz;
+			float pz = dx * by - dy * bx;
+			
+			float det = ax * px + ay * py + az * pz;
+			if (det == 0.0f) {
+				// The ray is parallel to the triangle, or the triangle is degenerate.
+				return Float.POSITIVE_INFINITY;
+			}
+			float invDet = 1.0f / det;
+			
+			float tx = origin.x - v0x[i], ty = origin.y - v0y[i], tz = origin.z - v0z[i];
+			float u = (tx * px + ty * py + tz * pz) * invDet;
+			if (u < 0.0f || u > 1.0f) {
+				return Float.POSITIVE_INFINITY;
+			}
+			
+			// qvec = tvec x e1
+			float qx = ty * az - tz * ay;
+			float qy = tz * ax - tx * az;
+			float qz = tx * ay - ty * ax;
+			
+			float v = (dx * qx + dy * qy + dz * qz) * invDet;
+			if (v < 0.0f || u + v > 1.0f) {
+				return Float.POSITIVE_INFINITY;
+			}
+			
+			float t = (bx * qx + by * qy + bz * qz) * invDet;
+			if (t < 0.0f || t > maxDistance) {
+				return Float.POSITIVE_INFINITY;
+			}
+			
+			// The hierarchy keeps every hit it is given, since maxDistance is the nearest one so far.
+			fHitU = u;
+			fHitV = v;
+			
+			return t;
+		}
+	}
+}
@@ -17,7 +17,8 @@ import rosick.jglsdk.framework.Framework;
 import rosick.jglsdk.glm.Mat3;
 import rosick.jglsdk.glm.Mat4;
 import rosick.jglsdk.glm.Vec3;
-import rosick.jglsdk.glm.Vec4;
+import rosick.jglsdk.glutil.MatrixStack;
+import rosick.jglsdk.glutil.TransformNode;
 
 
 /**
@@ -35,6 +36,8 @@ import rosick.jglsdk.glm.Vec4;
  *	Wrist Raise		T				G
  *	Wrist Spin		Z				C
  *	Finger     		Q				E
+ *  
+ *  SPACE	- print how many matrices the last frame recomputed and reused.
  */
 public class Hierarchy04 extends LWJGLWindow {
 	
@@ -276,6 +279,10 @@ public class Hierarchy04 extends LWJGLWindow {
 		while (Keyboard.next()) {
 			if (Keyboard.getEventKeyState()) {
 				switch (Keyboard.getEventKey()) {
+				case Keyboard.KEY_SPACE:
+					System.out.printf("Matrices recomputed: %d, reused: %d.\n", TransformNode.getNumRecomputed(), TransformNode.getNumReused());
+					break;
+					
 				case Keyboard.KEY_ESCAPE:
 					leaveMainLoop();
 					break;
@@ -309,89 +316,6 @@ public class Hierarchy04 extends LWJGLWindow {
 
 	
 	
-	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
-	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
-	
-	private class MatrixStack {	
-		
-		private Mat4 currentMatrix;
-		private float matrices[];
-		private int firstIndexUsable;
-				
-		
-		MatrixStack() {
-			matrices = new float[160];														
-			currentMatrix = new Mat4(1);
-						
-			firstIndexUsable = 0;
-		}
-
-		
-		void push() {
-			if (firstIndexUsable == matrices.length) {
-				// Double the size of matrices[]
-				float temp[] = new float[matrices.length * 2];
-				System.arraycopy(matrices, 0, temp, 0, matrices.length);
-				matrices = temp;
-			}
-			
-			// Store the currentMatrix in the buffer
-			System.arraycopy(currentMatrix.get(), 0, matrices, firstIndexUsable, 16);		
-			firstIndexUsable += 16;
-		}
-
-		
-		void pop() {
-			// Pop the last matrix pushed in the buffer and set it as currentMatrix
-			firstIndexUsable -= 16;
-			System.arraycopy(matrices, firstIndexUsable, currentMatrix.get(), 0, 16);		
-		}
-
-		Mat4 top() {		
-			return currentMatrix;
-		}
-		
-		
-		void clear() {
-			currentMatrix.clear(1);
-
-			firstIndexUsable = 0;
-		}
-		
-		
-		void rotateX(float fAngDeg) {
-			currentMatrix.mul(new Mat4(Hierarchy04.rotateX(fAngDeg)));
-		}
-
-		void rotateY(float fAngDeg) {
-			currentMatrix.mul(new Mat4(Hierarchy04.rotateY(fAngDeg)));
-		}
-
-		void rotateZ(float fAngDeg) {
-			currentMatrix.mul(new Mat4(Hierarchy04.rotateZ(fAngDeg)));
-		}
-
-		
-		void scale(Vec3 scaleVec) {
-			Mat4 scaleMat = new Mat4(1.0f);
-			scaleMat.set(0, scaleVec.x);
-			scaleMat.set(5, scaleVec.y);
-			scaleMat.set(10, scaleVec.z);
-
-			currentMatrix.mul(scaleMat);
-		}
-
-		
-		void translate(Vec3 offsetVec) {
-			Mat4 translateMat = new Mat4(1.0f);
-			translateMat.setColumn(3, new Vec4(offsetVec, 1.0f));
-
-			currentMatrix.mul(translateMat);
-		}
-	}	
-	
-	
-	
 	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
 	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
 	
@@ -425,205 +349,126 @@ public class Hierarchy04 extends LWJGLWindow {
 		private float widthFinger = 0.5f;
 		private float angLowerFinger = 45;
 		
-		private MatrixStack modelToCameraStack = new MatrixStack();
+		// The joints of the armature; the blocks are the nodes actually drawn.
+		private TransformNode base = new TransformNode() {
+			
+			@Override
+			protected void computeLocalMatrix(MatrixStack modelMatrix) {
+				modelMatrix.translate(posBase);
+				modelMatrix.applyMatrix(new Mat4(rotateY(angBase)));
+			}
+		};
 		
+		private TransformNode upperArm = new TransformNode(base) {
+			
+			@Override
+			protected void computeLocalMatrix(MatrixStack modelMatrix) {
+				modelMatrix.applyMatrix(new Mat4(rotateX(angUpperArm)));
+			}
+		};
 		
-		void draw() {
-			modelToCameraStack.clear();
-
-			glUseProgram(theProgram);
-			glBindVertexArray(vao);
-
-			modelToCameraStack.translate(posBase);
-			modelToCameraStack.rotateY(angBase);
-
-			// Draw left base.
-			{
-				modelToCameraStack.push();
-				
-				modelToCameraStack.translate(posBaseLeft);
-				modelToCameraStack.scale(new Vec3(1.0f, 1.0f, scaleBaseZ));
-				
-				glUniformMatrix4(modelToCameraMatrixUnif, false, modelToCameraStack.top().fillAndFlipBuffer(tempFloatBuffer16));
-				glDrawElements(GL_TRIANGLES, indexData.length, GL_UNSIGNED_SHORT, 0);
-				
-				modelToCameraStack.pop();
+		private TransformNode lowerArm = new TransformNode(upperArm) {
+			
+			@Override
+			protected void computeLocalMatrix(MatrixStack modelMatrix) {
+				modelMatrix.translate(posLowerArm);
+				modelMatrix.applyMatrix(new Mat4(rotateX(angLowerArm)));
 			}
-
-			// Draw right base.
-			{
-				modelToCameraStack.push();
-				
-				modelToCameraStack.translate(posBaseRight);
-				modelToCameraStack.scale(new Vec3(1.0f, 1.0f, scaleBaseZ));
-				
-				glUniformMatrix4(modelToCameraMatrixUnif, false, modelToCameraStack.top().fillAndFlipBuffer(tempFloatBuffer16));
-				glDrawElements(GL_TRIANGLES, indexData.length, GL_UNSIGNED_SHORT, 0);
-				
-				modelToCameraStack.pop();
+		};
+		
+		private TransformNode wrist = new TransformNode(lowerArm) {
+			
+			@Override
+			protected void computeLocalMatrix(MatrixStack modelMatrix) {
+				modelMatrix.translate(posWrist);
+				modelMatrix.applyMatrix(new Mat4(rotateZ(angWristRoll)));
+				modelMatrix.applyMatrix(new Mat4(rotateX(angWristPitch)));
 			}
-
-			// Draw main arm.
-			drawUpperArm(modelToCameraStack);
-
-			glBindVertexArray(0);
-			glUseProgram(0);
-		}
+		};
 		
+		private TransformNode leftFinger = new TransformNode(wrist) {
+			
+			@Override
+			protected void computeLocalMatrix(MatrixStack modelMatrix) {
+				modelMatrix.translate(posLeftFinger);
+				modelMatrix.applyMatrix(new Mat4(rotateY(angFingerOpen)));
+			}
+		};
 		
-		private void drawUpperArm(MatrixStack modelToCameraStack) {
-			modelToCameraStack.push();
-			modelToCameraStack.rotateX(angUpperArm);
-
-			{
-				modelToCameraStack.push();
-				
-				modelToCameraStack.translate(new Vec3(0.0f, 0.0f, (sizeUpperArm / 2.0f) - 1.0f));
-				modelToCameraStack.scale(new Vec3(1.0f, 1.0f, sizeUpperArm / 2.0f));
-				
-				glUniformMatrix4(modelToCameraMatrixUnif, false, modelToCameraStack.top().fillAndFlipBuffer(tempFloatBuffer16));
-				glDrawElements(GL_TRIANGLES, indexData.length, GL_UNSIGNED_SHORT, 0);
-				
-				modelToCameraStack.pop();
+		private TransformNode leftLowerFinger = new TransformNode(leftFinger) {
+			
+			@Override
+			protected void computeLocalMatrix(MatrixStack modelMatrix) {
+				modelMatrix.translate(new Vec3(0.0f, 0.0f, lenFinger));
+				modelMatrix.applyMatrix(new Mat4(rotateY(-angLowerFinger)));
 			}
-
-			drawLowerArm(modelToCameraStack);
-
-			modelToCameraStack.pop();
-		}
+		};
 		
-		private void drawLowerArm(MatrixStack modelToCameraStack) {
-			modelToCameraStack.push();
+		private TransformNode rightFinger = new TransformNode(wrist) {
 			
-			modelToCameraStack.translate(posLowerArm);
-			modelToCameraStack.rotateX(angLowerArm);
-
-			{
-				modelToCameraStack.push();
-				
-				modelToCameraStack.translate(new Vec3(0.0f, 0.0f, lenLowerArm / 2.0f));
-				modelToCameraStack.scale(new Vec3(widthLowerArm / 2.0f, widthLowerArm / 2.0f, lenLowerArm / 2.0f));
-				
-				glUniformMatrix4(modelToCameraMatrixUnif, false, modelToCameraStack.top().fillAndFlipBuffer(tempFloatBuffer16));
-				glDrawElements(GL_TRIANGLES, indexData.length, GL_UNSIGNED_SHORT, 0);
-				
-				modelToCameraStack.pop();
+			@Override
+			protected void computeLocalMatrix(MatrixStack modelMatrix) {
+				modelMatrix.translate(posRightFinger);
+				modelMatrix.applyMatrix(new Mat4(rotateY(-angFingerOpen)));
 			}
-
-			drawWrist(modelToCameraStack);
-
-			modelToCameraStack.pop();
-		}
+		};
 		
-		private void drawWrist(MatrixStack modelToCameraStack) {
-			modelToCameraStack.push();
+		private TransformNode rightLowerFinger = new TransformNode(rightFinger) {
 			
-			modelToCameraStack.translate(posWrist);
-			modelToCameraStack.rotateZ(angWristRoll);
-			modelToCameraStack.rotateX(angWristPitch);
-
-			{
-				modelToCameraStack.push();
-				
-				modelToCameraStack.scale(new Vec3(widthWrist / 2.0f, widthWrist/ 2.0f, lenWrist / 2.0f));
-				
-				glUniformMatrix4(modelToCameraMatrixUnif, false, modelToCameraStack.top().fillAndFlipBuffer(tempFloatBuffer16));
-				glDrawElements(GL_TRIANGLES, indexData.length, GL_UNSIGNED_SHORT, 0);
+			@Override
+			protected void computeLocalMatrix(MatrixStack modelMatrix) {
+				modelMatrix.translate(new Vec3(0.0f, 0.0f, lenFinger));
+				modelMatrix.applyMatrix(new Mat4(rotateY(angLowerFinger)));
+			}
+		};
+		
+		private TransformNode blocks[] = {
+				new Block(base, posBaseLeft, new Vec3(1.0f, 1.0f, scaleBaseZ)),
+				new Block(base, posBaseRight, new Vec3(1.0f, 1.0f, scaleBaseZ)),
+				new Block(upperArm, new Vec3(0.0f, 0.0f, (sizeUpperArm / 2.0f) - 1.0f), new Vec3(1.0f, 1.0f, sizeUpperArm / 2.0f)),
+				new Block(lowerArm, new Vec3(0.0f, 0.0f, lenLowerArm / 2.0f), new Vec3(widthLowerArm / 2.0f, widthLowerArm / 2.0f, lenLowerArm / 2.0f)),
+				new Block(wrist, new Vec3(0.0f), new Vec3(widthWrist / 2.0f, widthWrist/ 2.0f, lenWrist / 2.0f)),
+				new Block(leftFinger, new Vec3(0.0f, 0.0f, lenFinger / 2.0f), new Vec3(widthFinger / 2.0f, widthFinger/ 2.0f, lenFinger / 2.0f)),
+				new Block(leftLowerFinger, new Vec3(0.0f, 0.0f, lenFinger / 2.0f), new Vec3(widthFinger / 2.0f, widthFinger/ 2.0f, lenFinger / 2.0f)),
+				new Block(rightFinger, new Vec3(0.0f, 0.0f, lenFinger / 2.0f), new Vec3(widthFinger / 2.0f, widthFinger/ 2.0f, lenFinger / 2.0f)),
+				new Block(rightLowerFinger, new Vec3(0.0f, 0.0f, lenFinger / 2.0f), new Vec3(widthFinger / 2.0f, widthFinger/ 2.0f, lenFinger / 2.0f))
+		};
+		
+		
+		private class Block extends TransformNode {
+			private Vec3 offset;
+			private Vec3 scale;
+			
+			
+			Block(TransformNode joint, Vec3 offset, Vec3 scale) {
+				super(joint);
 				
-				modelToCameraStack.pop();
+				this.offset = offset;
+				this.scale = scale;
+			}
+			
+			
+			@Override
+			protected void computeLocalMatrix(MatrixStack modelMatrix) {
+				modelMatrix.translate(offset);
+				modelMatrix.scale(scale);
 			}
-
-			drawFingers(modelToCameraStack);
-
-			modelToCameraStack.pop();
 		}
 		
-		private void drawFingers(MatrixStack modelToCameraStack) {
-			// Draw left finger
-			modelToCameraStack.push();
-			
-			modelToCameraStack.translate(posLeftFinger);
-			modelToCameraStack.rotateY(angFingerOpen);
+		
+		void draw() {
+			TransformNode.resetCounters();
 
-			{
-				modelToCameraStack.push();
-				
-				modelToCameraStack.translate(new Vec3(0.0f, 0.0f, lenFinger / 2.0f));
-				modelToCameraStack.scale(new Vec3(widthFinger / 2.0f, widthFinger/ 2.0f, lenFinger / 2.0f));
-				
-				glUniformMatrix4(modelToCameraMatrixUnif, false, modelToCameraStack.top().fillAndFlipBuffer(tempFloatBuffer16));
+			glUseProgram(theProgram);
+			glBindVertexArray(vao);
+			
+			for (TransformNode block : blocks) {
+				glUniformMatrix4(modelToCameraMatrixUnif, false, block.getWorldMatrix().fillAndFlipBuffer(tempFloatBuffer16));
 				glDrawElements(GL_TRIANGLES, indexData.length, GL_UNSIGNED_SHORT, 0);
-				
-				modelToCameraStack.pop();
-			}
-
-			{
-				// Draw left lower finger
-				modelToCameraStack.push();
-				
-				modelToCameraStack.translate(new Vec3(0.0f, 0.0f, lenFinger));
-				modelToCameraStack.rotateY(-angLowerFinger);
-
-				{
-					modelToCameraStack.push();
-					
-					modelToCameraStack.translate(new Vec3(0.0f, 0.0f, lenFinger / 2.0f));
-					modelToCameraStack.scale(new Vec3(widthFinger / 2.0f, widthFinger/ 2.0f, lenFinger / 2.0f));
-					
-					glUniformMatrix4(modelToCameraMatrixUnif, false, modelToCameraStack.top().fillAndFlipBuffer(tempFloatBuffer16));
-					glDrawElements(GL_TRIANGLES, indexData.length, GL_UNSIGNED_SHORT, 0);
-					
-					modelToCameraStack.pop();
-				}
-
-				modelToCameraStack.pop();
 			}
 
-			modelToCameraStack.pop();
-
-			// Draw right finger
-			{
-				modelToCameraStack.push();
-				
-				modelToCameraStack.translate(posRightFinger);
-				modelToCameraStack.rotateY(-angFingerOpen);
-	
-				{
-					modelToCameraStack.push();
-					
-					modelToCameraStack.translate(new Vec3(0.0f, 0.0f, lenFinger / 2.0f));
-					modelToCameraStack.scale(new Vec3(widthFinger / 2.0f, widthFinger/ 2.0f, lenFinger / 2.0f));
-					
-					glUniformMatrix4(modelToCameraMatrixUnif, false, modelToCameraStack.top().fillAndFlipBuffer(tempFloatBuffer16));
-					glDrawElements(GL_TRIANGLES, indexData.length, GL_UNSIGNED_SHORT, 0);
-					
-					modelToCameraStack.pop();
-				}
-	
-				{
-					// Draw right lower finger
-					modelToCameraStack.push();
-					
-					modelToCameraStack.translate(new Vec3(0.0f, 0.0f, lenFinger));
-					modelToCameraStack.rotateY(angLowerFinger);
-	
-					{
-						modelToCameraStack.push();
-						
-						modelToCameraStack.translate(new Vec3(0.0f, 0.0f, lenFinger / 2.0f));
-						modelToCameraStack.scale(new Vec3(widthFinger / 2.0f, widthFinger/ 2.0f, lenFinger / 2.0f));
-						
-						glUniformMatrix4(modelToCameraMatrixUnif, false, modelToCameraStack.top().fillAndFlipBuffer(tempFloatBuffer16));
-						glDrawElements(GL_TRIANGLES, indexData.length, GL_UNSIGNED_SHORT, 0);
-						
-						modelToCameraStack.pop();
-					}
-	
-					modelToCameraStack.pop();
-				}
-	
-				modelToCameraStack.pop();
-			}
+			glBindVertexArray(0);
+			glUseProgram(0);
 		}
 		
 		
@@ -632,6 +477,7 @@ public class Hierarchy04 extends LWJGLWindow {
 
 			angBase += bIncrement ? STANDARD_ANGLE_INCREMENT * lastFrameDuration : -STANDARD_ANGLE_INCREMENT * lastFrameDuration;
 			angBase = angBase % 360.0f;
+			base.invalidate();
 		}
 
 		void adjUpperArm(boolean bIncrement) {
@@ -639,6 +485,7 @@ public class Hierarchy04 extends LWJGLWindow {
 
 			angUpperArm += bIncrement ? STANDARD_ANGLE_INCREMENT * lastFrameDuration : -STANDARD_ANGLE_INCREMENT * lastFrameDuration;
 			angUpperArm = clamp(angUpperArm, -90.0f, 0.0f);
+			upperArm.invalidate();
 		}
 
 		void adjLowerArm(boolean bIncrement) {
@@ -646,6 +493,7 @@ public class Hierarchy04 extends LWJGLWindow {
 
 			angLowerArm += bIncrement ? STANDARD_ANGLE_INCREMENT * lastFrameDuration : -STANDARD_ANGLE_INCREMENT * lastFrameDuration;
 			angLowerArm = clamp(angLowerArm, 0.0f, 146.25f);
+			lowerArm.invalidate();
 		}
 
 		void adjWristPitch(boolean bIncrement) {
@@ -653,6 +501,7 @@ public class Hierarchy04 extends LWJGLWindow {
 
 			angWristPitch += bIncrement ? STANDARD_ANGLE_INCREMENT * lastFrameDuration : -STANDARD_ANGLE_INCREMENT * lastFrameDuration;
 			angWristPitch = clamp(angWristPitch, 0.0f, 90.0f);
+			wrist.invalidate();
 		}
 
 		void adjWristRoll(boolean bIncrement) {
@@ -660,6 +509,7 @@ public class Hierarchy04 extends LWJGLWindow {
 
 			angWristRoll += bIncrement ? STANDARD_ANGLE_INCREMENT * lastFrameDuration : -STANDARD_ANGLE_INCREMENT * lastFrameDuration;
 			angWristRoll = angWristRoll % 360.0f;
+			wrist.invalidate();
 		}
 
 		void adjFingerOpen(boolean bIncrement) {
@@ -667,6 +517,8 @@ public class Hierarchy04 extends LWJGLWindow {
 
 			angFingerOpen += bIncrement ? SMALL_ANGLE_INCREMENT * lastFrameDuration : -SMALL_ANGLE_INCREMENT * lastFrameDuration;
 			angFingerOpen = clamp(angFingerOpen, 9.0f, 90.0f);
+			leftFinger.invalidate();
+			rightFinger.invalidate();
 		}
 	}
 	
@@ -15,11 +15,13 @@ import org.lwjgl.input.Keyboard;
 
 import rosick.LWJGLWindow;
 import rosick.jglsdk.framework.Framework;
+import rosick.jglsdk.framework.InstancedMeshRenderer;
 import rosick.jglsdk.framework.Mesh;
 import rosick.jglsdk.glm.Glm;
 import rosick.jglsdk.glm.Mat4;
 import rosick.jglsdk.glm.Vec3;
 import rosick.jglsdk.glm.Vec4;
+import rosick.jglsdk.glutil.FrustumCuller;
 import rosick.jglsdk.glutil.MatrixStack;
 
 
@@ -41,6 +43,10 @@ import rosick.jglsdk.glutil.MatrixStack;
  * 
  * In addition, if you hold down the SHIFT key while pressing any of the last six keys, then 
  * 		the affected control will be much slower.
+ * 
+ * T		- switch between one instanced draw for each mesh and color of the trees and columns, and a
+ * 			draw for every object.
+ * P		- print how many draw calls the last frame made, and how many objects it culled.
  */
 public class WorldWithUBO02 extends LWJGLWindow {
 
@@ -71,6 +77,7 @@ public class WorldWithUBO02 extends LWJGLWindow {
 	private ProgramData uniformColor;
 	private ProgramData objectColor;
 	private ProgramData uniformColorTint;
+	private ProgramData uniformColorTintInstanced;
 	
 	private int g_GlobalMatricesUBO;
 	private float g_fzNear = 1.0f;
@@ -106,6 +113,7 @@ public class WorldWithUBO02 extends LWJGLWindow {
 		uniformColor = 		loadProgram(TUTORIAL_DATAPATH + "PosOnlyWorldTransformUBO.vert",		TUTORIAL_DATAPATH + "ColorUniform.frag");
 		objectColor = 		loadProgram(TUTORIAL_DATAPATH + "PosColorWorldTransformUBO.vert", 	TUTORIAL_DATAPATH + "ColorPassthrough.frag");
 		uniformColorTint = 	loadProgram(TUTORIAL_DATAPATH + "PosColorWorldTransformUBO.vert", 	TUTORIAL_DATAPATH + "ColorMultUniform.frag");
+		uniformColorTintInstanced = loadProgram(TUTORIAL_DATAPATH + "PosColorInstancedWorldTransformUBO.vert", TUTORIAL_DATAPATH + "ColorMultUniform.frag");
 		
 		g_GlobalMatricesUBO = glGenBuffers();	       
 		glBindBuffer(GL_UNIFORM_BUFFER, g_GlobalMatricesUBO);
@@ -129,6 +137,8 @@ public class WorldWithUBO02 extends LWJGLWindow {
 			exception.printStackTrace();
 			System.exit(0);
 		}
+		
+		initializeTintedBatches();
 
 		glEnable(GL_CULL_FACE);
 		glCullFace(GL_BACK);
@@ -215,6 +225,15 @@ public class WorldWithUBO02 extends LWJGLWindow {
 					g_bDrawLookatPoint = !g_bDrawLookatPoint;
 					break;
 					
+				case Keyboard.KEY_T:
+					g_bInstancing = !g_bInstancing;
+					System.out.printf(g_bInstancing ? "Instanced rendering\n" : "A draw for every object\n");
+					break;
+					
+				case Keyboard.KEY_P:
+					System.out.printf("Draw calls in the last frame: %d, objects culled: %d.\n", Mesh.getNumDrawCalls(), g_iNumCulled);
+					break;
+					
 				case Keyboard.KEY_ESCAPE:
 					leaveMainLoop();
 					break;
@@ -234,12 +253,17 @@ public class WorldWithUBO02 extends LWJGLWindow {
 		glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
 		glClearDepth(1.0f);
 		glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+		
+		Mesh.resetCounters();
+		instancedRenderer.clear();
+		g_iNumCulled = 0;
 
 		{
 			final Vec3 camPos = resolveCamPosition();
 	
 			camMatrix.clear();
 			camMatrix.setMatrix(calcLookAtMatrix(camPos, g_camTarget, new Vec3(0.0f, 1.0f, 0.0f)));
+			frustumCuller.setMatrices(g_cameraToClip, camMatrix.top());
 			
 			glBindBuffer(GL_UNIFORM_BUFFER, g_GlobalMatricesUBO);
 			glBufferSubData(GL_UNIFORM_BUFFER, MAT_SIZE, camMatrix.top().fillAndFlipBuffer(tempFloatBuffer16));
@@ -275,6 +299,11 @@ public class WorldWithUBO02 extends LWJGLWindow {
 				
 				modelMatrix.pop();
 			}
+			
+			// The trees and the columns, added to the batches by drawForest() and drawParthenon().
+			if (g_bInstancing) {
+				renderTintedBatches();
+			}
 					
 			if (g_bDrawLookatPoint) {
 				glDisable(GL_DEPTH_TEST);
@@ -303,6 +332,7 @@ public class WorldWithUBO02 extends LWJGLWindow {
 	protected void reshape(int width, int height) {
 		MatrixStack persMatrix = new MatrixStack();
 		persMatrix.perspective(45.0f, (width / (float) height), g_fzNear, g_fzFar);
+		g_cameraToClip = new Mat4(persMatrix.top());
 		
 		glBindBuffer(GL_UNIFORM_BUFFER, g_GlobalMatricesUBO);
 		glBufferSubData(GL_UNIFORM_BUFFER, 0, persMatrix.top().fillAndFlipBuffer(tempFloatBuffer16));
@@ -325,11 +355,7 @@ public class WorldWithUBO02 extends LWJGLWindow {
 			modelMatrix.scale(1.0f, fTrunkHeight, 1.0f);
 			modelMatrix.translate(0.0f, 0.5f, 0.0f);
 
-			glUseProgram(uniformColorTint.theProgram);
-			glUniformMatrix4(uniformColorTint.modelToWorldMatrixUnif, false, modelMatrix.top().fillAndFlipBuffer(tempFloatBuffer16));
-			glUniform4f(uniformColorTint.baseColorUnif, 0.694f, 0.4f, 0.106f, 1.0f);
-			g_pCylinderMesh.render();
-			glUseProgram(0);
+			drawTinted(modelMatrix, g_iTrunkBatch);
 			
 			modelMatrix.pop();
 		}
@@ -341,11 +367,7 @@ public class WorldWithUBO02 extends LWJGLWindow {
 			modelMatrix.translate(0.0f, fTrunkHeight, 0.0f);
 			modelMatrix.scale(3.0f, fConeHeight, 3.0f);
 
-			glUseProgram(uniformColorTint.theProgram);
-			glUniformMatrix4(uniformColorTint.modelToWorldMatrixUnif, false, modelMatrix.top().fillAndFlipBuffer(tempFloatBuffer16));
-			glUniform4f(uniformColorTint.baseColorUnif, 0.0f, 1.0f, 0.0f, 1.0f);
-			g_pConeMesh.render();
-			glUseProgram(0);
+			drawTinted(modelMatrix, g_iTreetopBatch);
 			
 			modelMatrix.pop();
 		}
@@ -368,11 +390,7 @@ public class WorldWithUBO02 extends LWJGLWindow {
 			modelMatrix.scale(1.0f, g_fColumnBaseHeight, 1.0f);
 			modelMatrix.translate(0.0f, 0.5f, 0.0f);
 
-			glUseProgram(uniformColorTint.theProgram);
-			glUniformMatrix4(uniformColorTint.modelToWorldMatrixUnif, false, modelMatrix.top().fillAndFlipBuffer(tempFloatBuffer16));
-			glUniform4f(uniformColorTint.baseColorUnif, 1.0f, 1.0f, 1.0f, 1.0f);
-			g_pCubeTintMesh.render();
-			glUseProgram(0);
+			drawTinted(modelMatrix, g_iColumnBaseBatch);
 			
 			modelMatrix.pop();
 		}
@@ -385,11 +403,7 @@ public class WorldWithUBO02 extends LWJGLWindow {
 			modelMatrix.scale(1.0f, g_fColumnBaseHeight, 1.0f);
 			modelMatrix.translate(0.0f, 0.5f, 0.0f);
 
-			glUseProgram(uniformColorTint.theProgram);
-			glUniformMatrix4(uniformColorTint.modelToWorldMatrixUnif, false, modelMatrix.top().fillAndFlipBuffer(tempFloatBuffer16));
-			glUniform4f(uniformColorTint.baseColorUnif, 0.9f, 0.9f, 0.9f, 0.9f);
-			g_pCubeTintMesh.render();
-			glUseProgram(0);
+			drawTinted(modelMatrix, g_iMarbleCubeBatch);
 			
 			modelMatrix.pop();
 		}
@@ -402,11 +416,7 @@ public class WorldWithUBO02 extends LWJGLWindow {
 			modelMatrix.scale(0.8f, fHeight - (g_fColumnBaseHeight * 2.0f), 0.8f);
 			modelMatrix.translate(0.0f, 0.5f, 0.0f);
 
-			glUseProgram(uniformColorTint.theProgram);
-			glUniformMatrix4(uniformColorTint.modelToWorldMatrixUnif, false, modelMatrix.top().fillAndFlipBuffer(tempFloatBuffer16));
-			glUniform4f(uniformColorTint.baseColorUnif, 0.9f, 0.9f, 0.9f, 0.9f);
-			g_pCylinderMesh.render();
-			glUseProgram(0);
+			drawTinted(modelMatrix, g_iMarbleCylinderBatch);
 			
 			modelMatrix.pop();
 		}
@@ -437,11 +447,7 @@ public class WorldWithUBO02 extends LWJGLWindow {
 			modelMatrix.scale(g_fParthenonWidth, g_fParthenonBaseHeight, g_fParthenonLength);
 			modelMatrix.translate(0.0f, 0.5f, 0.0f);
 
-			glUseProgram(uniformColorTint.theProgram);
-			glUniformMatrix4(uniformColorTint.modelToWorldMatrixUnif, false, modelMatrix.top().fillAndFlipBuffer(tempFloatBuffer16));
-			glUniform4f(uniformColorTint.baseColorUnif, 0.9f, 0.9f, 0.9f, 0.9f);
-			g_pCubeTintMesh.render();
-			glUseProgram(0);
+			drawTinted(modelMatrix, g_iMarbleCubeBatch);
 			
 			modelMatrix.pop();
 		}
@@ -454,11 +460,7 @@ public class WorldWithUBO02 extends LWJGLWindow {
 			modelMatrix.scale(g_fParthenonWidth, g_fParthenonTopHeight, g_fParthenonLength);
 			modelMatrix.translate(0.0f, 0.5f, 0.0f);
 
-			glUseProgram(uniformColorTint.theProgram);
-			glUniformMatrix4(uniformColorTint.modelToWorldMatrixUnif, false, modelMatrix.top().fillAndFlipBuffer(tempFloatBuffer16));
-			glUniform4f(uniformColorTint.baseColorUnif, 0.9f, 0.9f, 0.9f, 0.9f);
-			g_pCubeTintMesh.render();
-			glUseProgram(0);
+			drawTinted(modelMatrix, g_iMarbleCubeBatch);
 			
 			modelMatrix.pop();
 		}
@@ -680,6 +682,85 @@ public class WorldWithUBO02 extends LWJGLWindow {
 
 
 
+	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
+	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */
+	
+	// The mat4 instance attribute of PosColorInstancedWorldTransformUBO.vert.
+	private final int g_iInstanceMatrixAttrib = 4;
+	
+	private InstancedMeshRenderer instancedRenderer;
+	private boolean g_bInstancing = true;
+	
+	private Mesh g_tintedMeshes[] = new Mesh[5];
+	private float g_tintedColors[][] = new float[5][];
+	private int g_iTrunkBatch, g_iTreetopBatch, g_iColumnBaseBatch, g_iMarbleCubeBatch, g_iMarbleCylinderBatch;
+	
+	// The tinted objects are culled with the bounding spheres of their meshes.
+	private FrustumCuller frustumCuller = new FrustumCuller();
+	private Mat4 g_cameraToClip = new Mat4(1.0f);
+	private Vec3 tempSphereCenter = new Vec3();
+	private int g_iNumCulled;
+	
+	
+	private void initializeTintedBatches() {
+		int iNumColumns = max1 * 2 + (max2 - 1) * 2;
+		
+		instancedRenderer = new InstancedMeshRenderer(g_forest.length * 2 + iNumColumns * 3 + 2, g_iInstanceMatrixAttrib);
+		
+		g_iTrunkBatch = 			addTintedBatch(g_pCylinderMesh, g_forest.length,	0.694f, 0.4f, 0.106f, 1.0f);
+		g_iTreetopBatch = 			addTintedBatch(g_pConeMesh, 	g_forest.length,	0.0f, 1.0f, 0.0f, 1.0f);
+		g_iColumnBaseBatch = 		addTintedBatch(g_pCubeTintMesh, iNumColumns, 		1.0f, 1.0f, 1.0f, 1.0f);
+		g_iMarbleCubeBatch = 		addTintedBatch(g_pCubeTintMesh, iNumColumns + 2, 	0.9f, 0.9f, 0.9f, 0.9f);
+		g_iMarbleCylinderBatch = 	addTintedBatch(g_pCylinderMesh, iNumColumns, 		0.9f, 0.9f, 0.9f, 0.9f);
+	}
+	
+	private int addTintedBatch(Mesh mesh, int maxInstances, float r, float g, float b, float a) {
+		int iBatch = instancedRenderer.addBatch(mesh, maxInstances);
+		g_tintedMeshes[iBatch] = mesh;
+		g_tintedColors[iBatch] = new float[] {r, g, b, a};
+		
+		return iBatch;
+	}
+	
+	
+	// Adds the object to its batch, or draws it right away, if it is inside the view frustum.
+	private void drawTinted(MatrixStack modelMatrix, int iBatch) {
+		Mesh mesh = g_tintedMeshes[iBatch];
+		float fRadius = FrustumCuller.transformSphere(modelMatrix.top(), mesh.getBoundingSphereCenter(), mesh.getBoundingSphereRadius(), tempSphereCenter);
+		if (!frustumCuller.isSphereVisible(tempSphereCenter, fRadius)) {
+			g_iNumCulled++;
+			return;
+		}
+		
+		if (g_bInstancing) {
+			instancedRenderer.add(iBatch, modelMatrix.top());
+			return;
+		}
+		
+		float color[] = g_tintedColors[iBatch];
+		
+		glUseProgram(uniformColorTint.theProgram);
+		glUniformMatrix4(uniformColorTint.modelToWorldMatrixUnif, false, modelMatrix.top().fillAndFlipBuffer(tempFloatBuffer16));
+		glUniform4f(uniformColorTint.baseColorUnif, color[0], color[1], color[2], color[3]);
+		mesh.render();
+		glUseProgram(0);
+	}
+	
+	private void renderTintedBatches() {
+		instancedRenderer.upload();
+		
+		glUseProgram(uniformColorTintInstanced.theProgram);
+		for (int iBatch = 0; iBatch < instancedRenderer.getNumBatches(); iBatch++) {
+			float color[] = g_tintedColors[iBatch];
+			
+			glUniform4f(uniformColorTintInstanced.baseColorUnif, color[0], color[1], color[2], color[3]);
+			instancedRenderer.render(iBatch);
+		}
+		glUseProgram(0);
+	}
+	
+	
+	
 	/* * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * *
 	 * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * * */	
 	
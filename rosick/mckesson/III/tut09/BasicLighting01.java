@@ -18,14 +18,19 @@ import rosick.LWJGLWindow;
 import rosick.PortingUtils.BufferableData;
 import rosick.jglsdk.framework.Framework;
 import rosick.jglsdk.framework.Mesh;
+import rosick.jglsdk.framework.MeshCache;
+import rosick.jglsdk.framework.MeshData;
 import rosick.jglsdk.framework.MousePole;
 import rosick.jglsdk.glm.Mat3;
 import rosick.jglsdk.glm.Mat4;
 import rosick.jglsdk.glm.Quaternion;
+import rosick.jglsdk.glm.Vec2;
 import rosick.jglsdk.glm.Vec3;
 import rosick.jglsdk.glm.Vec4;
 import rosick.jglsdk.glutil.MatrixStack;
 import rosick.jglsdk.glutil.MousePoles.*;
+import rosick.jglsdk.glutil.ScenePicker;
+import rosick.jglsdk.glutil.TriangleBvh;
 
 
 /**
@@ -41,6 +46,7 @@ import rosick.jglsdk.glutil.MousePoles.*;
  * LEFT	  CLICKING and DRAGGING			- rotate the camera around the target point, both horizontally and vertically.
  * LEFT	  CLICKING and DRAGGING + CTRL	- rotate the camera around the target point, either horizontally or vertically.
  * LEFT	  CLICKING and DRAGGING + ALT	- change the camera's up direction.
+ * RIGHT  CLICKING on a cylinder			- select the cylinder rotated by the object controls below.
  * RIGHT  CLICKING and DRAGGING			- rotate the object horizontally and vertically, relative to the current camera view.
  * RIGHT  CLICKING and DRAGGING + CTRL	- rotate the object horizontally or vertically only, relative to the current camera view.
  * RIGHT  CLICKING and DRAGGING + ALT	- spin the object.
@@ -121,8 +127,18 @@ public class BasicLighting01 extends LWJGLWindow {
 		initializeProgram();
 		
 		try {
-			g_pCylinderMesh = new Mesh(TUTORIAL_DATAPATH + "UnitCylinder.xml");
+			MeshData cylinderData = MeshCache.load(TUTORIAL_DATAPATH + "UnitCylinder.xml");
+			g_pCylinderMesh = new Mesh(cylinderData);
 			g_pPlaneMesh 	= new Mesh(TUTORIAL_DATAPATH + "LargePlane.xml");
+			
+			// Only the cylinders can be picked. The pole computes the matrix of every one in turn.
+			TriangleBvh cylinderBvh = cylinderData.buildTriangleBvh();
+			for (int iCylinder = 0; iCylinder < g_cylinders.length; iCylinder++) {
+				g_objtPole.setObjectData(g_cylinders[iCylinder]);
+				g_cylinderMatrices[iCylinder] = g_objtPole.calcMatrix();
+				g_picker.add(cylinderBvh, g_cylinderMatrices[iCylinder]);
+			}
+			g_objtPole.setObjectData(g_cylinders[g_iSelectedCylinder]);
 		} catch (Exception exception) {
 			exception.printStackTrace();
 			System.exit(0);
@@ -157,6 +173,10 @@ public class BasicLighting01 extends LWJGLWindow {
 			if (eventButton != -1) {
 				if (Mouse.getEventButtonState()) {
 					// Mouse down
+					if (eventButton == 1) {
+						pickCylinder(Mouse.getX(), Mouse.getY());
+					}
+					
 					MousePole.forwardMouseButton(g_viewPole, eventButton, true, Mouse.getX(), Mouse.getY());			
 					MousePole.forwardMouseButton(g_objtPole, eventButton, true, Mouse.getX(), Mouse.getY());	
 				} else {
@@ -232,12 +252,16 @@ public class BasicLighting01 extends LWJGLWindow {
 				modelMatrix.pop();
 			}
 
-			// Render the Cylinder
-			{
+			// Render the cylinders, the selected one where the ObjectPole puts it.
+			for (int iCylinder = 0; iCylinder < g_cylinders.length; iCylinder++) {
 				modelMatrix.push();
-	
-				modelMatrix.applyMatrix(g_objtPole.calcMatrix());
-
+				
+				if (iCylinder == g_iSelectedCylinder) {
+					modelMatrix.applyMatrix(g_objtPole.calcMatrix());
+				} else {
+					modelMatrix.applyMatrix(g_cylinderMatrices[iCylinder]);
+				}
+				
 				if (g_bDrawColoredCyl) {
 					glUseProgram(g_VertexDiffuseColor.theProgram);
 					glUniformMatrix4(g_VertexDiffuseColor.modelToCameraMatrixUnif, false, modelMatrix.top().fillAndFlipBuffer(tempFloatBuffer16));
@@ -268,6 +292,8 @@ public class BasicLighting01 extends LWJGLWindow {
 	protected void reshape(int width, int height) {	
 		MatrixStack persMatrix = new MatrixStack();
 		persMatrix.perspective(45.0f, (width / (float) height), g_fzNear, g_fzFar);
+		g_cameraToClip = new Mat4(persMatrix.top());
+		g_viewport = new Vec4(0.0f, 0.0f, width, height);
 		
 		ProjectionBlock projData = new ProjectionBlock();
 		projData.cameraToClipMatrix = persMatrix.top();
@@ -327,4 +353,34 @@ public class BasicLighting01 extends LWJGLWindow {
 
 	private ViewPole g_viewPole = new ViewPole(g_initialViewData, g_viewScale, MouseButtons.MB_LEFT_BTN);
 	private ObjectPole g_objtPole = new ObjectPole(g_initialObjectData, 90.0f / 250.0f, MouseButtons.MB_RIGHT_BTN, g_viewPole);
+	
+	
+	// Picking
+	
+	private ObjectData g_cylinders[] = {
+			g_initialObjectData,
+			new ObjectData(new Vec3(-1.5f, 0.5f, 0.0f), new Quaternion(1.0f, 0.0f, 0.0f, 0.0f)),
+			new ObjectData(new Vec3(1.5f, 0.5f, 0.0f), new Quaternion(1.0f, 0.0f, 0.0f, 0.0f))
+	};
+	
+	// The matrices of the cylinders not selected, as left by the ObjectPole.
+	private Mat4 g_cylinderMatrices[] = new Mat4[g_cylinders.length];
+	private int g_iSelectedCylinder = 0;
+	
+	private ScenePicker g_picker = new ScenePicker();
+	private Mat4 g_cameraToClip = new Mat4(1.0f);
+	private Vec4 g_viewport = new Vec4();
+	
+	
+	private void pickCylinder(int x, int y) {
+		// The selected cylinder may have been rotated since the last pick.
+		g_picker.setModelToWorld(g_iSelectedCylinder, g_objtPole.calcMatrix());
+		
+		int iCylinder = g_picker.pick(new Vec2(x, y), g_viewport, g_viewPole.calcMatrix(), g_cameraToClip);
+		if (iCylinder != -1 && iCylinder != g_iSelectedCylinder) {
+			g_cylinderMatrices[g_iSelectedCylinder] = g_objtPole.calcMatrix();
+			g_objtPole.setObjectData(g_cylinders[iCylinder]);
+			g_iSelectedCylinder = iCylinder;
+		}
+	}
 }
\ No newline at end of file
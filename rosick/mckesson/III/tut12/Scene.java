@@ -13,6 +13,7 @@ import org.lwjgl.BufferUtils;
 
 import rosick.PortingUtils.BufferableData;
 import rosick.jglsdk.framework.Mesh;
+import rosick.jglsdk.framework.MeshLoader;
 import rosick.jglsdk.glm.Glm;
 import rosick.jglsdk.glm.Mat3;
 import rosick.jglsdk.glm.Vec3;
@@ -71,11 +72,18 @@ public abstract class Scene {
 
 	
 	Scene(String basepath) {
-		m_pTerrainMesh 	= new Mesh(basepath + "Ground.xml");
-		m_pCubeMesh 	= new Mesh(basepath + "UnitCube.xml");
-		m_pTetraMesh 	= new Mesh(basepath + "UnitTetrahedron.xml");
-		m_pCylMesh 		= new Mesh(basepath + "UnitCylinder.xml");
-		m_pSphereMesh 	= new Mesh(basepath + "UnitSphere.xml");
+		Mesh meshes[] = MeshLoader.loadAll(
+				basepath + "Ground.xml",
+				basepath + "UnitCube.xml",
+				basepath + "UnitTetrahedron.xml",
+				basepath + "UnitCylinder.xml",
+				basepath + "UnitSphere.xml");
+		
+		m_pTerrainMesh 	= meshes[0];
+		m_pCubeMesh 	= meshes[1];
+		m_pTetraMesh 	= meshes[2];
+		m_pCylMesh 		= meshes[3];
+		m_pSphereMesh 	= meshes[4];
 		
 		// Align the size of each MaterialBlock to the uniform buffer alignment.
 		int uniformBufferAlignSize = glGetInteger(GL_UNIFORM_BUFFER_OFFSET_ALIGNMENT);
@@ -127,6 +135,8 @@ public abstract class Scene {
 	
 	
 	void draw(MatrixStack modelMatrix, int materialBlockIndex, float alphaTetra) {
+		Mesh.beginBatch();
+		
 		// Render the ground plane.
 		{
 			modelMatrix.push();
@@ -205,6 +215,8 @@ public abstract class Scene {
 			
 			modelMatrix.pop();
 		}
+		
+		Mesh.endBatch();
 	}
 		
 	
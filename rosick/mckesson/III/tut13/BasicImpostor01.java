@@ -19,6 +19,7 @@ import rosick.LWJGLWindow;
 import rosick.PortingUtils.BufferableData;
 import rosick.jglsdk.framework.Framework;
 import rosick.jglsdk.framework.Mesh;
+import rosick.jglsdk.framework.MeshLoader;
 import rosick.jglsdk.framework.MousePole;
 import rosick.jglsdk.framework.Timer;
 import rosick.jglsdk.framework.UniformBlockArray;
@@ -207,9 +208,14 @@ public class BasicImpostor01 extends LWJGLWindow {
 		initializePrograms();
 
 		try {
-			g_pPlaneMesh = 	new Mesh(TUTORIAL_DATAPATH + "LargePlane.xml");
-			g_pSphereMesh = new Mesh(TUTORIAL_DATAPATH + "UnitSphere.xml");
-			g_pCubeMesh = 	new Mesh(TUTORIAL_DATAPATH + "UnitCube.xml");
+			Mesh meshes[] = MeshLoader.loadAll(
+					TUTORIAL_DATAPATH + "LargePlane.xml",
+					TUTORIAL_DATAPATH + "UnitSphere.xml",
+					TUTORIAL_DATAPATH + "UnitCube.xml");
+			
+			g_pPlaneMesh = 	meshes[0];
+			g_pSphereMesh = meshes[1];
+			g_pCubeMesh = 	meshes[2];
 		} catch (Exception exception) {
 			exception.printStackTrace();
 			System.exit(0);
@@ -23,6 +23,7 @@ import rosick.LWJGLWindow;
 import rosick.PortingUtils.BufferableData;
 import rosick.jglsdk.framework.Framework;
 import rosick.jglsdk.framework.Mesh;
+import rosick.jglsdk.framework.MeshLoader;
 import rosick.jglsdk.framework.Timer;
 import rosick.jglsdk.glimg.ImageSet;
 import rosick.jglsdk.glimg.ImageSet.Dimensions;
@@ -119,8 +120,12 @@ public class ManyImages01 extends LWJGLWindow {
 		initializePrograms();
 
 		try {
-			g_pCorridor = 	new Mesh(TUTORIAL_DATAPATH + "Corridor.xml");
-			g_pPlane = 		new Mesh(TUTORIAL_DATAPATH + "BigPlane.xml");
+			Mesh meshes[] = MeshLoader.loadAll(
+					TUTORIAL_DATAPATH + "Corridor.xml",
+					TUTORIAL_DATAPATH + "BigPlane.xml");
+			
+			g_pCorridor = 	meshes[0];
+			g_pPlane = 		meshes[1];
 		} catch (Exception exception) {
 			exception.printStackTrace();
 			System.exit(0);